@@ -0,0 +1,25 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de benchmarks.jar.
+ *
+ * Funcionamiento: Acepta los mismos argumentos que el Main de JMH (filtro de benchmarks, -p, -f, -rf, ...)
+ * y agrega siempre el profiler de GC, así cada resultado trae la tasa de asignación (gc.alloc.rate.norm)
+ * junto al throughput y los percentiles de latencia.
+ */
+
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
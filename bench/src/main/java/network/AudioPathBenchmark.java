@@ -0,0 +1,83 @@
+package network;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Camino del audio desde la captura hasta el frame que se envía, con PCM sintético.
+ *
+ * Funcionamiento: Cada operación toma un bloque de 1024 bytes de PCM (44.1 kHz, 16 bits, big-endian, mono:
+ * voz simulada con dos tonos y ruido), lo copia como el hilo del micrófono de Main2, lo comprime con el codec
+ * negociado (como MeetingClient.sendMessage), arma el Message y codifica el Frame BINARY que se escribe
+ * al socket. El receptor hace el camino inverso en receive. La detección de voz se mide aparte
+ * (ui.VoiceActivityBenchmark).
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AudioPathBenchmark {
+
+    private static final int BLOCK_BYTES = 1024;
+    // Bloques distintos que se recorren en ronda (~1 s de audio), para que el codec no vea siempre lo mismo.
+    private static final int BLOCKS = 44;
+
+    @Param({AudioCodecs.PCM, AudioCodecs.ULAW_16K, AudioCodecs.ADPCM_16K})
+    public String codec;
+
+    private final byte[][] blocks = new byte[BLOCKS][];
+    private final MessageCodec wire = Protocol.BINARY.newCodec();
+    private AudioCodec encoder;
+    private AudioCodec decoder;
+    private byte[] encodedBlock;
+    private int next;
+
+    @Setup
+    public void setup() {
+        encoder = AudioCodecs.create(codec);
+        decoder = AudioCodecs.create(codec);
+        Random random = new Random(1);
+        int sample = 0;
+        for (int b = 0; b < BLOCKS; b++) {
+            blocks[b] = new byte[BLOCK_BYTES];
+            for (int i = 0; i < BLOCK_BYTES; i += 2, sample++) {
+                double t = sample / (double) AudioCodec.PCM_RATE;
+                double voice = 6000 * Math.sin(2 * Math.PI * 180 * t) + 2500 * Math.sin(2 * Math.PI * 720 * t);
+                int value = (int) (voice + random.nextGaussian() * 300);
+                blocks[b][i] = (byte) (value >> 8);
+                blocks[b][i + 1] = (byte) value;
+            }
+        }
+        encodedBlock = encoder.encode(blocks[0], BLOCK_BYTES);
+    }
+
+    @Benchmark
+    public Frame send() throws IOException {
+        byte[] captured = blocks[next];
+        next = (next + 1) % BLOCKS;
+        byte[] copy = new byte[captured.length];
+        System.arraycopy(captured, 0, copy, 0, captured.length);
+        Message msg = new Message("AUDIO", "participante-1", encoder.encode(copy, copy.length));
+        return Frame.encode(msg, Protocol.BINARY, wire);
+    }
+
+    @Benchmark
+    public byte[] receive() {
+        return decoder.decode(encodedBlock);
+    }
+}
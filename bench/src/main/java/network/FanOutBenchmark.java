@@ -0,0 +1,177 @@
+package network;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fan-out de la sala: un mensaje de un participante hasta que lo recibieron todos los demás.
+ *
+ * Funcionamiento: Cada fork levanta el servidor (NIO o clásico, protocolo BINARY) en el mismo proceso y
+ * conecta por loopback clients receptores y un emisor a una sala. Cada operación envía un mensaje y espera
+ * a que los hilos lectores de todos los receptores lo hayan leído entero, así el tiempo medido incluye la
+ * codificación, el reenvío de la sala, las colas de salida y la lectura del otro lado. Con un solo mensaje
+ * en vuelo no hay descartes; el throughput es el de mensajes completamente repartidos por segundo.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class FanOutBenchmark {
+
+    // Tiempo máximo esperando a que un mensaje llegue a todos; pasado, la medición no es válida.
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    @Param({"4", "16", "64"})
+    public int clients;
+
+    @Param({"nio", "classic"})
+    public String mode;
+
+    @Param({"CHAT:64", "VIDEO:4096"})
+    public String payload;
+
+    private final List<Socket> sockets = new ArrayList<>();
+    private final AtomicLong received = new AtomicLong();
+    private long expected;
+    private String type;
+    private MessageStream sender;
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        String[] parts = payload.split(":");
+        type = parts[0];
+        int size = Integer.parseInt(parts[1]);
+        if ("CHAT".equals(type)) {
+            message = new Message(type, "emisor", "x".repeat(size));
+        } else {
+            byte[] data = new byte[size];
+            new Random(1).nextBytes(data);
+            message = new Message(type, "emisor", data).withLayer(0);
+        }
+
+        int port = freePort();
+        System.setProperty("meeting.chat.log", "false");
+        startServer(port);
+
+        for (int i = 0; i < clients; i++) {
+            MessageStream receiver = connect(port, "receptor-" + i);
+            reader(receiver, msg -> {
+                if (type.equals(msg.getType()) && "emisor".equals(msg.getSender())) received.incrementAndGet();
+            });
+        }
+
+        // El emisor entra último: está listo cuando la sala le anunció a todos los receptores.
+        Set<String> present = ConcurrentHashMap.newKeySet();
+        sender = connect(port, "emisor");
+        reader(sender, msg -> {
+            if ("PARTICIPANT".equals(msg.getType()) || "JOIN".equals(msg.getType())) present.add(msg.getSender());
+        });
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (present.size() < clients + 1) {
+            if (System.nanoTime() > deadline) throw new IllegalStateException("La sala no anunció a todos los receptores");
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Socket socket : sockets) socket.close();
+    }
+
+    @Benchmark
+    public long fanOut() throws IOException {
+        expected += clients;
+        sender.write(message);
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        long count;
+        while ((count = received.get()) < expected) {
+            if (System.nanoTime() > deadline) throw new IllegalStateException("El mensaje no llegó a todos los receptores");
+            Thread.onSpinWait();
+        }
+        return count;
+    }
+
+    // Levanta el servidor en un hilo daemon (start y main no vuelven).
+    private void startServer(int port) {
+        Thread server = new Thread(() -> {
+            try {
+                if ("nio".equals(mode)) {
+                    new NioMeetingServer(port, Protocol.BINARY, 2, OutboundQueue.Policy.fromSystemProperties(),
+                            clients + 1).start();
+                } else {
+                    System.setProperty("meeting.port", String.valueOf(port));
+                    System.setProperty("meeting.protocol", "binary");
+                    System.setProperty("meeting.room.maxParticipants", String.valueOf(clients + 1));
+                    MeetingServer.main(new String[0]);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "bench-server");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    // Conecta un participante (reintentando mientras el servidor arranca) y envía su JOIN.
+    private MessageStream connect(int port, String name) throws Exception {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (true) {
+            try {
+                Socket socket = new Socket("localhost", port);
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                MessageStream stream = new MessageStream(socket, Protocol.BINARY);
+                stream.write(new Message("JOIN", name, name + " se unió").withRoom("bench"));
+                return stream;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) throw e;
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    // Hilo lector de un participante: lee todo (así su cola en el servidor nunca se llena).
+    private static void reader(MessageStream stream, Consumer<Message> onMessage) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) onMessage.accept(stream.read());
+            } catch (Exception e) {
+                // Socket cerrado al terminar el trial.
+            }
+        }, "bench-reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialización de Message con cada protocolo de cable, para tamaños de AUDIO y de VIDEO.
+ *
+ * Funcionamiento: encode arma el Frame como lo hace la sala antes del fan-out (una vez por mensaje);
+ * decode lee un frame ya codificado como el servidor NIO (desde un ByteBuffer) o, con OBJECT, con un
+ * ObjectInputStream; roundTrip hace las dos cosas. Los tamaños son los de un paquete de audio ADPCM
+ * (~180 B) y PCM (1024 B) y los de un delta y un keyframe JPEG de 320x240.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    @Param({"BINARY", "OBJECT"})
+    public String protocol;
+
+    @Param({"AUDIO:180", "AUDIO:1024", "VIDEO:2500", "VIDEO:12000"})
+    public String payload;
+
+    // Header de un ObjectOutputStream (STREAM_MAGIC, STREAM_VERSION).
+    private static final byte[] STREAM_HEADER = {(byte) 0xAC, (byte) 0xED, 0x00, 0x05};
+
+    private Protocol wire;
+    private MessageCodec codec;
+    private Message message;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        wire = Protocol.valueOf(protocol);
+        codec = wire.newCodec();
+        String[] parts = payload.split(":");
+        byte[] data = new byte[Integer.parseInt(parts[1])];
+        new Random(1).nextBytes(data);
+        message = new Message(parts[0], "participante-1", 1, null, data).withLayer(0);
+        encoded = received(Frame.encode(message, wire, codec));
+    }
+
+    @Benchmark
+    public Frame encode() throws IOException {
+        return Frame.encode(message, wire, codec);
+    }
+
+    @Benchmark
+    public Message decode() throws Exception {
+        return decode(encoded);
+    }
+
+    // Ida y vuelta: lo que cuesta un mensaje entre el emisor y el receptor, sin la red.
+    @Benchmark
+    public Message roundTrip() throws Exception {
+        return decode(received(Frame.encode(message, wire, codec)));
+    }
+
+    // Decodifica como el servidor NIO (desde un ByteBuffer) o, con OBJECT, con un ObjectInputStream.
+    private Message decode(byte[] bytes) throws Exception {
+        if (wire.isFramed()) {
+            return codec.decode(ByteBuffer.wrap(bytes));
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Message) in.readObject();
+        }
+    }
+
+    // Bytes que lee el receptor. Un frame OBJECT va dentro de un stream ya abierto: se le antepone el header.
+    private byte[] received(Frame frame) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.size() + STREAM_HEADER.length);
+        if (!wire.isFramed()) out.write(STREAM_HEADER);
+        frame.writeTo(out);
+        return out.toByteArray();
+    }
+}
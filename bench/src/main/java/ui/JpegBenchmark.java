@@ -0,0 +1,120 @@
+package ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Video de 320x240: JPEG con ImageIO y el codec por diferencias que usa Main2.sendVideoFrame.
+ *
+ * Funcionamiento: Los frames sintéticos son un fondo con degradé y ruido fijo (como una pared) y un
+ * rectángulo que se mueve (como una persona), en una ronda de FRAMES frames. encodeJpeg y decodeJpeg miden
+ * un JPEG completo con JpegWriter e ImageIO.read; encodeDelta y decodeDelta recorren la ronda con
+ * DeltaVideoEncoder/DeltaVideoDecoder, así el resultado mezcla keyframes y deltas como en una llamada.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpegBenchmark {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int FRAMES = 50;
+
+    @Param({"0.7", "0.4"})
+    public float quality;
+
+    private final List<BufferedImage> frames = new ArrayList<>();
+    private final List<byte[]> deltaStream = new ArrayList<>();
+    private JpegWriter jpeg;
+    private DeltaVideoEncoder deltaEncoder;
+    private DeltaVideoDecoder deltaDecoder;
+    private byte[] encodedJpeg;
+    private int nextFrame;
+    private int nextDelta;
+
+    @Setup
+    public void setup() throws IOException {
+        BufferedImage background = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(1);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int base = 60 + x * 100 / WIDTH + y * 60 / HEIGHT;
+                int noise = random.nextInt(16);
+                background.setRGB(x, y, new Color(base + noise, base, base - 20 + noise).getRGB());
+            }
+        }
+        for (int i = 0; i < FRAMES; i++) {
+            BufferedImage frame = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = frame.createGraphics();
+            g.drawImage(background, 0, 0, null);
+            g.setColor(new Color(200, 150, 120));
+            int x = 100 + (int) (40 * Math.sin(i * 2 * Math.PI / FRAMES));
+            g.fillOval(x, 50, 90, 120);
+            g.dispose();
+            frames.add(frame);
+        }
+
+        jpeg = new JpegWriter(quality);
+        encodedJpeg = jpeg.encode(frames.get(0));
+
+        // La ronda de deltas empieza con un keyframe, así al volver al principio el decodificador se reinicia.
+        DeltaVideoEncoder recorder = new DeltaVideoEncoder(new JpegWriter(quality));
+        for (BufferedImage frame : frames) {
+            byte[] data = recorder.encode(frame);
+            if (data != null) deltaStream.add(data);
+        }
+        deltaEncoder = new DeltaVideoEncoder(new JpegWriter(quality));
+        deltaDecoder = new DeltaVideoDecoder();
+    }
+
+    @Benchmark
+    public byte[] encodeJpeg() throws IOException {
+        return jpeg.encode(nextFrame());
+    }
+
+    @Benchmark
+    public BufferedImage decodeJpeg() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encodedJpeg));
+    }
+
+    @Benchmark
+    public byte[] encodeDelta() throws IOException {
+        return deltaEncoder.encode(nextFrame());
+    }
+
+    @Benchmark
+    public BufferedImage decodeDelta() throws IOException {
+        byte[] data = deltaStream.get(nextDelta);
+        nextDelta = (nextDelta + 1) % deltaStream.size();
+        return deltaDecoder.decode(data);
+    }
+
+    private BufferedImage nextFrame() {
+        BufferedImage frame = frames.get(nextFrame);
+        nextFrame = (nextFrame + 1) % FRAMES;
+        return frame;
+    }
+}
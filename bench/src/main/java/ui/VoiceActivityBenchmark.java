@@ -0,0 +1,61 @@
+package ui;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Detección de voz del hilo del micrófono (primer paso del camino del audio; el resto está en
+ * network.AudioPathBenchmark).
+ *
+ * Funcionamiento: Alterna bloques de 1024 bytes de voz sintética y de ruido de fondo, con el formato de
+ * captura de Main2, así el detector pasa por sus dos estados y por el hangover.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VoiceActivityBenchmark {
+
+    private static final int BLOCK_BYTES = 1024;
+    private static final int BLOCKS = 64;
+
+    private final byte[][] blocks = new byte[BLOCKS][BLOCK_BYTES];
+    private VoiceActivityDetector vad;
+    private int next;
+
+    @Setup
+    public void setup() {
+        vad = new VoiceActivityDetector(new AudioFormat(44100, 16, 1, true, true));
+        Random random = new Random(1);
+        for (int b = 0; b < BLOCKS; b++) {
+            boolean voice = (b / 16) % 2 == 0; // Ráfagas de 16 bloques (~190 ms) de voz y de silencio.
+            for (int i = 0; i < BLOCK_BYTES; i += 2) {
+                double noise = random.nextGaussian() * 60;
+                int value = (int) (voice ? 5000 * Math.sin(i * 0.05) + noise : noise);
+                blocks[b][i] = (byte) (value >> 8);
+                blocks[b][i + 1] = (byte) value;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean detect() {
+        byte[] block = blocks[next];
+        next = (next + 1) % BLOCKS;
+        return vad.process(block, block.length);
+    }
+}
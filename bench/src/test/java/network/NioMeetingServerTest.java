@@ -0,0 +1,99 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Regresiones del servidor NIO con conexiones que se cortan mientras entran a una sala.
+ *
+ * Funcionamiento: Levanta un NioMeetingServer de 2 loops en el mismo proceso (así la mayoría de los JOIN
+ * mudan la conexión a otro loop) y revisa que las salas creadas por esos JOIN no queden en el registro
+ * ni en la cuenta de los loops.
+ */
+
+class NioMeetingServerTest {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static NioMeetingServer server;
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        port = freePort();
+        server = new NioMeetingServer(port, Protocol.BINARY, 2, OutboundQueue.Policy.fromSystemProperties(), 4);
+        Thread thread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, "test-server");
+        thread.setDaemon(true);
+        thread.start();
+
+        // start abre el puerto después de crear las métricas: si conecta, el servidor está listo.
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (true) {
+            try (Socket probe = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) throw e;
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    // Cada cliente manda su JOIN (a una sala nueva) y corta la conexión enseguida, sin esperar respuesta.
+    @Test
+    void joinThenDisconnectLeavesNoRooms() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            Socket socket = new Socket("localhost", port);
+            new MessageStream(socket, Protocol.BINARY).write(new Message("JOIN", "corte-" + i, "hola").withRoom("corte-" + i));
+            socket.setSoLinger(true, 0); // RST: el servidor ve el corte en la próxima lectura.
+            socket.close();
+        }
+        awaitNoRooms();
+    }
+
+    // Una conexión cerrada durante la mudanza no se puede registrar en el loop destino; el callback de la
+    // mudanza tiene que correr igual para que joinRoom descarte la sala que creó.
+    @Test
+    void registerRunsCallbackWhenChannelIsClosed() throws Exception {
+        SocketChannel channel = SocketChannel.open();
+        channel.close();
+        NioConnection conn = new NioConnection(channel, server, Protocol.BINARY.newCodec(),
+                OutboundQueue.Policy.fromSystemProperties());
+        EventLoop loop = new EventLoop("test-loop");
+        loop.start();
+
+        CountDownLatch ran = new CountDownLatch(1);
+        loop.register(conn, ran::countDown);
+        assertTrue(ran.await(5, TimeUnit.SECONDS), "el callback no corrió");
+        assertTrue(conn.isClosed());
+    }
+
+    private static void awaitNoRooms() throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while ((server.roomCount() > 0 || server.loopRoomCount() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, server.roomCount(), "salas en el registro");
+        assertEquals(0, server.loopRoomCount(), "salas en la cuenta de los loops");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
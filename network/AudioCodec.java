@@ -0,0 +1,26 @@
+package network;
+
+/**
+ * Codec de audio entre la captura del micrófono y la reproducción.
+ * 
+ * Funcionamiento general: Del lado de la aplicación el audio es siempre PCM de 16 bits con signo,
+ * big-endian, mono, a PCM_RATE (el formato de captura y reproducción de Main2). encode comprime un
+ * paquete capturado y decode devuelve PCM en ese mismo formato. Las implementaciones pueden guardar
+ * estado entre paquetes (p.ej. la fase del remuestreo), así que se usa una instancia por flujo: una
+ * para el micrófono propio y una por cada remitente. Se crean por nombre con AudioCodecs.
+ */
+
+interface AudioCodec {
+
+    // Frecuencia de muestreo del PCM de la aplicación.
+    int PCM_RATE = 44100;
+
+    // Nombre con el que se negocia en el JOIN.
+    String getName();
+
+    // Comprime los primeros length bytes de PCM.
+    byte[] encode(byte[] pcm, int length);
+
+    // Descomprime un paquete a PCM.
+    byte[] decode(byte[] data);
+}
@@ -0,0 +1,71 @@
+package network;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Registro y negociación de codecs de audio.
+ * 
+ * Funcionamiento general: El cliente ofrece en su JOIN los codecs que quiere usar, en orden de
+ * preferencia (-Dmeeting.audio.codecs, por defecto "adpcm16,ulaw16,pcm"). La sala elige el primero
+ * de la oferta que el servidor permita (la misma propiedad del lado del servidor, por defecto todos)
+ * y lo anuncia en el JOIN y en los PARTICIPANT; cada cliente decodifica el audio de cada remitente
+ * con el codec anunciado para él. Un cliente que no ofrece nada (versión anterior) queda en "pcm".
+ *
+ * Codecs incluidos (Java puro, sin librerías nativas):
+ * - pcm: PCM crudo a 44,1 kHz (88 KB/s), compatible con clientes anteriores.
+ * - ulaw16: remuestreo a 16 kHz + µ-law de 8 bits (16 KB/s, 5,5x menos).
+ * - adpcm16: remuestreo a 16 kHz + IMA-ADPCM de 4 bits (8 KB/s, ~11x menos).
+ */
+
+final class AudioCodecs {
+
+    static final String PCM = "pcm";
+    static final String ULAW_16K = "ulaw16";
+    static final String ADPCM_16K = "adpcm16";
+
+    // Rango de voz a 16 kHz: suficiente para videollamadas y un tercio de las muestras.
+    static final int VOICE_RATE = 16000;
+
+    private static final List<String> KNOWN = List.of(ADPCM_16K, ULAW_16K, PCM);
+
+    private AudioCodecs() {}
+
+    // Crea una instancia nueva (con estado propio) del codec, o null si el nombre no se conoce.
+    static AudioCodec create(String name) {
+        if (name == null) return null;
+        switch (name) {
+            case PCM: return new PcmCodec();
+            case ULAW_16K: return new MuLawCodec(VOICE_RATE);
+            case ADPCM_16K: return new ImaAdpcmCodec(VOICE_RATE);
+            default: return null;
+        }
+    }
+
+    // Oferta del cliente para el JOIN, separada por comas.
+    static String offer() {
+        return String.join(",", configured());
+    }
+
+    // Elige el codec de un participante: el primero de su oferta que el servidor permita, o pcm.
+    static String negotiate(String offer) {
+        if (offer == null || offer.isBlank()) return PCM;
+        List<String> allowed = configured();
+        for (String name : offer.split(",")) {
+            if (allowed.contains(name.trim())) return name.trim();
+        }
+        return PCM;
+    }
+
+    // Codecs configurados en -Dmeeting.audio.codecs, en orden; se ignoran los desconocidos.
+    private static List<String> configured() {
+        String property = System.getProperty("meeting.audio.codecs");
+        if (property == null || property.isBlank()) return KNOWN;
+        List<String> names = Arrays.stream(property.split(","))
+                .map(String::trim)
+                .filter(KNOWN::contains)
+                .collect(Collectors.toList());
+        return names.isEmpty() ? List.of(PCM) : names;
+    }
+}
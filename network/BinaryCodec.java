@@ -0,0 +1,163 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codec binario compacto y versionado para Message.
+ * 
+ * Funcionamiento general: Cada cuerpo de frame tiene un header fijo de 5 bytes
+ * [versión][código de tipo][flags][ID de remitente (2 bytes)], seguido opcionalmente de
+ * [largo de nombre (1)][nombre UTF-8], [largo de texto (2)][texto UTF-8], [largo de sala (1)][sala UTF-8] y
+ * [largo de codec (1)][codec UTF-8], [capa de simulcast (1)] y [secuencia (4)][hora de captura (8)] (solo en la
+ * media que los trae); el resto del cuerpo son los bytes crudos de data (su largo sale del prefijo de longitud del frame).
+ * El nombre solo viaja en JOIN/PARTICIPANT y en mensajes de control sin ID; el resto usa el ID
+ * de 2 bytes asignado por el servidor. Cada instancia recuerda la tabla ID → nombre que
+ * aprendió al decodificar, por eso el cliente usa una instancia por conexión.
+ */
+
+public class BinaryCodec extends MessageCodec {
+    // Versión del formato. Se rechazan frames de otra versión.
+    public static final int VERSION = 1;
+
+    private static final int FLAG_NAME = 0x01;
+    private static final int FLAG_TEXT = 0x02;
+    private static final int FLAG_DATA = 0x04;
+    private static final int FLAG_ROOM = 0x08;
+    private static final int FLAG_CODEC = 0x10;
+    private static final int FLAG_LAYER = 0x20;
+    private static final int FLAG_TIMING = 0x40;
+    private static final int HEADER_BYTES = 5;
+
+    // Códigos de tipo. La posición en el arreglo es el código (0 reservado).
+    private static final String[] TYPES = {
+            null, "CHAT", "JOIN", "LEAVE", "INFO", "VIDEO", "AUDIO", "CAM_OFF", "PARTICIPANT",
+            "SUBSCRIBE", "UNSUBSCRIBE", "MEDIA_UDP", "MEDIA_TCP",
+            "SILENCE", "KEYFRAME", "PING", "PONG", "VIEWPORT",
+            "HISTORY", "HISTORY_END"
+    };
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+
+    static {
+        for (int code = 1; code < TYPES.length; code++) {
+            CODES.put(TYPES[code], code);
+        }
+    }
+
+    // Nombres aprendidos de los frames con nombre (ID → nombre).
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    @Override
+    public ByteBuffer encode(Message msg) throws IOException {
+        Integer code = CODES.get(msg.getType());
+        if (code == null) throw new IOException("Tipo sin código binario: " + msg.getType());
+
+        byte[] name = includesName(msg) && msg.getSender() != null
+                ? msg.getSender().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] text = msg.getText() != null ? msg.getText().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] room = msg.getRoom() != null ? msg.getRoom().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] codec = msg.getCodec() != null ? msg.getCodec().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] data = msg.getData();
+        int layer = msg.getLayer();
+        boolean timing = msg.getSequence() != 0 || msg.getCaptureTime() != 0;
+        if (layer < 0 || layer > 0xFF) throw new IOException("Capa de simulcast inválida: " + layer);
+        if (codec != null && codec.length > 0xFF) throw new IOException("Lista de codecs demasiado larga");
+        if (name != null && name.length > 0xFF) throw new IOException("Nombre demasiado largo");
+        if (room != null && room.length > 0xFF) throw new IOException("Nombre de sala demasiado largo");
+        if (text != null && text.length > 0xFFFF) throw new IOException("Texto demasiado largo");
+
+        int flags = (name != null ? FLAG_NAME : 0) | (text != null ? FLAG_TEXT : 0)
+                | (data != null ? FLAG_DATA : 0) | (room != null ? FLAG_ROOM : 0) | (codec != null ? FLAG_CODEC : 0)
+                | (layer != 0 ? FLAG_LAYER : 0) | (timing ? FLAG_TIMING : 0);
+        int bodySize = HEADER_BYTES
+                + (name != null ? 1 + name.length : 0)
+                + (text != null ? 2 + text.length : 0)
+                + (room != null ? 1 + room.length : 0)
+                + (codec != null ? 1 + codec.length : 0)
+                + (layer != 0 ? 1 : 0)
+                + (timing ? 12 : 0)
+                + (data != null ? data.length : 0);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        frame.putInt(bodySize);
+        frame.put((byte) VERSION).put(code.byteValue()).put((byte) flags).putShort((short) msg.getSenderId());
+        if (name != null) frame.put((byte) name.length).put(name);
+        if (text != null) frame.putShort((short) text.length).put(text);
+        if (room != null) frame.put((byte) room.length).put(room);
+        if (codec != null) frame.put((byte) codec.length).put(codec);
+        if (layer != 0) frame.put((byte) layer);
+        if (timing) frame.putInt(msg.getSequence()).putLong(msg.getCaptureTime());
+        if (data != null) frame.put(data);
+        frame.flip();
+        return frame;
+    }
+
+    @Override
+    protected byte[] encodeBody(Message msg) throws IOException {
+        ByteBuffer frame = encode(msg);
+        byte[] body = new byte[frame.remaining() - HEADER_SIZE];
+        frame.position(HEADER_SIZE);
+        frame.get(body);
+        return body;
+    }
+
+    @Override
+    protected Message decodeBody(ByteBuffer body) throws IOException {
+        if (body.remaining() < HEADER_BYTES) throw new IOException("Frame binario truncado");
+
+        int version = body.get() & 0xFF;
+        if (version != VERSION) throw new IOException("Versión de protocolo no soportada: " + version);
+        int code = body.get() & 0xFF;
+        if (code == 0 || code >= TYPES.length) throw new IOException("Código de tipo desconocido: " + code);
+        int flags = body.get() & 0xFF;
+        int senderId = body.getShort() & 0xFFFF;
+
+        try {
+            String sender = null;
+            if ((flags & FLAG_NAME) != 0) {
+                sender = readString(body, body.get() & 0xFF);
+                if (senderId != 0) names.put(senderId, sender);
+            } else if (senderId != 0) {
+                sender = names.getOrDefault(senderId, "#" + senderId);
+            }
+
+            String text = (flags & FLAG_TEXT) != 0 ? readString(body, body.getShort() & 0xFFFF) : null;
+            String room = (flags & FLAG_ROOM) != 0 ? readString(body, body.get() & 0xFF) : null;
+            String codec = (flags & FLAG_CODEC) != 0 ? readString(body, body.get() & 0xFF) : null;
+            int layer = (flags & FLAG_LAYER) != 0 ? body.get() & 0xFF : 0;
+            boolean timing = (flags & FLAG_TIMING) != 0;
+            int sequence = timing ? body.getInt() : 0;
+            long captureTime = timing ? body.getLong() : 0;
+
+            byte[] data = null;
+            if ((flags & FLAG_DATA) != 0) {
+                data = new byte[body.remaining()];
+                body.get(data);
+            }
+            Message msg = new Message(TYPES[code], sender, senderId, text, data);
+            if (room != null) msg = msg.withRoom(room);
+            if (codec != null) msg = msg.withCodec(codec);
+            if (timing) msg = msg.withSequence(sequence).withCaptureTime(captureTime);
+            return layer != 0 ? msg.withLayer(layer) : msg;
+        } catch (RuntimeException e) {
+            throw new IOException("Frame binario inválido", e);
+        }
+    }
+
+    // El nombre viaja en los anuncios de participantes y en mensajes de control que aún no tienen ID.
+    // Los paquetes de media sin ID van anónimos: el servidor les asigna el remitente de la conexión.
+    private static boolean includesName(Message msg) {
+        String type = msg.getType();
+        if ("JOIN".equals(type) || "PARTICIPANT".equals(type)) return true;
+        return msg.getSenderId() == 0 && !"VIDEO".equals(type) && !"AUDIO".equals(type);
+    }
+
+    private static String readString(ByteBuffer body, int length) {
+        byte[] bytes = new byte[length];
+        body.get(bytes); // Lanza BufferUnderflowException si el largo excede el frame.
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
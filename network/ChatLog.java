@@ -0,0 +1,415 @@
+package network;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Registro persistente del chat de las salas (CHAT, JOIN y LEAVE), para mostrar a quien entra tarde lo
+ * que se dijo antes.
+ *
+ * Se activa a pedido, como la grabación: con -Dmeeting.chat.log=true (en el directorio chat-log) o con
+ * -Dmeeting.chat.dir. Sin eso el servidor no escribe nada del chat en disco.
+ * Funcionamiento general: Cada sala escribe en su propio directorio una serie de segmentos de solo
+ * agregado; cada segmento se llama con el número de secuencia de su primer registro y se cierra al pasar
+ * de -Dmeeting.chat.segmentBytes. Los segmentos viejos se borran cuando el total pasa de
+ * -Dmeeting.chat.retainBytes o cuando su último registro tiene más de -Dmeeting.chat.retainHours.
+ * Cada registro es [largo u32][hora i64][tipo u8][largo remitente u16][remitente][texto], en UTF-8.
+ * En memoria queda solo un índice ralo por segmento: secuencia, hora y posición de uno de cada
+ * INDEX_INTERVAL registros. Con él, pedir los últimos N o los posteriores a una hora salta directo a la
+ * posición y lee como mucho INDEX_INTERVAL - 1 registros de más.
+ * Todo el trabajo de disco (escrituras, lecturas y borrados) corre en un único hilo: la sala solo encola
+ * y sigue reenviando. Cada sala abierta tiene su estado (RoomLog, con el canal del segmento activo); al
+ * cerrarse la sala se cierra el canal y se olvida, y si la sala vuelve se rearma desde el disco. Como el hilo atiende las tareas en orden, una repetición pedida después de un
+ * JOIN ve todo lo que se agregó antes de ese JOIN. Al arrancar se recorren los segmentos de la sala para
+ * rearmar el índice; un registro final incompleto (el servidor se cortó escribiendo) se descarta.
+ */
+
+class ChatLog {
+
+    private static final int INDEX_INTERVAL = 64;
+    // Encabezado de un registro: largo, hora, tipo y largo del remitente.
+    private static final int HEADER_BYTES = 4 + 8 + 1 + 2;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final String SUFFIX = ".seg";
+    // Tipos que se registran. La posición es el código en disco.
+    private static final String[] TYPES = {"CHAT", "JOIN", "LEAVE"};
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long retainBytes;
+    private final long retainMillis;
+    // Máximo de registros que se repiten a un participante (la cola de salida también tiene su límite).
+    private final int maxReplay;
+    private final Map<String, RoomLog> rooms = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer;
+    // Buffer de escritura compartido por todas las salas (solo lo usa el hilo del registro). Crece hasta el
+    // registro más grande escrito, como mucho MAX_RECORD_BYTES.
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    ChatLog(Path dir, long segmentBytes, long retainBytes, long retainMillis, int maxReplay) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+        this.retainBytes = retainBytes;
+        this.retainMillis = retainMillis;
+        this.maxReplay = maxReplay;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // La retención por antigüedad también se aplica a las salas que no escriben.
+        writer.scheduleWithFixedDelay(this::enforceRetention, 1, 1, TimeUnit.MINUTES);
+    }
+
+    // Crea el registro con las propiedades del sistema. Devuelve null si no se pidió (ver la documentación
+    // de la clase) o si se desactivó explícitamente con -Dmeeting.chat.log=false.
+    static ChatLog fromSystemProperties() throws IOException {
+        String enabled = System.getProperty("meeting.chat.log");
+        String dir = System.getProperty("meeting.chat.dir");
+        if ("false".equalsIgnoreCase(enabled) || (!"true".equalsIgnoreCase(enabled) && dir == null)) return null;
+        ChatLog log = new ChatLog(
+                Paths.get(dir != null ? dir : "chat-log"),
+                Long.getLong("meeting.chat.segmentBytes", 4L * 1024 * 1024),
+                Long.getLong("meeting.chat.retainBytes", 256L * 1024 * 1024),
+                Long.getLong("meeting.chat.retainHours", 7 * 24) * 3600_000,
+                Integer.getInteger("meeting.chat.replayMax", 200));
+        System.out.println("Registro de chat en " + log.dir.toAbsolutePath());
+        return log;
+    }
+
+    // Agrega un evento de una sala. No bloquea: la escritura se hace en el hilo del registro.
+    // Devuelve el orden del evento en la sala desde que arrancó el servidor (ver replay).
+    long append(String room, String type, String sender, String text) {
+        RoomLog log = rooms.computeIfAbsent(room, RoomLog::new);
+        long ticket = log.submitted.getAndIncrement();
+        long timestamp = System.currentTimeMillis();
+        writer.execute(() -> {
+            try {
+                log.append(timestamp, type, sender, text);
+            } catch (IOException e) {
+                System.out.println("Error escribiendo el chat de " + room + ": " + e.getMessage());
+            }
+        });
+        return ticket;
+    }
+
+    // Repite a un participante los eventos de la sala anteriores al evento before (devuelto por append),
+    // como mensajes HISTORY ("hora TIPO texto", remitente original), y cierra con HISTORY_END.
+    // request es "last N" (los últimos N) o "since hora" (desde esa hora, en ms de época). No bloquea.
+    void replay(String room, long before, String request, Participant to, Function<Message, Frame> encoder) {
+        RoomLog log = rooms.computeIfAbsent(room, RoomLog::new);
+        writer.execute(() -> {
+            int sent = 0;
+            try {
+                for (Record record : log.read(before, request, maxReplay)) {
+                    to.send(encoder.apply(new Message("HISTORY", record.sender,
+                            record.timestamp + " " + record.type + " " + record.text)));
+                    sent++;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error leyendo el chat de " + room + ": " + e.getMessage());
+            }
+            to.send(encoder.apply(new Message("HISTORY_END", "Servidor", String.valueOf(sent))));
+        });
+    }
+
+    // La sala se cerró (quedó vacía): se olvida su estado y su canal se cierra después de las escrituras
+    // ya encoladas. Se quita del mapa acá y no en el hilo del registro: si la sala vuelve a abrirse, sus
+    // eventos nuevos ya van a un RoomLog nuevo, que carga del disco lo que dejó el anterior.
+    void roomClosed(String room) {
+        RoomLog log = rooms.remove(room);
+        if (log == null) return;
+        writer.execute(() -> {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.out.println("Error cerrando el chat de " + room + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void enforceRetention() {
+        for (RoomLog log : rooms.values()) {
+            try {
+                log.enforceRetention();
+            } catch (IOException e) {
+                System.out.println("Error aplicando la retención del chat: " + e.getMessage());
+            }
+        }
+    }
+
+    // Evento leído del disco.
+    private static final class Record {
+        final long timestamp;
+        final String type;
+        final String sender;
+        final String text;
+
+        Record(long timestamp, String type, String sender, String text) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.sender = sender;
+            this.text = text;
+        }
+    }
+
+    // Segmento de una sala: su primer número de secuencia y el índice ralo de sus registros.
+    private static final class Segment {
+        final Path file;
+        final long baseSeq;
+        int count;              // Registros escritos.
+        long size;              // Bytes escritos (próxima posición).
+        long lastTimestamp;
+        // Entrada i del índice = registro i * INDEX_INTERVAL: su hora y su posición.
+        long[] indexTimes = new long[8];
+        long[] indexOffsets = new long[8];
+
+        Segment(Path file, long baseSeq) {
+            this.file = file;
+            this.baseSeq = baseSeq;
+        }
+
+        long endSeq() {
+            return baseSeq + count;
+        }
+
+        // Registra la posición del próximo registro (llamar antes de escribirlo).
+        void track(long timestamp, long offset) {
+            if (count % INDEX_INTERVAL == 0) {
+                int slot = count / INDEX_INTERVAL;
+                if (slot == indexTimes.length) {
+                    indexTimes = Arrays.copyOf(indexTimes, slot * 2);
+                    indexOffsets = Arrays.copyOf(indexOffsets, slot * 2);
+                }
+                indexTimes[slot] = timestamp;
+                indexOffsets[slot] = offset;
+            }
+            lastTimestamp = timestamp;
+        }
+    }
+
+    // Registro de una sala. Salvo submitted, solo lo usa el hilo del registro.
+    private final class RoomLog {
+        final String room;
+        final Path roomDir;
+        final AtomicLong submitted = new AtomicLong();
+        final List<Segment> segments = new ArrayList<>();
+        FileChannel active;    // Canal del último segmento, abierto para agregar.
+        long loadedSeq = -1;   // Próxima secuencia que había en disco al arrancar (-1: sin cargar).
+        long totalBytes;
+
+        RoomLog(String room) {
+            this.room = room;
+            this.roomDir = dir.resolve(directoryName(room));
+        }
+
+        // Carga los segmentos existentes la primera vez que se usa la sala.
+        void load() throws IOException {
+            if (loadedSeq >= 0) return;
+            Files.createDirectories(roomDir);
+            List<Long> bases = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(roomDir, "*" + SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    try {
+                        bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        // No es un segmento: se ignora.
+                    }
+                }
+            }
+            bases.sort(null);
+            for (long base : bases) {
+                Segment segment = new Segment(segmentPath(base), base);
+                scan(segment);
+                segments.add(segment);
+                totalBytes += segment.size;
+            }
+            loadedSeq = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).endSeq();
+        }
+
+        // Recorre un segmento existente para rearmar su índice; corta un registro final incompleto.
+        private void scan(Segment segment) throws IOException {
+            try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                long position = 0;
+                long fileSize = channel.size();
+                while (position + HEADER_BYTES <= fileSize) {
+                    header.clear();
+                    readFully(channel, header, position);
+                    int length = header.getInt(0);
+                    if (length < HEADER_BYTES || length > MAX_RECORD_BYTES || position + length > fileSize) break;
+                    segment.track(header.getLong(4), position);
+                    segment.count++;
+                    position += length;
+                }
+                if (position < fileSize) channel.truncate(position);
+                segment.size = position;
+            }
+        }
+
+        void append(long timestamp, String type, String sender, String text) throws IOException {
+            load();
+            Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (segment == null || segment.size >= segmentBytes) {
+                segment = roll(segment == null ? loadedSeq : segment.endSeq());
+            } else if (active == null) {
+                active = FileChannel.open(segment.file, StandardOpenOption.WRITE);
+            }
+
+            byte[] senderBytes = truncate(sender != null ? sender : "", 1024);
+            byte[] textBytes = truncate(text != null ? text : "", MAX_RECORD_BYTES - HEADER_BYTES - senderBytes.length);
+            int length = HEADER_BYTES + senderBytes.length + textBytes.length;
+            if (buffer.capacity() < length) buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+            buffer.clear();
+            buffer.putInt(length).putLong(timestamp).put((byte) Math.max(0, Arrays.asList(TYPES).indexOf(type)))
+                    .putShort((short) senderBytes.length).put(senderBytes).put(textBytes).flip();
+            segment.track(timestamp, segment.size);
+            while (buffer.hasRemaining()) {
+                active.write(buffer, segment.size + buffer.position());
+            }
+            segment.count++;
+            segment.size += length;
+            totalBytes += length;
+        }
+
+        // Cierra el segmento activo, abre uno nuevo que empieza en baseSeq y aplica la retención.
+        private Segment roll(long baseSeq) throws IOException {
+            if (active != null) active.close();
+            Segment segment = new Segment(segmentPath(baseSeq), baseSeq);
+            active = FileChannel.open(segment.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            segments.add(segment);
+            enforceRetention();
+            return segment;
+        }
+
+        // Cierra el canal del segmento activo (la sala se cerró).
+        void close() throws IOException {
+            if (active != null) active.close();
+            active = null;
+        }
+
+        // Borra los segmentos más viejos (nunca el activo) mientras se pase del tamaño o de la antigüedad.
+        void enforceRetention() throws IOException {
+            long oldest = System.currentTimeMillis() - retainMillis;
+            while (segments.size() > 1) {
+                Segment first = segments.get(0);
+                if (totalBytes <= retainBytes && first.lastTimestamp >= oldest) break;
+                Files.deleteIfExists(first.file);
+                segments.remove(0);
+                totalBytes -= first.size;
+            }
+        }
+
+        // Lee los registros pedidos anteriores al evento before (como mucho max).
+        List<Record> read(long before, String request, int max) throws IOException {
+            load();
+            long end = loadedSeq + before;
+            long start;
+            String[] parts = request == null ? new String[0] : request.trim().split(" ");
+            if (parts.length == 2 && parts[0].equals("since")) {
+                start = firstSince(Long.parseLong(parts[1]), end);
+            } else {
+                int count = parts.length == 2 && parts[0].equals("last") ? Integer.parseInt(parts[1]) : max;
+                start = end - Math.max(0, count);
+            }
+            start = Math.max(start, end - max);
+            List<Record> records = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.endSeq() <= start || segment.baseSeq >= end) continue;
+                readSegment(segment, Math.max(start, segment.baseSeq), Math.min(end, segment.endSeq()), records);
+            }
+            return records;
+        }
+
+        // Primera secuencia con hora >= since. Salta por el índice y lee solo el tramo de un segmento.
+        private long firstSince(long since, long end) throws IOException {
+            for (Segment segment : segments) {
+                if (segment.lastTimestamp < since || segment.count == 0) continue;
+                int slot = 0;
+                int slots = (segment.count + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+                while (slot + 1 < slots && segment.indexTimes[slot + 1] < since) slot++;
+                long seq = segment.baseSeq + (long) slot * INDEX_INTERVAL;
+                List<Record> block = new ArrayList<>();
+                readSegment(segment, seq, Math.min(segment.endSeq(), seq + INDEX_INTERVAL), block);
+                for (Record record : block) {
+                    if (record.timestamp >= since) return seq;
+                    seq++;
+                }
+                return seq;
+            }
+            return end;
+        }
+
+        // Lee los registros [from, to) de un segmento: salta a la entrada del índice anterior a from.
+        private void readSegment(Segment segment, long from, long to, List<Record> out) throws IOException {
+            int first = (int) (from - segment.baseSeq);
+            int slot = first / INDEX_INTERVAL;
+            long position = segment.indexOffsets[slot];
+            long seq = segment.baseSeq + (long) slot * INDEX_INTERVAL;
+            try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                for (; seq < to; seq++) {
+                    header.clear();
+                    readFully(channel, header, position);
+                    int length = header.getInt(0);
+                    if (seq >= from) {
+                        ByteBuffer body = ByteBuffer.allocate(length - HEADER_BYTES);
+                        readFully(channel, body, position + HEADER_BYTES);
+                        int senderLength = header.getShort(13) & 0xFFFF;
+                        byte[] bytes = body.array();
+                        int type = header.get(12);
+                        out.add(new Record(header.getLong(4),
+                                type >= 0 && type < TYPES.length ? TYPES[type] : TYPES[0],
+                                new String(bytes, 0, senderLength, StandardCharsets.UTF_8),
+                                new String(bytes, senderLength, bytes.length - senderLength, StandardCharsets.UTF_8)));
+                    }
+                    position += length;
+                }
+            }
+        }
+
+        private Path segmentPath(long baseSeq) {
+            return roomDir.resolve(String.format("%020d", baseSeq) + SUFFIX);
+        }
+    }
+
+    // Nombre de directorio seguro para una sala (sin separadores ni "." / ".."). También lo usa MeetingRecorder.
+    static String directoryName(String room) {
+        return URLEncoder.encode(room, StandardCharsets.UTF_8).replace(".", "%2E").replace("*", "%2A");
+    }
+
+    // Lee hasta llenar el buffer desde una posición. Un fin de archivo antes de tiempo es un error.
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Segmento truncado");
+        }
+    }
+
+    // Bytes UTF-8 de un texto, cortados a max bytes (un carácter cortado al medio se descarta al leer).
+    private static byte[] truncate(String text, int max) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= max ? bytes : Arrays.copyOf(bytes, max);
+    }
+}
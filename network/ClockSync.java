@@ -0,0 +1,72 @@
+package network;
+
+/**
+ * Estimación de la diferencia entre el reloj local y el reloj de la reunión (el del servidor).
+ *
+ * Funcionamiento general: El reloj de la reunión es System.nanoTime del servidor en microsegundos: es
+ * monotónico y todos los clientes se sincronizan contra el mismo proceso, así que su origen no importa.
+ * Cada PONG trae la hora del servidor; con la hora de envío del PING y la de llegada del PONG se estima,
+ * como en NTP, offset = servidor - (envío + llegada) / 2. El error de cada muestra es como mucho la mitad
+ * del RTT (la asimetría entre ida y vuelta), por eso de las últimas SAMPLES muestras se usa la de menor
+ * RTT: la que menos esperó en colas. Los hilos de captura leen now() sin locks.
+ */
+
+final class ClockSync {
+
+    private static final int SAMPLES = 8;
+
+    private final long[] offsets = new long[SAMPLES];
+    private final long[] rtts = new long[SAMPLES];
+    private int count = 0;
+    private int next = 0;
+    private volatile long offset;
+    private volatile long rtt;
+    private volatile boolean synced = false;
+
+    // Hora del reloj de la reunión en el servidor (microsegundos, origen arbitrario).
+    static long serverNow() {
+        return System.nanoTime() / 1000;
+    }
+
+    // Hora local en la misma unidad que las muestras.
+    static long localNow() {
+        return System.nanoTime() / 1000;
+    }
+
+    // Registra un intercambio PING/PONG: hora local de envío, hora del servidor y hora local de llegada.
+    synchronized void sample(long sentMicros, long serverMicros, long receivedMicros) {
+        long sampleRtt = receivedMicros - sentMicros;
+        if (sampleRtt < 0) return;
+        offsets[next] = serverMicros - (sentMicros + receivedMicros) / 2;
+        rtts[next] = sampleRtt;
+        next = (next + 1) % SAMPLES;
+        count = Math.min(count + 1, SAMPLES);
+
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (rtts[i] < rtts[best]) best = i;
+        }
+        offset = offsets[best];
+        rtt = rtts[best];
+        synced = true;
+    }
+
+    boolean isSynced() {
+        return synced;
+    }
+
+    // Hora actual en el reloj de la reunión, o 0 si todavía no llegó ninguna muestra.
+    long now() {
+        return synced ? localNow() + offset : 0;
+    }
+
+    // Diferencia estimada (reloj de la reunión - reloj local), en microsegundos.
+    long offset() {
+        return offset;
+    }
+
+    // RTT de la muestra usada para el offset, en microsegundos. Acota el error de la estimación.
+    long rtt() {
+        return rtt;
+    }
+}
@@ -0,0 +1,64 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de una conexión (un Participant) en el servidor.
+ *
+ * Funcionamiento general: La conexión cuenta lo que lee (received), lo que escribe (sent) y lo que su
+ * cola de salida descarta (dropped); cada llamada suma también en el tipo de mensaje correspondiente de
+ * ServerMetrics. Todo son LongAdder, así el hilo lector, el escritor y los hilos de las salas cuentan
+ * sin competir por un lock. El backlog no se cuenta: se lee de la cola del participante al reportar.
+ */
+
+final class ConnectionMetrics {
+
+    private final ServerMetrics server;
+    private final Participant participant;
+    private final long openedAt = System.currentTimeMillis();
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    ConnectionMetrics(ServerMetrics server, Participant participant) {
+        this.server = server;
+        this.participant = participant;
+    }
+
+    // Un mensaje leído del cliente (por TCP o, ya reensamblado, por UDP).
+    void received(String type, long bytes) {
+        messagesIn.increment();
+        bytesIn.add(bytes);
+        server.type(type).received(bytes);
+    }
+
+    // Un mensaje escrito hacia el cliente.
+    void sent(String type, long bytes) {
+        messagesOut.increment();
+        bytesOut.add(bytes);
+        server.type(type).sent(bytes);
+    }
+
+    // Un mensaje descartado por la cola de salida. Se llama con el lock de la cola tomado: solo suma.
+    void dropped(String type) {
+        dropped.increment();
+        server.type(type).dropped();
+    }
+
+    // Da de baja la conexión en ServerMetrics. Puede llamarse más de una vez.
+    void close() {
+        if (closed.compareAndSet(false, true)) server.closed(this);
+    }
+
+    ServerMetricsMXBean.ConnectionStats snapshot() {
+        Room room = participant.getRoom();
+        return new ServerMetricsMXBean.ConnectionStats(
+                participant.toString(), room != null ? room.getName() : "",
+                messagesIn.sum(), bytesIn.sum(), messagesOut.sum(), bytesOut.sum(), dropped.sum(),
+                participant.getBacklogBytes(), (System.currentTimeMillis() - openedAt) / 1000);
+    }
+}
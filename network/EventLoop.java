@@ -0,0 +1,143 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hilo de eventos del servidor NIO. Cada instancia posee un Selector y atiende
+ * un subconjunto de las conexiones.
+ * 
+ * Funcionamiento general: Bucle select() que procesa lecturas/escrituras listas de sus conexiones
+ * y ejecuta tareas encoladas desde otros hilos (registro de sockets nuevos, escrituras pendientes).
+ * Todo el estado de una conexión se toca solo desde su EventLoop, así no hacen falta locks.
+ */
+
+class EventLoop implements Runnable {
+    // Tamaño del buffer de lectura compartido por todas las conexiones del loop.
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    private final Selector selector;
+    private final Thread thread;
+    // Tareas enviadas desde otros hilos. Se ejecutan en el hilo del loop.
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Evita llamar wakeup() en cada tarea cuando el loop ya fue despertado.
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    // Buffer de lectura reutilizado; las conexiones solo guardan bytes propios si queda un frame a medias.
+    private final ByteBuffer scratch = ByteBuffer.allocate(SCRATCH_SIZE);
+    // Salas fijadas a este loop. Se usa para repartir salas nuevas al loop menos cargado.
+    private final AtomicInteger rooms = new AtomicInteger();
+
+    EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    // Indica si el hilo actual es el de este loop.
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    // Ejecuta la tarea en el hilo del loop (inmediatamente si ya estamos en él).
+    void execute(Runnable task) {
+        if (inLoop()) {
+            task.run();
+            return;
+        }
+        submit(task);
+    }
+
+    // Encola la tarea para la próxima vuelta del loop, aunque ya estemos en él.
+    // Se usa cuando la tarea no puede correr en medio de lo que está haciendo el loop (p.ej. un broadcast).
+    void submit(Runnable task) {
+        tasks.add(task);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    // Registra una conexión en el selector de este loop y luego ejecuta then (puede ser null).
+    // Se usa para conexiones nuevas y para las que se mudan desde otro loop al entrar a una sala.
+    // Si el registro falla (p.ej. la conexión se cerró durante la mudanza) se cierra la conexión y then corre
+    // igual, ya cerrada: quien mudó la conexión puede deshacer lo que preparó para ella (ver joinRoom).
+    void register(NioConnection conn, Runnable then) {
+        execute(() -> {
+            try {
+                SelectionKey key = conn.getChannel().register(selector, SelectionKey.OP_READ, conn);
+                conn.attach(this, key);
+                if (then != null) then.run();
+                conn.resume();
+            } catch (IOException | CancelledKeyException e) {
+                conn.close();
+                if (then != null) then.run();
+            }
+        });
+    }
+
+    int roomCount() {
+        return rooms.get();
+    }
+
+    void roomOpened() {
+        rooms.incrementAndGet();
+    }
+
+    void roomClosed() {
+        rooms.decrementAndGet();
+    }
+
+    ByteBuffer scratch() {
+        return scratch;
+    }
+
+    // Bucle principal: select, tareas pendientes y eventos de E/S.
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+                runTasks();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    NioConnection conn = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) conn.onReadable();
+                        if (key.isValid() && key.isWritable()) conn.flush();
+                    } catch (IOException | CancelledKeyException e) {
+                        conn.close();
+                    } catch (RuntimeException e) {
+                        // Un error procesando una conexión no puede matar el loop: se cierra solo esa conexión.
+                        System.out.println("Error procesando " + conn + ": " + e);
+                        conn.close();
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error en event loop: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Error en tarea del event loop: " + e.getMessage());
+            }
+        }
+    }
+}
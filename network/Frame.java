@@ -0,0 +1,74 @@
+package network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Mensaje ya codificado para el cable, inmutable y compartible entre destinatarios.
+ * 
+ * Funcionamiento general: El servidor codifica cada mensaje una sola vez y encola el mismo Frame
+ * en todos los clientes; cada escritor obtiene su propia vista (buffer()) o escribe el arreglo
+ * directamente (writeTo). Con el protocolo OBJECT el frame empieza con TC_RESET, así es
+ * independiente del estado del ObjectInputStream que lo lee y no deja referencias en su tabla de handles.
+ */
+
+public final class Frame {
+    // Bytes del header de un ObjectOutputStream (STREAM_MAGIC + STREAM_VERSION).
+    private static final int STREAM_HEADER_SIZE = 4;
+
+    private final String type;
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final ByteBuffer view;
+
+    private Frame(String type, byte[] bytes, int offset, int length) {
+        this.type = type;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.view = ByteBuffer.wrap(bytes, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    // Codifica un mensaje según el protocolo. El codec solo se usa en protocolos con frames.
+    public static Frame encode(Message msg, Protocol protocol, MessageCodec codec) throws IOException {
+        if (!protocol.isFramed()) {
+            return encodeObject(msg);
+        }
+        ByteBuffer frame = codec.encode(msg);
+        return new Frame(msg.getType(), frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+    }
+
+    // Serializa el mensaje con un ObjectOutputStream nuevo y reemplaza el header del stream por TC_RESET.
+    // Funcionamiento: Tras un reset las referencias empiezan de cero, así que estos bytes son válidos en
+    // cualquier posición de un stream de objetos ya abierto, para cualquier destinatario.
+    private static Frame encodeObject(Message msg) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(msg);
+        }
+        byte[] bytes = baos.toByteArray();
+        int start = STREAM_HEADER_SIZE - 1;
+        bytes[start] = ObjectStreamConstants.TC_RESET;
+        return new Frame(msg.getType(), bytes, start, bytes.length - start);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    // Tamaño en bytes del frame.
+    public int size() {
+        return length;
+    }
+
+    // Vista de solo lectura con posición propia, para escribir en un canal NIO.
+    public ByteBuffer buffer() {
+        return view.duplicate();
+    }
+
+    // Escribe el frame completo en un stream (sin flush).
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, offset, length);
+    }
+}
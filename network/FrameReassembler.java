@@ -0,0 +1,106 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Junta los fragmentos UDP de cada flujo de media en mensajes completos.
+ * 
+ * Funcionamiento general: Hay un flujo por (id, tipo de media). Cada flujo arma un solo mensaje
+ * a la vez en un buffer reutilizado: si llega un fragmento de una secuencia más nueva, el mensaje
+ * incompleto se abandona (se perdió un fragmento); los fragmentos de secuencias ya entregadas o
+ * abandonadas se descartan por tardíos. No es thread-safe: lo usa un solo hilo receptor.
+ */
+
+class FrameReassembler {
+
+    // Estado de armado de un flujo.
+    private static class Stream {
+        boolean delivered = false; // Si ya se entregó algún mensaje (lastSeq es válido).
+        int lastSeq;               // Última secuencia entregada o abandonada.
+        boolean assembling = false;
+        int seq;                   // Secuencia en armado.
+        int count;                 // Fragmentos esperados.
+        int received;              // Fragmentos recibidos.
+        int length;                // Bytes útiles armados hasta ahora.
+        boolean[] have = new boolean[0];
+        byte[] buffer = new byte[0];
+    }
+
+    private final Map<Long, Stream> streams = new HashMap<>();
+
+    // Procesa un datagrama KIND_MEDIA (en modo lectura). Devuelve los datos completos o null.
+    byte[] accept(ByteBuffer packet) {
+        int base = packet.position();
+        int mediaCode = packet.get(base + 3) & 0xFF;
+        int id = packet.getInt(base + 4);
+        int seq = packet.getInt(base + 8);
+        int index = packet.getShort(base + 12) & 0xFFFF;
+        int count = packet.getShort(base + 14) & 0xFFFF;
+        int payload = packet.remaining() - MediaDatagrams.HEADER_SIZE;
+        if (count == 0 || count > MediaDatagrams.MAX_FRAGMENTS || index >= count || payload > MediaDatagrams.MAX_PAYLOAD) {
+            return null;
+        }
+
+        Stream stream = streams.computeIfAbsent(key(id, mediaCode), k -> new Stream());
+        if (stream.delivered && seq - stream.lastSeq <= 0) {
+            return null; // Tardío o duplicado.
+        }
+        if (stream.assembling && seq != stream.seq) {
+            if (seq - stream.seq < 0) return null; // Fragmento de un mensaje ya abandonado.
+            stream.delivered = true;
+            stream.lastSeq = stream.seq; // Se abandona el mensaje incompleto.
+        }
+        if (!stream.assembling || seq != stream.seq) {
+            start(stream, seq, count);
+        }
+        if (count != stream.count || stream.have[index]) {
+            return null;
+        }
+
+        packet.position(base + MediaDatagrams.HEADER_SIZE);
+        packet.get(stream.buffer, index * MediaDatagrams.MAX_PAYLOAD, payload);
+        packet.position(base);
+        stream.have[index] = true;
+        stream.received++;
+        if (index == count - 1) {
+            stream.length = index * MediaDatagrams.MAX_PAYLOAD + payload;
+        }
+
+        if (stream.received < stream.count) return null;
+
+        stream.assembling = false;
+        stream.delivered = true;
+        stream.lastSeq = seq;
+        return Arrays.copyOf(stream.buffer, stream.length);
+    }
+
+    // Olvida los flujos de un id (p.ej. cuando el participante sale).
+    void forget(int id) {
+        streams.keySet().removeIf(k -> (int) (k >>> 8) == id);
+    }
+
+    // Prepara el buffer reutilizable del flujo para un mensaje nuevo.
+    private static void start(Stream stream, int seq, int count) {
+        stream.assembling = true;
+        stream.seq = seq;
+        stream.count = count;
+        stream.received = 0;
+        stream.length = 0;
+        if (stream.have.length < count) {
+            stream.have = new boolean[count];
+        } else {
+            Arrays.fill(stream.have, 0, count, false);
+        }
+        int capacity = count * MediaDatagrams.MAX_PAYLOAD;
+        if (stream.buffer.length < capacity) {
+            stream.buffer = new byte[capacity];
+        }
+    }
+
+    private static long key(int id, int mediaCode) {
+        return ((long) id << 8) | mediaCode;
+    }
+}
@@ -0,0 +1,117 @@
+package network;
+
+/**
+ * Remuestreo a una frecuencia de voz + IMA-ADPCM: 4 bits por muestra.
+ * 
+ * Funcionamiento general: Cada muestra se codifica como la diferencia con una predicción, cuantizada
+ * a 4 bits con un paso que se adapta a la señal. Cada paquete empieza con el estado del codificador
+ * [predicción (2)][índice de paso (1)][muestras impares (1)], así se decodifica solo y una pérdida
+ * no desincroniza a los siguientes.
+ */
+
+class ImaAdpcmCodec implements AudioCodec {
+
+    private static final int HEADER = 4;
+
+    private static final int[] INDEX_TABLE = {-1, -1, -1, -1, 2, 4, 6, 8, -1, -1, -1, -1, 2, 4, 6, 8};
+
+    private static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+            337, 371, 408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+            2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+            15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    private final Resampler down;
+    private final Resampler up;
+    // Estado del codificador entre paquetes.
+    private int predictor = 0;
+    private int index = 0;
+
+    ImaAdpcmCodec(int rate) {
+        this.down = new Resampler(PCM_RATE, rate);
+        this.up = new Resampler(rate, PCM_RATE);
+    }
+
+    @Override
+    public String getName() {
+        return AudioCodecs.ADPCM_16K;
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int length) {
+        short[] samples = Resampler.toSamples(pcm, length);
+        samples = down.process(samples, samples.length);
+
+        byte[] out = new byte[HEADER + (samples.length + 1) / 2];
+        out[0] = (byte) (predictor >> 8);
+        out[1] = (byte) predictor;
+        out[2] = (byte) index;
+        out[3] = (byte) (samples.length & 1);
+        for (int i = 0; i < samples.length; i++) {
+            int nibble = encodeSample(samples[i]);
+            if ((i & 1) == 0) {
+                out[HEADER + i / 2] = (byte) nibble;
+            } else {
+                out[HEADER + i / 2] |= (byte) (nibble << 4);
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public byte[] decode(byte[] data) {
+        if (data.length < HEADER) return new byte[0];
+        int value = (short) ((data[0] << 8) | (data[1] & 0xFF));
+        int step = Math.max(0, Math.min(STEP_TABLE.length - 1, data[2]));
+        int count = (data.length - HEADER) * 2 - (data[3] & 1);
+
+        short[] samples = new short[count];
+        for (int i = 0; i < count; i++) {
+            int nibble = (data[HEADER + i / 2] >> ((i & 1) * 4)) & 0x0F;
+            int stepSize = STEP_TABLE[step];
+            int diff = stepSize >> 3;
+            if ((nibble & 4) != 0) diff += stepSize;
+            if ((nibble & 2) != 0) diff += stepSize >> 1;
+            if ((nibble & 1) != 0) diff += stepSize >> 2;
+            value += (nibble & 8) != 0 ? -diff : diff;
+            value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            step = Math.max(0, Math.min(STEP_TABLE.length - 1, step + INDEX_TABLE[nibble]));
+            samples[i] = (short) value;
+        }
+        return Resampler.toPcm(up.process(samples, count));
+    }
+
+    // Codifica una muestra y avanza el estado (predicción e índice de paso) como lo hará el decodificador.
+    private int encodeSample(int sample) {
+        int stepSize = STEP_TABLE[index];
+        int diff = sample - predictor;
+        int nibble = 0;
+        if (diff < 0) {
+            nibble = 8;
+            diff = -diff;
+        }
+        int delta = stepSize >> 3;
+        if (diff >= stepSize) {
+            nibble |= 4;
+            diff -= stepSize;
+            delta += stepSize;
+        }
+        stepSize >>= 1;
+        if (diff >= stepSize) {
+            nibble |= 2;
+            diff -= stepSize;
+            delta += stepSize;
+        }
+        stepSize >>= 1;
+        if (diff >= stepSize) {
+            nibble |= 1;
+            delta += stepSize;
+        }
+        predictor += (nibble & 8) != 0 ? -delta : delta;
+        predictor = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predictor));
+        index = Math.max(0, Math.min(STEP_TABLE.length - 1, index + INDEX_TABLE[nibble]));
+        return nibble;
+    }
+}
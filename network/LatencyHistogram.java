@@ -0,0 +1,106 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias sin locks.
+ *
+ * Funcionamiento general: Los valores (en la unidad que elija quien lo usa, p.ej. microsegundos) caen en
+ * cubetas log-lineales: exactas hasta 2 * SUB_BUCKETS y después SUB_BUCKETS cubetas por cada potencia de
+ * dos, así el error relativo de un percentil es de menos de 1/SUB_BUCKETS (~3 %) en todo el rango.
+ * record es un incremento atómico sobre una cubeta: lo pueden llamar muchos hilos sin competir por un lock.
+ * drain toma y pone en cero las cubetas (una por una, también sin lock) y devuelve un Snapshot para
+ * calcular percentiles; un valor registrado durante el drain queda en este snapshot o en el siguiente.
+ */
+
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Mayor exponente representable; los valores más grandes caen en la última cubeta.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    // Registra un valor (los negativos cuentan como 0).
+    public void record(long value) {
+        buckets.incrementAndGet(bucket(Math.max(0, value)));
+    }
+
+    // Devuelve lo registrado desde el drain anterior y deja el histograma vacío.
+    public Snapshot drain() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            if (buckets.get(i) != 0) counts[i] = buckets.getAndSet(i, 0);
+        }
+        return new Snapshot(counts);
+    }
+
+    /** Conteos de un intervalo. No es thread-safe: lo usa un solo hilo (el que reporta). */
+    public static final class Snapshot {
+        private final long[] counts;
+
+        public Snapshot() {
+            this(new long[BUCKETS]);
+        }
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+        }
+
+        // Suma otro snapshot a este (p.ej. para acumular el total de una corrida).
+        public void add(Snapshot other) {
+            for (int i = 0; i < BUCKETS; i++) counts[i] += other.counts[i];
+        }
+
+        public long count() {
+            long total = 0;
+            for (long count : counts) total += count;
+            return total;
+        }
+
+        // Valor por debajo del cual queda la fracción p (0..1) de los registros; 0 si no hay registros.
+        // Devuelve el límite superior de la cubeta, así el percentil nunca se subestima.
+        public long percentile(double p) {
+            long total = count();
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        public long max() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (counts[i] != 0) return upperBound(i);
+            }
+            return 0;
+        }
+
+        // Resumen de una línea: cantidad y p50/p90/p99/p99.9/máx, con la unidad indicada.
+        public String summary(String unit) {
+            return String.format("n=%d p50=%d p90=%d p99=%d p99.9=%d max=%d %s",
+                    count(), percentile(0.5), percentile(0.9), percentile(0.99), percentile(0.999), max(), unit);
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS + 1
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int shift = exponent - SUB_BITS;
+        return 2 * SUB_BUCKETS + (exponent - SUB_BITS - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int exponent = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        int shift = exponent - SUB_BITS;
+        return ((long) (sub + 1) << shift) - 1;
+    }
+}
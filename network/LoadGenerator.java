@@ -0,0 +1,419 @@
+package network;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga sin interfaz: muchos participantes simulados (bots) contra un servidor.
+ *
+ * Funcionamiento general: Cada bot es solo un SocketChannel no bloqueante (protocolo con frames, BINARY por
+ * defecto), sin MeetingClient ni hilos propios, así un proceso sostiene miles de bots con unos pocos hilos. Unos pocos
+ * lectores (-Dmeeting.load.readerThreads, uno por núcleo por defecto) atienden con un Selector cada uno
+ * a los bots que les tocan: arman los frames como el servidor NIO y solo cuentan la media y los PONG.
+ * Los envíos (la media y un PING por segundo) los programa un pool chico (-Dmeeting.load.senderThreads),
+ * que escribe directo en el canal; si el servidor no vacía el socket, el resto del frame queda guardado y
+ * lo que llegue mientras tanto se descarta y se informa como descartes del generador.
+ * Los bots entran de a uno (-Dmeeting.load.rampMillis entre cada uno) en salas de -Dmeeting.load.roomSize
+ * participantes. Todos envían VIDEO de -Dmeeting.load.videoBytes bytes a -Dmeeting.load.videoFps y los
+ * primeros -Dmeeting.load.talkers de cada sala envían además AUDIO de 1024 bytes de PCM con la cadencia real
+ * de la captura (~86 paquetes por segundo). La media va siempre por TCP.
+ * Cada paquete lleva al principio una marca y la hora de envío (System.nanoTime). Como emisores y
+ * receptores están en el mismo proceso, el receptor calcula la latencia de punta a punta sin depender de
+ * relojes sincronizados. Por eso los bots ofrecen solo audio pcm (a menos que se fije
+ * -Dmeeting.audio.codecs): un codec con pérdida no conserva la marca y su audio solo se cuenta como tráfico.
+ * Cada -Dmeeting.load.reportSeconds se imprimen mensajes y bytes por segundo enviados y recibidos, los
+ * percentiles de latencia de VIDEO y AUDIO, el RTT de los PING y los hilos del proceso; al terminar
+ * (-Dmeeting.load.seconds), el total de la corrida.
+ *
+ * Uso: java -Dmeeting.host=... -Dmeeting.port=... -Dmeeting.load.bots=1000 -cp ... network.LoadGenerator
+ */
+
+public class LoadGenerator {
+
+    // Marca de los paquetes de prueba ("LOAD") seguida de la hora de envío.
+    private static final int MAGIC = 0x4C4F4144;
+    private static final int HEADER_BYTES = 12;
+    // Paquete de audio de Main2: 1024 bytes de PCM de 16 bits mono a 44,1 kHz.
+    private static final int AUDIO_BYTES = 1024;
+    private static final long AUDIO_PERIOD_MICROS = AUDIO_BYTES / 2 * 1_000_000L / AudioCodec.PCM_RATE;
+    // Intervalo de los PING de cada bot, como MeetingClient.
+    private static final long PING_INTERVAL_MS = 1000;
+    // Buffer de lectura compartido por los bots de un lector (como el de EventLoop).
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    private final String host;
+    private final int port;
+    private final MessageCodec codec;
+    private final int roomSize;
+    private final int talkers;
+    private final int videoBytes;
+    private final int videoFps;
+    private final ScheduledExecutorService senders;
+    private final Reader[] readers;
+    private final Random random = new Random();
+
+    // Contadores compartidos por todos los bots. LongAdder y LatencyHistogram no usan locks.
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger connected = new AtomicInteger();
+    private final LatencyHistogram videoLatency = new LatencyHistogram();
+    private final LatencyHistogram audioLatency = new LatencyHistogram();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final LatencyHistogram rtt = new LatencyHistogram();
+
+    LoadGenerator(String host, int port, Protocol protocol, int roomSize, int talkers, int videoBytes, int videoFps,
+                  int senderThreads, int readerThreads) throws IOException {
+        if (!protocol.isFramed()) {
+            throw new IllegalArgumentException("El generador de carga requiere un protocolo con frames, no " + protocol);
+        }
+        this.host = host;
+        this.port = port;
+        this.codec = protocol.newCodec();
+        this.roomSize = Math.max(1, roomSize);
+        this.talkers = talkers;
+        this.videoBytes = Math.max(HEADER_BYTES, videoBytes);
+        this.videoFps = videoFps;
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(Math.max(1, senderThreads), r -> {
+            Thread thread = new Thread(r, "load-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.setRemoveOnCancelPolicy(true);
+        this.senders = pool;
+        this.readers = new Reader[Math.max(1, readerThreads)];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Reader("load-reader-" + i);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Los bots ofrecen PCM (ver la documentación de la clase).
+        if (System.getProperty("meeting.audio.codecs") == null) System.setProperty("meeting.audio.codecs", AudioCodecs.PCM);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        LoadGenerator generator = new LoadGenerator(
+                System.getProperty("meeting.host", "localhost"),
+                Integer.getInteger("meeting.port", 5000),
+                Protocol.fromName(System.getProperty("meeting.protocol"), Protocol.BINARY),
+                Integer.getInteger("meeting.load.roomSize", MeetingServer.MAX_PARTICIPANTS),
+                Integer.getInteger("meeting.load.talkers", 1),
+                Integer.getInteger("meeting.load.videoBytes", 3000),
+                Integer.getInteger("meeting.load.videoFps", 10),
+                Integer.getInteger("meeting.load.senderThreads", cores),
+                Integer.getInteger("meeting.load.readerThreads", cores));
+        generator.run(
+                Integer.getInteger("meeting.load.bots", 16),
+                Long.getLong("meeting.load.rampMillis", 20),
+                Long.getLong("meeting.load.seconds", 60),
+                Long.getLong("meeting.load.reportSeconds", 5));
+        System.exit(0);
+    }
+
+    // Conecta los bots, genera carga durante la duración pedida y reporta periódicamente.
+    // Funcionamiento: Los reportes empiezan durante la rampa, así se ve cómo degrada el servidor al crecer.
+    void run(int count, long rampMillis, long seconds, long reportSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(reportSeconds);
+        LatencyHistogram.Snapshot totalVideo = new LatencyHistogram.Snapshot();
+        LatencyHistogram.Snapshot totalAudio = new LatencyHistogram.Snapshot();
+        long[] last = new long[4];
+        long lastReport = start;
+
+        int created = 0;
+        while (System.nanoTime() < end) {
+            if (created < count) {
+                connect(created++);
+                if (rampMillis > 0) Thread.sleep(rampMillis);
+            } else {
+                Thread.sleep(Math.max(1, TimeUnit.NANOSECONDS.toMillis(Math.min(nextReport, end) - System.nanoTime())));
+            }
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                report(now - lastReport, last, totalVideo, totalAudio);
+                lastReport = now;
+                nextReport = now + TimeUnit.SECONDS.toNanos(reportSeconds);
+            }
+        }
+        report(System.nanoTime() - lastReport, last, totalVideo, totalAudio);
+        senders.shutdownNow();
+        System.out.println("Total " + String.format("%.1f", (System.nanoTime() - start) / 1e9) + " s, "
+                + sentMessages.sum() + " enviados, " + receivedMessages.sum() + " recibidos, "
+                + dropped.sum() + " descartados, " + errors.sum() + " errores, "
+                + "pico de " + threads.getPeakThreadCount() + " hilos en el generador");
+        System.out.println("  VIDEO " + totalVideo.summary("us"));
+        System.out.println("  AUDIO " + totalAudio.summary("us"));
+    }
+
+    // Crea un bot, lo une a su sala y programa sus envíos. Un fallo de conexión se cuenta y la corrida sigue.
+    // Funcionamiento: La conexión y el JOIN son bloqueantes (en el hilo principal, durante la rampa); después
+    // el canal pasa a no bloqueante y se entrega a un lector.
+    private void connect(int index) {
+        String name = "bot-" + index;
+        int slot = index % roomSize;
+        Bot bot;
+        try {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer join = codec.encode(new Message("JOIN", name, name + " se unió")
+                    .withRoom("load-" + (index / roomSize)).withCodec(AudioCodecs.offer()));
+            while (join.hasRemaining()) channel.write(join);
+            channel.configureBlocking(false);
+            bot = new Bot(name, channel);
+        } catch (IOException e) {
+            errors.increment();
+            System.out.println("No se pudo conectar " + name + ": " + e.getMessage());
+            return;
+        }
+        connected.incrementAndGet();
+        readers[index % readers.length].add(bot);
+        if (videoFps > 0) {
+            long period = 1_000_000L / videoFps;
+            bot.schedule(() -> bot.send("VIDEO", videoBytes), random.nextInt((int) period), period);
+        }
+        if (slot < talkers) {
+            bot.schedule(() -> bot.send("AUDIO", AUDIO_BYTES), random.nextInt((int) AUDIO_PERIOD_MICROS),
+                    AUDIO_PERIOD_MICROS);
+        }
+        long pingMicros = PING_INTERVAL_MS * 1000;
+        bot.schedule(bot::ping, random.nextInt((int) pingMicros), pingMicros);
+    }
+
+    // Imprime el intervalo: tasas, percentiles de latencia y RTT. Acumula los percentiles en los totales.
+    private void report(long elapsedNanos, long[] last, LatencyHistogram.Snapshot totalVideo,
+                        LatencyHistogram.Snapshot totalAudio) {
+        double seconds = Math.max(1e-9, elapsedNanos / 1e9);
+        long[] now = {sentMessages.sum(), sentBytes.sum(), receivedMessages.sum(), receivedBytes.sum()};
+        LatencyHistogram.Snapshot video = videoLatency.drain();
+        LatencyHistogram.Snapshot audio = audioLatency.drain();
+        LatencyHistogram.Snapshot ping = rtt.drain();
+        totalVideo.add(video);
+        totalAudio.add(audio);
+        System.out.println(String.format("bots=%d hilos=%d enviados %.0f msg/s %.1f KB/s, recibidos %.0f msg/s %.1f KB/s, "
+                        + "descartados %d, errores %d",
+                connected.get(), threads.getThreadCount(),
+                (now[0] - last[0]) / seconds, (now[1] - last[1]) / seconds / 1024,
+                (now[2] - last[2]) / seconds, (now[3] - last[3]) / seconds / 1024, dropped.sum(), errors.sum()));
+        System.out.println("  VIDEO " + video.summary("us"));
+        System.out.println("  AUDIO " + audio.summary("us"));
+        System.out.println("  RTT   " + ping.summary("ms"));
+        System.arraycopy(now, 0, last, 0, now.length);
+    }
+
+    // Paquete de prueba: marca, hora de envío y relleno hasta size bytes.
+    private static byte[] payload(int size) {
+        byte[] data = new byte[size];
+        ByteBuffer.wrap(data).putInt(MAGIC).putLong(System.nanoTime());
+        return data;
+    }
+
+    // Latencia (us) de un paquete de prueba recibido, o -1 si no tiene la marca.
+    private static long latencyMicros(byte[] data) {
+        if (data == null || data.length < HEADER_BYTES) return -1;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.getInt() != MAGIC) return -1;
+        return (System.nanoTime() - buffer.getLong()) / 1000;
+    }
+
+    /**
+     * Participante simulado. send y ping los llaman los hilos del pool de envío (sincronizados sobre el bot);
+     * la lectura (pending) la hace solo su lector.
+     */
+    private final class Bot {
+        private final String name;
+        private final SocketChannel channel;
+        private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+        // Resto de un frame que el socket no aceptó entero.
+        private ByteBuffer unsent;
+        // Bytes leídos de un frame incompleto (en modo escritura); null si no hay.
+        private ByteBuffer pending;
+        private volatile boolean lost = false;
+
+        Bot(String name, SocketChannel channel) {
+            this.name = name;
+            this.channel = channel;
+        }
+
+        synchronized void schedule(Runnable task, long delayMicros, long periodMicros) {
+            if (!lost) tasks.add(senders.scheduleAtFixedRate(task, delayMicros, periodMicros, TimeUnit.MICROSECONDS));
+        }
+
+        void send(String type, int size) {
+            Message msg = new Message(type, name, payload(size));
+            if (write("VIDEO".equals(type) ? msg.withLayer(0) : msg)) {
+                sentMessages.increment();
+                sentBytes.add(size);
+            }
+        }
+
+        // PING con la hora local; el PONG la devuelve (ver received).
+        void ping() {
+            write(new Message("PING", name, String.valueOf(System.nanoTime())));
+        }
+
+        // Escribe un frame sin bloquear. Devuelve false si se descartó o si el bot perdió la conexión.
+        // Funcionamiento: Primero se intenta terminar el frame anterior; si todavía no entra, el nuevo se descarta.
+        private synchronized boolean write(Message msg) {
+            if (lost) return false;
+            try {
+                if (unsent != null) {
+                    channel.write(unsent);
+                    if (unsent.hasRemaining()) {
+                        dropped.increment();
+                        return false;
+                    }
+                    unsent = null;
+                }
+                ByteBuffer frame = codec.encode(msg);
+                channel.write(frame);
+                if (frame.hasRemaining()) unsent = frame;
+                return true;
+            } catch (IOException e) {
+                lose();
+                return false;
+            }
+        }
+
+        // Lee lo disponible y procesa los frames completos. Solo en el hilo de su lector.
+        void onReadable(ByteBuffer scratch) throws IOException {
+            ByteBuffer buf = pending != null ? pending : scratch;
+            if (channel.read(buf) < 0) throw new IOException("El servidor cerró la conexión");
+            buf.flip();
+            Message msg;
+            while ((msg = codec.decode(buf)) != null) received(msg);
+            if (!buf.hasRemaining()) {
+                pending = null;
+                scratch.clear();
+                return;
+            }
+            // Frame incompleto: se copia a un buffer propio del tamaño del frame.
+            int needed = Math.max(Math.max(MessageCodec.frameSize(buf), MessageCodec.HEADER_SIZE), buf.remaining());
+            if (buf == pending && buf.capacity() >= needed) {
+                buf.compact();
+                return;
+            }
+            ByteBuffer copy = ByteBuffer.allocate(needed);
+            copy.put(buf);
+            scratch.clear();
+            pending = copy;
+        }
+
+        private void received(Message msg) {
+            switch (msg.getType()) {
+                case "VIDEO":
+                    received(msg.getData(), videoLatency);
+                    break;
+                case "AUDIO":
+                    received(msg.getData(), audioLatency);
+                    break;
+                case "PONG":
+                    // "eco backlog hora-del-servidor": el eco es la hora del PING.
+                    try {
+                        long sent = Long.parseLong(msg.getText().trim().split(" ")[0]);
+                        rtt.record((System.nanoTime() - sent) / 1_000_000);
+                    } catch (NumberFormatException e) {
+                        // PONG de otro formato: no cuenta para el RTT.
+                    }
+                    break;
+                default:
+                    break; // Anuncios de la sala, chat, etc.: no se miden.
+            }
+        }
+
+        private void received(byte[] data, LatencyHistogram latency) {
+            if (data == null) return;
+            receivedMessages.increment();
+            receivedBytes.add(data.length);
+            long micros = latencyMicros(data);
+            if (micros >= 0) latency.record(micros);
+        }
+
+        // Se perdió la conexión: deja de enviar y cuenta el error (una sola vez).
+        synchronized void lose() {
+            if (lost) return;
+            lost = true;
+            connected.decrementAndGet();
+            errors.increment();
+            for (ScheduledFuture<?> task : tasks) task.cancel(false);
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ya se contó el error.
+            }
+        }
+    }
+
+    /** Hilo lector: un Selector con los canales de una parte de los bots. */
+    private final class Reader implements Runnable {
+        private final Selector selector;
+        private final Queue<Bot> added = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer scratch = ByteBuffer.allocate(SCRATCH_SIZE);
+
+        Reader(String name) throws IOException {
+            this.selector = Selector.open();
+            Thread thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        // Entrega un bot al lector; se registra en su hilo.
+        void add(Bot bot) {
+            added.add(bot);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Bot bot;
+                    while ((bot = added.poll()) != null) {
+                        try {
+                            bot.channel.register(selector, SelectionKey.OP_READ, bot);
+                        } catch (IOException e) {
+                            bot.lose();
+                        }
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Bot ready = (Bot) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) ready.onReadable(scratch);
+                        } catch (IOException | RuntimeException e) {
+                            scratch.clear(); // Puede haber quedado a medio leer.
+                            key.cancel();
+                            ready.lose();
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error en el lector de carga: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Socket UDP de media del cliente.
+ * 
+ * Funcionamiento general: Se conecta (en el sentido UDP: fija el destino) al puerto que el servidor
+ * ofreció en MEDIA_UDP y hace el handshake: manda HELLO con el token hasta recibir HELLO_ACK.
+ * Luego envía VIDEO/AUDIO partidos en datagramas con una secuencia por tipo, y un hilo receptor arma
+ * la media entrante y la entrega con el ID del remitente (sin nombre: lo resuelve MeetingClient).
+ */
+
+class MediaDatagramClient {
+
+    // Cada cuánto se repite el HELLO mientras no llega la confirmación.
+    private static final long HELLO_INTERVAL_MS = 200;
+
+    private final DatagramChannel channel;
+    private final int token;
+    private final Consumer<Message> onMedia;
+    private final FrameReassembler reassembler = new FrameReassembler();
+    private final CountDownLatch acknowledged = new CountDownLatch(1);
+    private final int[] seq = new int[256]; // Próxima secuencia por código de media (tipo y capa).
+
+    MediaDatagramClient(InetSocketAddress server, int token, Consumer<Message> onMedia) throws IOException {
+        this.token = token;
+        this.onMedia = onMedia;
+        this.channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, MediaDatagrams.RECEIVE_BUFFER);
+        channel.connect(server);
+        Thread receiver = new Thread(this::receiveLoop, "media-udp-client");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    // Handshake: repite HELLO hasta que llegue HELLO_ACK o se cumpla el timeout.
+    // Devuelve false si el camino UDP no funciona (p.ej. bloqueado por un firewall).
+    boolean handshake(long timeoutMillis) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            channel.write(MediaDatagrams.control(MediaDatagrams.KIND_HELLO, token));
+            if (acknowledged.await(HELLO_INTERVAL_MS, TimeUnit.MILLISECONDS)) return true;
+        }
+        return false;
+    }
+
+    // Envía un mensaje VIDEO/AUDIO como datagramas, con su secuencia (o una propia si no trae) y su hora de captura.
+    synchronized void send(Message msg) throws IOException {
+        int code = MediaDatagrams.mediaCode(msg);
+        int sequence = msg.getSequence() != 0 ? msg.getSequence() : seq[code]++;
+        for (ByteBuffer datagram : MediaDatagrams.packetize(code, token, sequence, msg.getCaptureTime(), msg.getData())) {
+            channel.write(datagram);
+        }
+    }
+
+    // Olvida el flujo de un remitente que salió (su ID puede reutilizarse con secuencias desde cero).
+    void forget(int participantId) {
+        synchronized (reassembler) {
+            reassembler.forget(participantId);
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error cerrando media UDP: " + e.getMessage());
+        }
+    }
+
+    // Bucle del hilo receptor. Termina al cerrarse el canal.
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(MediaDatagrams.MAX_DATAGRAM + 1);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                if (channel.receive(buffer) == null) continue;
+                buffer.flip();
+                if (buffer.remaining() > MediaDatagrams.MAX_DATAGRAM || !MediaDatagrams.isValid(buffer)) continue;
+
+                byte kind = MediaDatagrams.kind(buffer);
+                if (kind == MediaDatagrams.KIND_HELLO_ACK) {
+                    acknowledged.countDown();
+                } else if (kind == MediaDatagrams.KIND_MEDIA) {
+                    int code = buffer.get(buffer.position() + 3) & 0xFF;
+                    String type = MediaDatagrams.mediaType(code);
+                    if (type == null) continue;
+                    byte[] data;
+                    synchronized (reassembler) {
+                        data = reassembler.accept(buffer);
+                    }
+                    if (data != null) {
+                        onMedia.accept(new Message(type, null, MediaDatagrams.id(buffer), null, data)
+                                .withLayer(MediaDatagrams.layer(code))
+                                .withSequence(MediaDatagrams.seq(buffer))
+                                .withCaptureTime(MediaDatagrams.captureTime(buffer)));
+                    }
+                }
+            } catch (IOException e) {
+                // Un ICMP "puerto inalcanzable" se reporta como error en un canal conectado; se sigue recibiendo.
+                if (!channel.isOpen()) return;
+            }
+        }
+    }
+}
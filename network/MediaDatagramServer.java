@@ -0,0 +1,157 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Transporte UDP de media del servidor, paralelo al canal TCP de control.
+ * 
+ * Funcionamiento general: El cliente pide el camino UDP por TCP (MEDIA_UDP); el servidor le responde
+ * con el puerto UDP y un token de sesión. El cliente manda HELLO con ese token desde su socket UDP:
+ * así el servidor aprende su endpoint (también detrás de NAT) y confirma con HELLO_ACK. Desde ahí el
+ * VIDEO/AUDIO de ese cliente viaja por datagramas en ambos sentidos: un paquete perdido solo arruina
+ * su propio frame en vez de frenar todo el stream como en TCP. Chat, JOIN y el resto del control
+ * siguen por TCP. Se activa con -Dmeeting.udp=true (puerto -Dmeeting.udp.port, por defecto el mismo
+ * número que el puerto TCP).
+ */
+
+class MediaDatagramServer {
+
+    private final int port;
+    private final DatagramChannel channel;
+    // Recibe cada mensaje de media armado, ya con su remitente; lo reenvía a la sala en el hilo de la sala.
+    private final BiConsumer<Participant, Message> onMedia;
+    private final Map<Integer, Participant> byToken = new ConcurrentHashMap<>();
+    private final Map<Participant, Integer> tokens = new ConcurrentHashMap<>();
+    private final FrameReassembler reassembler = new FrameReassembler();
+    private final SecureRandom random = new SecureRandom();
+
+    MediaDatagramServer(int port, BiConsumer<Participant, Message> onMedia) throws IOException {
+        this.port = port;
+        this.onMedia = onMedia;
+        this.channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, MediaDatagrams.RECEIVE_BUFFER);
+    }
+
+    // Crea el transporte UDP si está activado por propiedades del sistema; si no, devuelve null.
+    static MediaDatagramServer fromSystemProperties(int tcpPort, BiConsumer<Participant, Message> onMedia)
+            throws IOException {
+        if (!Boolean.getBoolean("meeting.udp")) return null;
+        MediaDatagramServer server = new MediaDatagramServer(Integer.getInteger("meeting.udp.port", tcpPort), onMedia);
+        server.start();
+        return server;
+    }
+
+    // Lanza el hilo receptor (daemon).
+    void start() {
+        Thread receiver = new Thread(this::receiveLoop, "media-udp");
+        receiver.setDaemon(true);
+        receiver.start();
+        System.out.println("Media UDP en puerto " + port);
+    }
+
+    // Procesa los mensajes de control de media que llegan por TCP. Devuelve la respuesta o null.
+    // Funcionamiento: MEDIA_UDP asigna (o reutiliza) un token y responde "puerto token";
+    // MEDIA_TCP vuelve el participante al transporte TCP.
+    Message handleControl(Participant participant, Message msg) {
+        if ("MEDIA_TCP".equals(msg.getType())) {
+            participant.setMediaEndpoint(null);
+            return null;
+        }
+        if (!"MEDIA_UDP".equals(msg.getType())) return null;
+
+        int token = tokens.computeIfAbsent(participant, p -> {
+            int candidate;
+            do {
+                candidate = random.nextInt();
+            } while (candidate == 0 || byToken.putIfAbsent(candidate, p) != null);
+            return candidate;
+        });
+        return new Message("MEDIA_UDP", "Servidor", port + " " + token);
+    }
+
+    // Olvida a un participante que se desconectó.
+    void unregister(Participant participant) {
+        Integer token = tokens.remove(participant);
+        if (token == null) return;
+        byToken.remove(token);
+        synchronized (reassembler) {
+            reassembler.forget(token);
+        }
+    }
+
+    // Parte un mensaje de media para los receptores UDP. El id de los datagramas es el del remitente.
+    List<ByteBuffer> packetize(Participant from, Message msg, int seq) {
+        return MediaDatagrams.packetize(MediaDatagrams.mediaCode(msg), from.getParticipantId(), seq,
+                msg.getCaptureTime(), msg.getData());
+    }
+
+    // Envía datagramas ya armados a un receptor. Los buffers se comparten: se envía un duplicate de cada uno.
+    // Funcionamiento: Un error de envío solo se registra; UDP no garantiza entrega de todos modos.
+    void send(List<ByteBuffer> datagrams, SocketAddress endpoint) {
+        try {
+            for (ByteBuffer datagram : datagrams) {
+                channel.send(datagram.duplicate(), endpoint);
+            }
+        } catch (IOException e) {
+            System.out.println("Error enviando media UDP a " + endpoint + ": " + e.getMessage());
+        }
+    }
+
+    // Bucle del hilo receptor: valida cada datagrama, atiende HELLO y arma la media entrante.
+    private void receiveLoop() {
+        // Un byte extra para detectar datagramas más grandes que el máximo (llegarían truncados).
+        ByteBuffer buffer = ByteBuffer.allocate(MediaDatagrams.MAX_DATAGRAM + 1);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress source = channel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() > MediaDatagrams.MAX_DATAGRAM || !MediaDatagrams.isValid(buffer)) continue;
+
+                Participant participant = byToken.get(MediaDatagrams.id(buffer));
+                if (participant == null) continue;
+
+                switch (MediaDatagrams.kind(buffer)) {
+                    case MediaDatagrams.KIND_HELLO:
+                        participant.setMediaEndpoint(source);
+                        channel.send(MediaDatagrams.control(MediaDatagrams.KIND_HELLO_ACK, MediaDatagrams.id(buffer)), source);
+                        break;
+                    case MediaDatagrams.KIND_MEDIA:
+                        // Solo se acepta media desde el endpoint registrado con HELLO.
+                        if (!source.equals(participant.getMediaEndpoint())) break;
+                        int code = buffer.get(buffer.position() + 3) & 0xFF;
+                        String type = MediaDatagrams.mediaType(code);
+                        if (type == null) break;
+                        byte[] data;
+                        synchronized (reassembler) {
+                            data = reassembler.accept(buffer);
+                        }
+                        if (data != null) {
+                            onMedia.accept(participant, new Message(
+                                    type, participant.getUsername(), participant.getParticipantId(), null, data)
+                                    .withLayer(MediaDatagrams.layer(code))
+                                    .withSequence(MediaDatagrams.seq(buffer))
+                                    .withCaptureTime(MediaDatagrams.captureTime(buffer)));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch (IOException e) {
+                if (!channel.isOpen()) return;
+                System.out.println("Error recibiendo media UDP: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato de los datagramas UDP de media (VIDEO/AUDIO).
+ * 
+ * Funcionamiento general: Cada datagrama lleva un header fijo de 24 bytes
+ * [magic][versión][tipo de paquete][tipo de media][id (4)][secuencia (4)][fragmento (2)][total (2)]
+ * [hora de captura (8)] seguido de hasta MAX_PAYLOAD bytes. Un mensaje de media con número de secuencia N se parte en
+ * tantos fragmentos como haga falta para no superar el MTU habitual; el receptor los junta con
+ * FrameReassembler. El campo id es el token de sesión en sentido cliente → servidor y el ID de
+ * participante del remitente en sentido servidor → cliente. El tipo de media lleva en los 4 bits
+ * bajos VIDEO/AUDIO y en los altos la capa de simulcast del video, así cada capa es un flujo aparte
+ * (secuencia y armado propios). La secuencia y la hora de captura son las del Message (ver Message.getSequence
+ * y getCaptureTime), así el receptor mide pérdida y latencia de punta a punta sobre cualquier transporte.
+ */
+
+final class MediaDatagrams {
+    static final byte MAGIC = 0x4D;
+    static final byte VERSION = 2;
+
+    // Tipos de paquete.
+    static final byte KIND_HELLO = 1;     // Cliente → servidor: registra el endpoint UDP del token.
+    static final byte KIND_HELLO_ACK = 2; // Servidor → cliente: confirma que el camino UDP funciona.
+    static final byte KIND_MEDIA = 3;     // Fragmento de un mensaje VIDEO/AUDIO.
+
+    // Tipos de media.
+    static final int MEDIA_VIDEO = 1;
+    static final int MEDIA_AUDIO = 2;
+
+    static final int HEADER_SIZE = 24;
+    // Payload máximo por datagrama: 1200 + header cabe en el MTU típico (1500) sin fragmentación IP.
+    static final int MAX_PAYLOAD = 1200;
+    // Fragmentos máximos por mensaje: alcanza para los frames más grandes del canal TCP (MAX_FRAME_SIZE).
+    static final int MAX_FRAGMENTS = 4096;
+    // Tamaño de buffer suficiente para recibir cualquier datagrama válido.
+    static final int MAX_DATAGRAM = HEADER_SIZE + MAX_PAYLOAD;
+    // Buffer de recepción del socket: absorbe la ráfaga de fragmentos de varios frames de video.
+    static final int RECEIVE_BUFFER = 1 << 20;
+
+    private MediaDatagrams() {}
+
+    // Código de media para un tipo de mensaje, o 0 si no viaja por UDP.
+    static int mediaCode(String type) {
+        if ("VIDEO".equals(type)) return MEDIA_VIDEO;
+        if ("AUDIO".equals(type)) return MEDIA_AUDIO;
+        return 0;
+    }
+
+    // Código de media de un mensaje, con su capa de simulcast si es video.
+    static int mediaCode(Message msg) {
+        int code = mediaCode(msg.getType());
+        return code == MEDIA_VIDEO ? code | (msg.getLayer() << 4) : code;
+    }
+
+    // Capa de simulcast de un código de media.
+    static int layer(int code) {
+        return code >>> 4;
+    }
+
+    static boolean isMediaType(String type) {
+        return mediaCode(type) != 0;
+    }
+
+    static String mediaType(int code) {
+        if (layer(code) >= VideoLayers.MAX_LAYERS || (layer(code) != 0 && (code & 0x0F) != MEDIA_VIDEO)) return null;
+        switch (code & 0x0F) {
+            case MEDIA_VIDEO: return "VIDEO";
+            case MEDIA_AUDIO: return "AUDIO";
+            default: return null;
+        }
+    }
+
+    // Datagrama de control (HELLO o HELLO_ACK) sin payload.
+    static ByteBuffer control(byte kind, int id) {
+        ByteBuffer packet = ByteBuffer.allocate(HEADER_SIZE);
+        writeHeader(packet, kind, 0, id, 0, 0, 1, 0);
+        packet.flip();
+        return packet;
+    }
+
+    // Parte los datos de un mensaje de media en datagramas listos para enviar.
+    // Los buffers devueltos se pueden enviar a varios destinos usando duplicate().
+    static List<ByteBuffer> packetize(int mediaCode, int id, int seq, long captureTime, byte[] data) {
+        int count = Math.max(1, (data.length + MAX_PAYLOAD - 1) / MAX_PAYLOAD);
+        if (count > MAX_FRAGMENTS) {
+            throw new IllegalArgumentException("Mensaje de media demasiado grande: " + data.length);
+        }
+        List<ByteBuffer> packets = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            int offset = index * MAX_PAYLOAD;
+            int length = Math.min(MAX_PAYLOAD, data.length - offset);
+            ByteBuffer packet = ByteBuffer.allocate(HEADER_SIZE + length);
+            writeHeader(packet, KIND_MEDIA, mediaCode, id, seq, index, count, captureTime);
+            packet.put(data, offset, length);
+            packet.flip();
+            packets.add(packet);
+        }
+        return packets;
+    }
+
+    private static void writeHeader(ByteBuffer packet, byte kind, int mediaCode, int id, int seq, int index, int count,
+                                    long captureTime) {
+        packet.put(MAGIC).put(VERSION).put(kind).put((byte) mediaCode)
+                .putInt(id).putInt(seq).putShort((short) index).putShort((short) count).putLong(captureTime);
+    }
+
+    // Verifica magic y versión de un datagrama recibido (en modo lectura).
+    static boolean isValid(ByteBuffer packet) {
+        return packet.remaining() >= HEADER_SIZE
+                && packet.get(packet.position()) == MAGIC
+                && packet.get(packet.position() + 1) == VERSION;
+    }
+
+    static byte kind(ByteBuffer packet) {
+        return packet.get(packet.position() + 2);
+    }
+
+    static int id(ByteBuffer packet) {
+        return packet.getInt(packet.position() + 4);
+    }
+
+    static int seq(ByteBuffer packet) {
+        return packet.getInt(packet.position() + 8);
+    }
+
+    static long captureTime(ByteBuffer packet) {
+        return packet.getLong(packet.position() + 16);
+    }
+}
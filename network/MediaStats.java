@@ -0,0 +1,88 @@
+package network;
+
+/**
+ * Calidad de un flujo de media recibido (un remitente, un tipo y una capa) durante el último intervalo.
+ *
+ * Funcionamiento general: La arma MeetingClient una vez por segundo (ver MediaStatsTracker) y la entrega a
+ * MeetingListener.updateMediaStats. La pérdida sale de los huecos en los números de secuencia y el
+ * desorden de los mensajes que llegan con una secuencia menor a la última vista. La latencia es de punta a
+ * punta (de la captura en el remitente a la llegada acá) sobre el reloj de la reunión; solo se conoce si
+ * los dos relojes están sincronizados y su error es del orden de la mitad de los RTT de cada lado.
+ */
+
+public final class MediaStats {
+
+    private final String sender;
+    private final String type;
+    private final int layer;
+    private final long received;
+    private final long lost;
+    private final long reordered;
+    private final long latencySamples;
+    private final long latencyP50Micros;
+    private final long latencyP95Micros;
+    private final long latencyMaxMicros;
+
+    MediaStats(String sender, String type, int layer, long received, long lost, long reordered,
+               LatencyHistogram.Snapshot latency) {
+        this.sender = sender;
+        this.type = type;
+        this.layer = layer;
+        this.received = received;
+        this.lost = lost;
+        this.reordered = reordered;
+        this.latencySamples = latency.count();
+        this.latencyP50Micros = latency.percentile(0.5);
+        this.latencyP95Micros = latency.percentile(0.95);
+        this.latencyMaxMicros = latency.max();
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    // VIDEO o AUDIO.
+    public String getType() {
+        return type;
+    }
+
+    // Capa de simulcast del video (0 en el audio).
+    public int getLayer() {
+        return layer;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    // Fracción perdida (0..1) de lo que se esperaba en el intervalo.
+    public double getLossRatio() {
+        long expected = received + lost;
+        return expected > 0 ? (double) lost / expected : 0;
+    }
+
+    public long getReordered() {
+        return reordered;
+    }
+
+    // Indica si hubo mensajes con hora de captura y relojes sincronizados en el intervalo.
+    public boolean hasLatency() {
+        return latencySamples > 0;
+    }
+
+    public long getLatencyP50Micros() {
+        return latencyP50Micros;
+    }
+
+    public long getLatencyP95Micros() {
+        return latencyP95Micros;
+    }
+
+    public long getLatencyMaxMicros() {
+        return latencyMaxMicros;
+    }
+}
@@ -0,0 +1,105 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Contabilidad de la media recibida por flujo (remitente, tipo y capa), del lado del receptor.
+ *
+ * Funcionamiento general: MeetingClient pasa cada VIDEO/AUDIO recibido con la hora de llegada en el reloj de
+ * la reunión. Cada flujo recuerda la mayor secuencia vista: una secuencia mayor avanza el flujo (los huecos
+ * son pérdidas) y una menor o repetida cuenta como desorden. report cierra el intervalo: lo esperado es
+ * cuánto avanzó la secuencia y lo perdido, lo esperado que no llegó. Un flujo sin mensajes durante
+ * IDLE_MILLIS (p.ej. el remitente se calló o el servidor cambió de capa) deja de reportarse.
+ * La media llega por TCP y por UDP desde hilos distintos: cada flujo sincroniza sobre sí mismo.
+ */
+
+final class MediaStatsTracker {
+
+    private static final long IDLE_MILLIS = 5000;
+
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    // Registra un mensaje de media recibido. now es la hora de llegada en el reloj de la reunión (0 si no se conoce).
+    void received(String sender, Message msg, long now) {
+        String key = sender + '/' + msg.getType() + '/' + msg.getLayer();
+        Stream stream = streams.get(key);
+        if (stream == null) {
+            stream = streams.computeIfAbsent(key, k -> new Stream(sender, msg.getType(), msg.getLayer()));
+        }
+        long capture = msg.getCaptureTime();
+        stream.received(msg.getSequence(), capture != 0 && now != 0 ? now - capture : -1);
+    }
+
+    // Olvida los flujos de un remitente que salió (si vuelve, su secuencia empieza de nuevo).
+    void forget(String sender) {
+        streams.values().removeIf(stream -> stream.sender.equals(sender));
+    }
+
+    // Cierra el intervalo y devuelve la calidad de cada flujo activo.
+    List<MediaStats> report() {
+        long now = System.currentTimeMillis();
+        streams.values().removeIf(stream -> stream.idleSince(now) > IDLE_MILLIS);
+        List<MediaStats> report = new ArrayList<>();
+        for (Stream stream : streams.values()) report.add(stream.report());
+        report.sort((a, b) -> a.getSender().equals(b.getSender())
+                ? a.getType().compareTo(b.getType()) : a.getSender().compareTo(b.getSender()));
+        return report;
+    }
+
+    /** Estado de un flujo. Las diferencias de secuencia se calculan en int para tolerar la vuelta del contador. */
+    private static final class Stream {
+        final String sender;
+        final String type;
+        final int layer;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private boolean started = false;
+        private int highest;         // Mayor secuencia vista.
+        private int reportedHighest; // Mayor secuencia al cerrar el intervalo anterior.
+        private long received = 0;   // Mensajes del intervalo.
+        private long sequenced = 0;  // Mensajes del intervalo con secuencia.
+        private long reordered = 0;
+        private long lastSeen;
+
+        Stream(String sender, String type, int layer) {
+            this.sender = sender;
+            this.type = type;
+            this.layer = layer;
+        }
+
+        synchronized void received(int sequence, long latencyMicros) {
+            lastSeen = System.currentTimeMillis();
+            received++;
+            if (latencyMicros >= 0) latency.record(latencyMicros);
+            if (sequence == 0) return; // Remitente que no numera su media: sin pérdida ni desorden.
+            sequenced++;
+            if (!started) {
+                started = true;
+                highest = sequence;
+                reportedHighest = sequence - 1;
+            } else if (sequence - highest > 0) {
+                highest = sequence;
+            } else {
+                reordered++;
+            }
+        }
+
+        synchronized long idleSince(long now) {
+            return now - lastSeen;
+        }
+
+        synchronized MediaStats report() {
+            long expected = started ? highest - reportedHighest : 0;
+            // Un mensaje atrasado puede llegar en el intervalo siguiente al que lo esperaba: nunca pérdida negativa.
+            long lost = Math.max(0, expected - sequenced);
+            MediaStats stats = new MediaStats(sender, type, layer, received, lost, reordered, latency.drain());
+            reportedHighest = highest;
+            received = 0;
+            sequenced = 0;
+            reordered = 0;
+            return stats;
+        }
+    }
+}
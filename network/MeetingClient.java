@@ -1,109 +1,461 @@
 package network;
 
-import ui.Main2;
-import javafx.application.Platform;
 import java.io.*;
 import java.net.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Cliente TCP que maneja comunicación con el servidor.
  * Funciona como intermediario entre la UI y la red.
  * 
  * Funcionamiento general: Establece conexión TCP al servidor, crea streams para enviar/recibir,
- * lanza un hilo para recibir mensajes y procesarlos en la UI via Platform.runLater (para thread-safety en JavaFX).
+ * lanza un hilo para recibir mensajes y los entrega a la UI a través de MeetingListener, según su tipo
+ * (ver dispatch). La capa de red no depende de JavaFX ni de Main2.
  * Envía un JOIN inicial y maneja todos los tipos de mensajes recibidos.
+ * El audio se comprime con el codec negociado en el JOIN (AudioCodecs) y se entrega a la UI como PCM.
+ * Con -Dmeeting.udp=true negocia un canal UDP para VIDEO/AUDIO (MediaDatagramClient); el control sigue por TCP.
+ * Después del JOIN pide el chat anterior de la sala (-Dmeeting.chat.history, por defecto "last 50"; "none"
+ * no lo pide) y retiene el chat en vivo hasta que termina la repetición, así todo se muestra en orden.
+ * Los PING/PONG además sincronizan el reloj con el del servidor (ClockSync): la media enviada lleva número de
+ * secuencia y hora de captura en ese reloj, y la recibida se contabiliza por remitente (MediaStatsTracker)
+ * para informar a la UI latencia de punta a punta, pérdida y desorden una vez por segundo.
  */
 
 public class MeetingClient {
 
-    private ObjectOutputStream out; // Stream para enviar mensajes al servidor.
-    private ObjectInputStream in; // Stream para recibir mensajes del servidor.
-    private Main2 ui; // Referencia a la UI para actualizarla con mensajes recibidos.
+    // Sala a la que entran los clientes que no eligen una.
+    public static final String DEFAULT_ROOM = "general";
+
+    private MessageStream stream; // Streams para enviar/recibir mensajes según el protocolo.
+    private MeetingListener ui; // Interfaz de usuario que recibe los mensajes (desde los hilos de red).
+    private volatile MediaDatagramClient media; // Media por UDP; null mientras la media va por TCP.
+    // Nombres de los participantes por ID, para resolver el remitente de la media por UDP.
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+    // ID de participante por nombre, para que SUBSCRIBE/UNSUBSCRIBE/KEYFRAME apunten a un miembro concreto
+    // aunque haya nombres repetidos: se actualiza con los anuncios y con cada VIDEO recibido, así un pedido
+    // de keyframe va al remitente del video que se está decodificando.
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Codec de audio propio (elegido por el servidor en el JOIN) y decodificador de cada remitente.
+    // Mientras no se conoce el codec propio, el audio capturado se descarta.
+    private volatile AudioCodec audioEncoder;
+    private final Map<String, AudioCodec> audioDecoders = new ConcurrentHashMap<>();
+
+    // Tiempo máximo para confirmar el camino UDP antes de quedarse en TCP.
+    private static final long HANDSHAKE_TIMEOUT_MS = 2000;
+    // Intervalo de los PING al servidor (RTT y backlog de la sala para el control de tasa del video).
+    private static final long PING_INTERVAL_MS = 1000;
+    // Tiempo máximo que se retiene el chat en vivo esperando la repetición (un servidor viejo no responde).
+    private static final long HISTORY_WAIT_MS = 3000;
+    private static final DateTimeFormatter HISTORY_TIME =
+            DateTimeFormatter.ofPattern("dd/MM HH:mm").withZone(ZoneId.systemDefault());
+
+    // Cola de salida acotada: los hilos de captura nunca se bloquean en el socket. Si la subida no da
+    // abasto se descarta primero el video más viejo; el control nunca se descarta. Su profundidad y sus
+    // descartes son señales de congestión para el control de tasa.
+    private final OutboundQueue<Message> outbound = new OutboundQueue<>(new OutboundQueue.Policy(
+            64, 512 * 1024, Long.MAX_VALUE, List.of("VIDEO", "AUDIO")));
+    private long reportedDrops = 0; // Descartes ya informados a la UI (solo lo usa el hilo receptor).
+    // Chat en vivo retenido mientras llega la repetición; null cuando no se espera ninguna. Lo activa el
+    // constructor y después lo usa el hilo receptor (HISTORY, HISTORY_END y PONG llegan por TCP).
+    private List<String> heldChat;
+    private volatile long historyDeadline;
+    // Reloj de la reunión (sincronizado con los PONG) y calidad de la media recibida por remitente.
+    private final ClockSync clock = new ClockSync();
+    private final MediaStatsTracker receiveStats = new MediaStatsTracker();
+    // Próxima secuencia de la media enviada, por código de media (tipo y capa). Se usa bajo el lock de sendMessage.
+    private final int[] mediaSeq = new int[256];
+
+    // Constructor con el protocolo original (OBJECT) y la sala por defecto.
+    public MeetingClient(String host, int port, MeetingListener ui) throws IOException {
+        this(host, port, ui, Protocol.OBJECT, DEFAULT_ROOM);
+    }
 
     // Constructor: establece conexión y lanza hilo receptor.
-    // Funcionamiento: Crea socket, inicializa streams, lanza hilo para recepción,
-    // y envía mensaje JOIN inicial con el username.
-    public MeetingClient(String host, int port, Main2 ui) throws IOException {
+    // Funcionamiento: Crea socket, inicializa streams según el protocolo, lanza hilo para recepción,
+    // y envía mensaje JOIN inicial con el username y la sala elegida.
+    public MeetingClient(String host, int port, MeetingListener ui, Protocol protocol, String room) throws IOException {
 
         this.ui = ui;
 
         Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
 
-        out = new ObjectOutputStream(socket.getOutputStream());
-        out.flush(); // Flush para enviar el header del stream inmediatamente.
-        in = new ObjectInputStream(socket.getInputStream());
+        stream = new MessageStream(socket, protocol);
         
-        // Hilo para recibir mensajes. Funcionamiento: Bucle while(true) lee mensajes,
-        // y usa Platform.runLater para actualizar UI en el thread principal de JavaFX.
+        // Hilo para recibir mensajes. Funcionamiento: Bucle while(true) lee mensajes
+        // y los pasa a dispatch, que los entrega a la UI según su tipo.
         new Thread(() -> {
             try {
                 while (true) {
 
-                    Message msg = (Message) in.readObject(); // Lee mensaje serializado.
-
-                    Platform.runLater(() -> {
-
-                        // Switch basado en el tipo de mensaje. Procesa cada tipo de forma específica.
-                        switch (msg.getType()) {
-
-                            case "CHAT":
-                                ui.addMessage(msg.getSender() + ": " + msg.getText(), false); // Agrega al chat.
-                                break;
-
-                            case "JOIN":
-                                ui.addMessage(">> " + msg.getText(), false); // Notifica unión.
-                                if (!msg.getSender().equals(ui.getUsername())) {
-                                    ui.addUserPlaceholder(msg.getSender()); // Crea placeholder para nuevo usuario.
-                                }
-                                break;
-                                
-                            case "LEAVE":
-                                ui.addMessage(">> " + msg.getText(), false); // Notifica salida.
-                                ui.removeUser(msg.getSender()); // Remueve vista del usuario.
-                                break;
-
-                            case "INFO":
-                                ui.addMessage(">> " + msg.getText(), false); // Mensajes informativos del servidor.
-                                break;
-
-                            case "VIDEO":
-                                if (!msg.getSender().equals(ui.getUsername())) {
-                                    ui.receiveVideoFrame(msg.getSender(), msg.getData()); // Muestra frame recibido.
-                                }
-                                break;
-
-                            case "AUDIO":
-                                if (!msg.getSender().equals(ui.getUsername())) {
-                                    ui.playAudio(msg.getData()); // Reproduce audio recibido.
-                                }
-                                break;
-
-                            case "CAM_OFF":
-                                ui.handleCameraOff(msg.getSender()); // Maneja cámara apagada.
-                                break;
-                        }
-                    });
+                    Message msg = stream.read(); // Lee el siguiente mensaje.
+
+                    trackParticipant(msg);
+                    if ("PONG".equals(msg.getType())) {
+                        handlePong(msg);
+                        continue;
+                    }
+                    if ("MEDIA_UDP".equals(msg.getType())) {
+                        startMediaDatagrams(host, msg.getText()); // Oferta de media por UDP del servidor.
+                        continue;
+                    }
+                    dispatch(msg);
                 }
 
             } catch (Exception e) {
-                Platform.runLater(() ->
-                        ui.addMessage(">> Conexión perdida: " + e.getMessage(), false)); // Muestra error en UI.
+                releaseHeldChat(); // Lo retenido (p.ej. el aviso de sala llena) se muestra antes del error.
+                ui.addMessage(">> Conexión perdida: " + e.getMessage(), false); // Muestra error en UI.
             }
 
         }).start();
 
-        // Envío inicial de JOIN. Notifica al servidor y otros clientes.
+        // Hilo escritor: vacía la cola de salida hacia el socket.
+        Thread writer = new Thread(this::writeLoop, "meeting-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        // La retención del chat empieza antes del JOIN: desde ahí el hilo receptor ya puede recibir
+        // líneas en vivo de la sala, que tienen que mostrarse después de la repetición.
+        String history = holdChatForHistory();
+
+        // Envío inicial de JOIN. Notifica al servidor y a los demás clientes de la sala.
         sendMessage(new Message(
                 "JOIN",
                 ui.getUsername(),
                 ui.getUsername() + " se unió"
-        ));
+        ).withRoom(room).withCodec(AudioCodecs.offer()));
+        if (history != null) sendMessage(new Message("HISTORY", ui.getUsername(), history));
+
+        // Con -Dmeeting.udp=true se pide media por UDP; si el servidor no lo soporta no responde y todo sigue por TCP.
+        if (Boolean.getBoolean("meeting.udp")) {
+            sendMessage(new Message("MEDIA_UDP", ui.getUsername(), ""));
+        }
+
+        Thread pinger = new Thread(this::pingLoop, "meeting-ping");
+        pinger.setDaemon(true);
+        pinger.start();
+    }
+
+    // Activa la retención del chat en vivo si se va a pedir la repetición de la sala, y devuelve el pedido
+    // según -Dmeeting.chat.history ("last N" o "since ms de época"), o null si no se pide.
+    // Funcionamiento: Se llama antes de encolar el JOIN, así ninguna línea de la sala puede llegar antes
+    // de que exista la retención.
+    private String holdChatForHistory() {
+        String request = System.getProperty("meeting.chat.history", "last 50").trim();
+        if (request.isEmpty() || request.equalsIgnoreCase("none")) return null;
+        synchronized (this) {
+            heldChat = new ArrayList<>();
+            historyDeadline = System.currentTimeMillis() + HISTORY_WAIT_MS;
+        }
+        return request;
+    }
+
+    // Bucle del hilo escritor. Al fallar el socket se cierra la cola; el hilo receptor informa la desconexión.
+    private void writeLoop() {
+        try {
+            Message msg;
+            while ((msg = outbound.take()) != null) {
+                stream.write(msg);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Error enviando mensaje: " + e.getMessage());
+        } finally {
+            outbound.close();
+        }
+    }
+
+    // Envía un PING por segundo con la hora local (System.nanoTime); el PONG la devuelve.
+    // Cada tick también vence la espera de la repetición del chat: no depende de que el servidor responda
+    // (uno viejo no contesta PING ni HISTORY).
+    private void pingLoop() {
+        try {
+            while (true) {
+                Thread.sleep(PING_INTERVAL_MS);
+                if (System.currentTimeMillis() > historyDeadline) releaseHeldChat();
+                sendMessage(new Message("PING", ui.getUsername(), String.valueOf(System.nanoTime())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println("Error enviando PING: " + e.getMessage());
+        }
+    }
+
+    // PONG: "eco backlog hora-del-servidor". Calcula el RTT, ajusta el reloj de la reunión y pasa a la UI
+    // las señales de congestión y la calidad de la media recibida. Un servidor viejo no manda su hora.
+    private void handlePong(Message msg) {
+        String[] parts = msg.getText().trim().split(" ");
+        try {
+            long now = System.nanoTime();
+            long sent = Long.parseLong(parts[0]);
+            long rttMs = (now - sent) / 1_000_000;
+            long backlog = parts.length > 1 ? Long.parseLong(parts[1]) : 0;
+            if (parts.length > 2) clock.sample(sent / 1000, Long.parseLong(parts[2]), now / 1000);
+            long drops = outbound.droppedCount();
+            ui.updateNetworkStats(rttMs, backlog, outbound.bytes(), drops - reportedDrops);
+            reportedDrops = drops;
+            ui.updateMediaStats(clock.isSynced() ? clock.offset() : 0, clock.rtt(), receiveStats.report());
+        } catch (NumberFormatException e) {
+            System.out.println("PONG inválido: " + msg.getText());
+        }
+    }
+
+    // Procesa un mensaje recibido (por TCP o por UDP) en el hilo que lo recibió.
+    // Funcionamiento: Despacho por tipo. La media va directo a su pipeline: el AUDIO se decodifica acá y
+    // pasa al buffer de jitter, el VIDEO al pool de decodificación; pasar por el thread de JavaFX les sumaría
+    // demoras variables que dependen del repintado. El resto son cambios de estado de la UI, que la
+    // implementación de MeetingListener lleva a su thread (Main2 los aplica en lote una vez por pulso).
+    private void dispatch(Message msg) {
+        String sender = msg.getSender();
+        boolean own = sender != null && sender.equals(ui.getUsername());
+        if (!own && MediaDatagrams.isMediaType(msg.getType())) receiveStats.received(sender, msg, clock.now());
+        switch (msg.getType()) {
+
+            case "AUDIO":
+                AudioCodec decoder = audioDecoders.get(sender);
+                if (decoder != null && !own) {
+                    byte[] pcm;
+                    synchronized (decoder) { // TCP y UDP pueden entregar audio desde hilos distintos.
+                        pcm = decoder.decode(msg.getData());
+                    }
+                    ui.playAudio(sender, pcm);
+                }
+                break;
+
+            case "VIDEO":
+                if (!own && msg.getSenderId() != 0) ids.put(sender, msg.getSenderId());
+                if (!own) ui.receiveVideoFrame(sender, msg.getLayer(), msg.getData());
+                break;
+
+            case "SILENCE":
+                if (!own) ui.handleSilence(sender); // El remitente dejó de hablar (VAD).
+                break;
+
+            case "CHAT":
+                showChat(sender + ": " + msg.getText()); // Agrega al chat.
+                break;
+
+            case "HISTORY":
+                showHistory(msg);
+                break;
+
+            case "HISTORY_END":
+                releaseHeldChat();
+                break;
+
+            case "JOIN":
+                showChat(">> " + msg.getText()); // Notifica unión.
+                if (!own) ui.addUserPlaceholder(sender); // Crea placeholder para nuevo usuario.
+                break;
+
+            case "PARTICIPANT":
+                // Participante ya presente al unirnos: solo se crea su vista.
+                if (!own) ui.addUserPlaceholder(sender);
+                break;
+
+            case "LEAVE":
+                receiveStats.forget(sender);
+                showChat(">> " + msg.getText()); // Notifica salida.
+                ui.removeUser(sender); // Remueve vista del usuario.
+                break;
+
+            case "INFO":
+                // Mensajes informativos del servidor: no se retienen, pueden llegar justo antes de un cierre.
+                ui.addMessage(">> " + msg.getText(), false);
+                break;
+
+            case "KEYFRAME":
+                ui.requestKeyframe(msg.getLayer()); // Un receptor necesita un frame completo de esa capa.
+                break;
+
+            case "CAM_OFF":
+                ui.handleCameraOff(sender); // Maneja cámara apagada.
+                break;
+        }
+    }
+
+    // Muestra una línea del chat en vivo, o la retiene si todavía se espera la repetición.
+    // Se entrega bajo el lock (addMessage no bloquea), así no se adelanta a lo retenido que otro hilo libera.
+    private synchronized void showChat(String line) {
+        if (heldChat != null) {
+            heldChat.add(line);
+            return;
+        }
+        ui.addMessage(line, false);
+    }
+
+    // Muestra un evento repetido ("hora TIPO texto") con su hora.
+    private void showHistory(Message msg) {
+        String[] parts = msg.getText().split(" ", 3);
+        if (parts.length < 3) return;
+        String time;
+        try {
+            time = HISTORY_TIME.format(Instant.ofEpochMilli(Long.parseLong(parts[0])));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        String line = "CHAT".equals(parts[1]) ? msg.getSender() + ": " + parts[2] : ">> " + parts[2];
+        ui.addMessage("[" + time + "] " + line, false);
+    }
+
+    // Terminó la repetición (o se cansó de esperarla, o se cortó la conexión): se muestra el chat en vivo
+    // retenido. Lo llaman el hilo receptor y el del PING.
+    private synchronized void releaseHeldChat() {
+        if (heldChat == null) return;
+        for (String line : heldChat) {
+            ui.addMessage(line, false);
+        }
+        heldChat = null;
+    }
+
+    // Mantiene la tabla ID → nombre de la sala (la media por UDP solo trae el ID del remitente)
+    // y el codec de audio de cada participante, anunciado en JOIN/PARTICIPANT.
+    private void trackParticipant(Message msg) {
+        switch (msg.getType()) {
+            case "JOIN":
+            case "PARTICIPANT":
+                if (msg.getSenderId() != 0) {
+                    names.put(msg.getSenderId(), msg.getSender());
+                    ids.put(msg.getSender(), msg.getSenderId());
+                }
+                setAudioCodec(msg.getSender(), msg.getCodec());
+                break;
+            case "LEAVE":
+                audioDecoders.remove(msg.getSender());
+                if (msg.getSenderId() == 0) break;
+                names.remove(msg.getSenderId());
+                ids.remove(msg.getSender(), msg.getSenderId());
+                MediaDatagramClient udp = media;
+                if (udp != null) udp.forget(msg.getSenderId());
+                break;
+        }
+    }
+
+    // Registra el codec de un participante. Un servidor que no negocia codecs no anuncia ninguno: PCM.
+    // Si el codec no se conoce, su audio se descarta (o, si es el propio, no se envía audio).
+    private void setAudioCodec(String participant, String codecName) {
+        AudioCodec codec = AudioCodecs.create(codecName != null ? codecName : AudioCodecs.PCM);
+        if (participant.equals(ui.getUsername())) {
+            audioEncoder = codec;
+        } else if (codec != null) {
+            audioDecoders.put(participant, codec);
+        } else {
+            audioDecoders.remove(participant);
+        }
+    }
+
+    // Arranca la media por UDP con la oferta del servidor ("puerto token").
+    // Funcionamiento: El handshake corre en su propio hilo para no frenar la recepción por TCP.
+    // Si falla, se avisa al servidor con MEDIA_TCP y la media sigue por TCP.
+    private void startMediaDatagrams(String host, String offer) {
+        new Thread(() -> {
+            MediaDatagramClient udp = null;
+            try {
+                String[] parts = offer.trim().split(" ");
+                int port = Integer.parseInt(parts[0]);
+                int token = Integer.parseInt(parts[1]);
+                udp = new MediaDatagramClient(new InetSocketAddress(host, port), token, msg -> {
+                    String sender = names.get(msg.getSenderId());
+                    if (sender != null) dispatch(msg.withSender(msg.getSenderId(), sender));
+                });
+                if (udp.handshake(HANDSHAKE_TIMEOUT_MS)) {
+                    media = udp;
+                    System.out.println("Media por UDP activa (puerto " + port + ")");
+                    return;
+                }
+                System.out.println("Sin respuesta UDP del servidor; la media sigue por TCP");
+            } catch (Exception e) {
+                System.out.println("No se pudo activar media por UDP: " + e.getMessage());
+            }
+            if (udp != null) udp.close();
+            fallBackToTcp();
+        }, "media-udp-handshake").start();
+    }
+
+    // Vuelve la media al canal TCP y se lo avisa al servidor.
+    private void fallBackToTcp() {
+        MediaDatagramClient udp = media;
+        media = null;
+        if (udp != null) udp.close();
+        try {
+            sendMessage(new Message("MEDIA_TCP", ui.getUsername(), ""));
+        } catch (IOException e) {
+            System.out.println("Error enviando MEDIA_TCP: " + e.getMessage());
+        }
     }
     
     // Envía mensaje al servidor.
-    // Funcionamiento: Escribe el objeto en out y flush para enviarlo inmediatamente.
+    // Funcionamiento: Encola el mensaje para el hilo escritor (no bloquea). Si la conexión ya se cerró lanza IOException.
+    // VIDEO/AUDIO van por UDP si está activo; si el envío UDP falla se vuelve a TCP.
+    // El AUDIO llega como PCM y se comprime acá con el codec negociado.
+    // La media se numera por flujo y conserva la hora de captura que le puso la UI (ver captureTime); si no
+    // trae, se usa la hora de envío.
     public synchronized void sendMessage(Message msg) throws IOException {
-        out.writeObject(msg);
-        out.flush();
+        if ("AUDIO".equals(msg.getType())) {
+            AudioCodec encoder = audioEncoder;
+            if (encoder == null) return; // Todavía no se negoció el codec.
+            msg = new Message("AUDIO", msg.getSender(), encoder.encode(msg.getData(), msg.getData().length))
+                    .withCaptureTime(msg.getCaptureTime());
+        }
+        if (MediaDatagrams.isMediaType(msg.getType())) {
+            int code = MediaDatagrams.mediaCode(msg);
+            if (++mediaSeq[code] == 0) mediaSeq[code] = 1; // 0 significa "sin secuencia".
+            msg = msg.withSequence(mediaSeq[code])
+                    .withCaptureTime(msg.getCaptureTime() != 0 ? msg.getCaptureTime() : clock.now());
+        }
+        MediaDatagramClient udp = media;
+        if (udp != null && MediaDatagrams.isMediaType(msg.getType())) {
+            try {
+                udp.send(msg);
+                return;
+            } catch (IOException e) {
+                System.out.println("Error en media UDP, se vuelve a TCP: " + e.getMessage());
+                fallBackToTcp();
+            }
+        }
+        if (outbound.offer(msg, msg.getType(), messageSize(msg)) == OutboundQueue.Result.DROPPED
+                && !MediaDatagrams.isMediaType(msg.getType())) {
+            throw new IOException("Conexión cerrada");
+        }
+    }
+
+    // Hora actual en el reloj de la reunión (microsegundos), para marcar la captura de la media; 0 mientras
+    // el reloj no se sincronizó. Se puede llamar desde cualquier hilo.
+    public long captureTime() {
+        return clock.now();
+    }
+
+    // Tamaño aproximado de un mensaje para los límites de la cola.
+    private static int messageSize(Message msg) {
+        return (msg.getData() != null ? msg.getData().length : 0) + (msg.getText() != null ? msg.getText().length() : 0);
+    }
+
+    // Pide a un participante que su próximo frame de video sea completo (keyframe), en la capa indicada.
+    public void requestKeyframe(String participant, int layer) throws IOException {
+        sendMessage(new Message("KEYFRAME", ui.getUsername(), target(participant)).withLayer(layer));
+    }
+
+    // Informa al servidor el tamaño en píxeles de los mosaicos de video, para que elija la capa de simulcast.
+    public void setViewport(int width, int height) throws IOException {
+        sendMessage(new Message("VIEWPORT", ui.getUsername(), width + " " + height));
+    }
+
+    // Pide al servidor dejar de recibir (o volver a recibir) el video de un participante.
+    public void setVideoSubscription(String participant, boolean subscribed) throws IOException {
+        sendMessage(new Message(subscribed ? "SUBSCRIBE" : "UNSUBSCRIBE", ui.getUsername(), target(participant)));
+    }
+
+    // Destino de un pedido dirigido: "#ID" del participante, o su nombre si todavía no se conoce el ID.
+    private String target(String participant) {
+        Integer id = ids.get(participant);
+        return id != null ? "#" + id : participant;
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package network;
+
+import java.util.List;
+
+/**
+ * Lo que MeetingClient necesita de la interfaz de usuario.
+ *
+ * Funcionamiento general: MeetingClient clasifica cada mensaje recibido por tipo y llama al método que
+ * corresponde directamente desde el hilo de red (el receptor TCP, el de UDP o el del PING). No pasa nada
+ * por el thread de la UI: la media va sin demoras a sus propios pipelines y la implementación decide cómo
+ * llevar los cambios de estado (chat, participantes, cámara) a su thread, por ejemplo en lotes por pulso.
+ * Todos los métodos deben ser thread-safe y no bloquear.
+ */
+
+public interface MeetingListener {
+
+    // Nombre del usuario local (el remitente propio, para ignorar los ecos de la sala).
+    String getUsername();
+
+    // Línea de chat o aviso (unión, salida, errores de conexión, mensajes del servidor).
+    void addMessage(String message, boolean own);
+
+    // Un participante está en la sala (JOIN o PARTICIPANT): hay que mostrar su vista aunque no tenga video.
+    void addUserPlaceholder(String sender);
+
+    // Un participante salió de la sala.
+    void removeUser(String sender);
+
+    // Frame de VIDEO de otro participante, en la capa de simulcast que nos reenvía el servidor.
+    void receiveVideoFrame(String sender, int layer, byte[] data);
+
+    // Audio de otro participante, ya decodificado a PCM (ver AudioCodec).
+    void playAudio(String sender, byte[] pcm);
+
+    // Otro participante dejó de hablar (marcador SILENCE del VAD).
+    void handleSilence(String sender);
+
+    // Otro participante apagó la cámara.
+    void handleCameraOff(String sender);
+
+    // Un receptor pidió un keyframe de nuestro video en esa capa.
+    void requestKeyframe(int layer);
+
+    // Reporte de red (una vez por segundo): RTT, backlog de la sala en el servidor, bytes en la cola de
+    // salida propia y descartes desde el reporte anterior.
+    void updateNetworkStats(long rttMs, long serverBacklogBytes, long queueBytes, long queueDrops);
+
+    // Calidad de la media recibida (una vez por segundo, después de updateNetworkStats): diferencia estimada
+    // con el reloj de la reunión y el RTT de esa estimación (en microsegundos; offset 0 si todavía no se
+    // sincronizó) y un MediaStats por remitente, tipo y capa activos.
+    void updateMediaStats(long clockOffsetMicros, long clockRttMicros, List<MediaStats> streams);
+}
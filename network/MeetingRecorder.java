@@ -0,0 +1,310 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Grabación de reuniones en el servidor.
+ *
+ * Funcionamiento general: Cada sala abre una grabación (Recording) al crearse y le pasa lo que reenvía:
+ * VIDEO (solo la capa 0, la de resolución completa), AUDIO, CHAT, y los JOIN/LEAVE que dan el codec de
+ * audio de cada participante. La sala solo arma un registro con la hora y lo encola sin bloquear en una
+ * cola acotada (OutboundQueue, -Dmeeting.record.queueBytes) que vacía un único hilo escritor; si el disco
+ * no da abasto se descarta primero el video más viejo y luego el audio, nunca el chat.
+ * El escritor toma los registros en lotes, los ordena por grabación (sin cambiar el orden dentro de cada
+ * una) y los junta en un único buffer que escribe en lote con FileChannel al pasar a otra grabación o al
+ * terminar el lote. Ese buffer y el del índice son del grabador, no de cada sala: la memoria no crece con
+ * la cantidad de salas y una grabación sin registros no ocupa más que su objeto.
+ * Cada grabación es un directorio <dir>/<sala>/<hora de inicio> con segmentos numerados (000000.rec,
+ * 000001.rec, ...) que se cierran al pasar de -Dmeeting.record.segmentBytes. Junto a cada segmento va su
+ * índice (.idx): hora y posición del primer registro de cada segundo, para que RecordingReader salte a
+ * una hora sin recorrer el archivo.
+ * Formato de un registro: [largo u32][hora i64][tipo u8][capa u8][largo remitente u16][remitente][datos];
+ * los datos son los bytes de la media, el texto del CHAT o el codec del JOIN (UTF-8).
+ */
+
+class MeetingRecorder {
+
+    // Tipos de registro. La posición es el código en disco.
+    static final String[] TYPES = {"VIDEO", "AUDIO", "CHAT", "JOIN", "LEAVE"};
+    static final int HEADER_BYTES = 4 + 8 + 1 + 1 + 2;
+    static final String SEGMENT_SUFFIX = ".rec";
+    static final String INDEX_SUFFIX = ".idx";
+    // Separación mínima (ms) entre entradas del índice.
+    static final long INDEX_INTERVAL_MS = 1000;
+    // Registros que el escritor procesa antes de escribir lo acumulado.
+    private static final int BATCH_RECORDS = 256;
+    private static final int BUFFER_BYTES = 256 * 1024;
+    // Marcador interno de fin de grabación (no se escribe).
+    private static final String CLOSE = "CLOSE";
+
+    // Orden del lote: por grabación, estable (Arrays.sort de objetos no reordena los iguales).
+    private static final Comparator<Pending> BY_RECORDING = Comparator.comparingInt(p -> p.recording.number);
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final OutboundQueue<Pending> queue;
+    private final AtomicInteger recordings = new AtomicInteger();
+    // Buffers compartidos por todas las grabaciones; solo los usa el hilo escritor.
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final ByteBuffer index = ByteBuffer.allocate(16 * 1024);
+    // Grabación cuyos registros están en buffer e index (null si están vacíos).
+    private Recording owner;
+
+    // Registro encolado por la sala.
+    private static final class Pending {
+        final Recording recording;
+        final long timestamp;
+        final String type;
+        final String sender;
+        final int layer;
+        final byte[] payload;
+
+        Pending(Recording recording, long timestamp, String type, String sender, int layer, byte[] payload) {
+            this.recording = recording;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.sender = sender;
+            this.layer = layer;
+            this.payload = payload;
+        }
+    }
+
+    MeetingRecorder(Path dir, long segmentBytes, long queueBytes) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+        this.queue = new OutboundQueue<>(new OutboundQueue.Policy(
+                Integer.MAX_VALUE, queueBytes, Long.MAX_VALUE, List.of("VIDEO", "AUDIO")));
+        Thread writer = new Thread(this::writeLoop, "meeting-recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Crea el grabador si hay -Dmeeting.record.dir; si no, devuelve null (no se graba).
+    static MeetingRecorder fromSystemProperties() throws IOException {
+        String dir = System.getProperty("meeting.record.dir");
+        if (dir == null || dir.isBlank()) return null;
+        MeetingRecorder recorder = new MeetingRecorder(Paths.get(dir),
+                Long.getLong("meeting.record.segmentBytes", 64L * 1024 * 1024),
+                Long.getLong("meeting.record.queueBytes", 16L * 1024 * 1024));
+        System.out.println("Grabando reuniones en " + recorder.dir.toAbsolutePath());
+        return recorder;
+    }
+
+    // Abre la grabación de una sala. Los archivos se crean recién en el hilo escritor.
+    Recording open(String room) {
+        return new Recording(dir.resolve(ChatLog.directoryName(room)).resolve(
+                String.valueOf(System.currentTimeMillis())));
+    }
+
+    /**
+     * Grabación de una sala. record y close los llama la sala desde su hilo; nunca bloquean.
+     * El resto del estado solo lo toca el hilo escritor.
+     */
+    final class Recording {
+        private final Path recordingDir;
+        private final int number = recordings.getAndIncrement();
+        private FileChannel segment;
+        private FileChannel indexChannel;
+        private int segmentNumber = -1;
+        private long segmentSize;   // Bytes del segmento, incluidos los que siguen en el buffer.
+        private long written;       // Bytes del segmento ya escritos al archivo.
+        private long lastIndexed = -INDEX_INTERVAL_MS;
+        private boolean closed;
+
+        private Recording(Path recordingDir) {
+            this.recordingDir = recordingDir;
+        }
+
+        // Graba un mensaje reenviado. El video solo se graba en la capa 0.
+        void record(Message msg) {
+            String type = msg.getType();
+            if ("VIDEO".equals(type) && msg.getLayer() != 0) return;
+            byte[] payload;
+            switch (type) {
+                case "VIDEO":
+                case "AUDIO":
+                    payload = msg.getData();
+                    break;
+                case "CHAT":
+                    payload = utf8(msg.getText());
+                    break;
+                case "JOIN":
+                    payload = utf8(msg.getCodec() != null ? msg.getCodec() : "");
+                    break;
+                case "LEAVE":
+                    payload = new byte[0];
+                    break;
+                default:
+                    return;
+            }
+            if (payload == null) return;
+            Pending pending = new Pending(this, System.currentTimeMillis(), type, msg.getSender(),
+                    msg.getLayer(), payload);
+            queue.offer(pending, type, HEADER_BYTES + payload.length);
+        }
+
+        // Termina la grabación: lo ya encolado se escribe y los archivos se cierran.
+        void close() {
+            queue.offer(new Pending(this, 0, CLOSE, null, 0, null), CLOSE, 0);
+        }
+
+        // Agrega un registro al buffer (en el hilo escritor). Cambia de segmento si el actual está lleno.
+        private void append(Pending pending) throws IOException {
+            byte[] sender = utf8(pending.sender != null ? pending.sender : "");
+            int length = HEADER_BYTES + sender.length + pending.payload.length;
+            if (segment == null || segmentSize >= segmentBytes) roll();
+            if (owner != this) {
+                flushOwner(); // Lo de la grabación anterior se escribe antes de reusar los buffers.
+                owner = this;
+            }
+            if (pending.timestamp - lastIndexed >= INDEX_INTERVAL_MS) {
+                if (index.remaining() < 16) flush();
+                index.putLong(pending.timestamp).putLong(segmentSize);
+                lastIndexed = pending.timestamp;
+            }
+            if (buffer.remaining() < length) flush();
+            if (buffer.remaining() < length) {
+                // Más grande que el buffer: se escribe directo.
+                ByteBuffer large = ByteBuffer.allocate(length);
+                putRecord(large, pending, sender, length);
+                large.flip();
+                writeFully(segment, large, written);
+                written += length;
+            } else {
+                putRecord(buffer, pending, sender, length);
+            }
+            segmentSize += length;
+        }
+
+        // Escribe lo acumulado: primero los registros y después el índice que apunta a ellos.
+        private void flush() throws IOException {
+            if (owner != this) return; // Los buffers tienen registros de otra grabación (o ninguno).
+            buffer.flip();
+            int length = buffer.remaining();
+            writeFully(segment, buffer, written);
+            written += length;
+            buffer.clear();
+            index.flip();
+            writeFully(indexChannel, index, indexChannel.size());
+            index.clear();
+        }
+
+        // Cierra el segmento actual y abre el siguiente (el primer registro siempre entra al índice).
+        private void roll() throws IOException {
+            closeFiles();
+            if (segmentNumber < 0) Files.createDirectories(recordingDir);
+            segmentNumber++;
+            String name = String.format("%06d", segmentNumber);
+            segment = FileChannel.open(recordingDir.resolve(name + SEGMENT_SUFFIX),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            indexChannel = FileChannel.open(recordingDir.resolve(name + INDEX_SUFFIX),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            segmentSize = 0;
+            written = 0;
+            lastIndexed = -INDEX_INTERVAL_MS;
+        }
+
+        private void closeFiles() throws IOException {
+            if (segment == null) return;
+            flush();
+            if (owner == this) owner = null;
+            segment.close();
+            indexChannel.close();
+            segment = null;
+            indexChannel = null;
+        }
+    }
+
+    // Bucle del hilo escritor: toma un registro (esperando si no hay) y los que ya estén encolados, hasta
+    // BATCH_RECORDS, los agrupa por grabación y al final escribe lo que quedó acumulado.
+    private void writeLoop() {
+        Pending[] batch = new Pending[BATCH_RECORDS];
+        try {
+            while (true) {
+                int count = 0;
+                Pending pending = queue.take();
+                while (pending != null) {
+                    batch[count++] = pending;
+                    pending = count < BATCH_RECORDS ? queue.poll() : null;
+                }
+                Arrays.sort(batch, 0, count, BY_RECORDING);
+                for (int i = 0; i < count; i++) {
+                    process(batch[i]);
+                    batch[i] = null;
+                }
+                flushOwner();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(Pending pending) {
+        Recording recording = pending.recording;
+        if (recording.closed) return;
+        try {
+            if (CLOSE.equals(pending.type)) {
+                recording.closed = true;
+                recording.closeFiles();
+            } else {
+                recording.append(pending);
+            }
+        } catch (IOException e) {
+            abandon(recording, e);
+        }
+    }
+
+    // Escribe lo que la grabación dueña tiene en los buffers compartidos.
+    private void flushOwner() {
+        Recording recording = owner;
+        if (recording == null) return;
+        try {
+            recording.flush();
+        } catch (IOException e) {
+            abandon(recording, e);
+        }
+    }
+
+    // Sin disco la grabación se abandona; la sala sigue funcionando. Lo suyo en los buffers se descarta.
+    private void abandon(Recording recording, IOException e) {
+        System.out.println("Error en la grabación " + recording.recordingDir + ": " + e.getMessage());
+        recording.closed = true;
+        if (owner == recording) {
+            owner = null;
+            buffer.clear();
+            index.clear();
+        }
+        try {
+            recording.closeFiles();
+        } catch (IOException ignored) {
+            // Ya se informó el error.
+        }
+    }
+
+    private static void putRecord(ByteBuffer out, Pending pending, byte[] sender, int length) {
+        out.putInt(length).putLong(pending.timestamp)
+                .put((byte) Arrays.asList(TYPES).indexOf(pending.type))
+                .put((byte) pending.layer).putShort((short) sender.length).put(sender).put(pending.payload);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text != null ? text.getBytes(StandardCharsets.UTF_8) : null;
+    }
+}
@@ -3,92 +3,141 @@ package network;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servidor principal del sistema de videoconferencia.
  * Administra conexiones entrantes y retransmite mensajes
- * entre todos los clientes conectados.
+ * entre los clientes de cada sala.
  * 
  * Funcionamiento general: Este servidor escucha en un puerto TCP (5000 por defecto),
- * acepta conexiones de clientes (hasta 4), y actúa como un relay: recibe mensajes de un cliente
- * y los envía a todos los demás. No procesa el contenido (video, audio, chat), solo retransmite.
- * Usa un conjunto sincronizado para manejar clientes concurrentemente.
+ * acepta conexiones de clientes, y actúa como un relay: recibe mensajes de un cliente
+ * y los envía a los demás miembros de su sala. No procesa el contenido (video, audio, chat), solo retransmite.
+ * La sala se elige en el JOIN; cada sala tiene su propio registro de miembros, su lock y su límite
+ * de participantes (-Dmeeting.room.maxParticipants, 4 por defecto).
+ * Con -Dmeeting.udp=true el VIDEO/AUDIO de los clientes que lo pidan viaja por UDP (MediaDatagramServer).
+ * El tráfico, los descartes y el tiempo de reparto se publican por JMX y, con -Dmeeting.stats.port, como
+ * texto en loopback (ServerMetrics).
  */
 
 public class MeetingServer {
     // Puerto de escucha del servidor. Este es el puerto donde los clientes se conectan.
-    private static final int PORT = 5000;
-    // Conjunto sincronizado de clientes conectados. Usamos HashSet con sincronización para manejar accesos concurrentes desde múltiples hilos.
-    private static Set<ClientHandler> clients =
-            Collections.synchronizedSet(new HashSet<>());
+    private static final int PORT = Integer.getInteger("meeting.port", 5000);
+    // Límite de participantes por sala.
+    static final int MAX_PARTICIPANTS = Integer.getInteger("meeting.room.maxParticipants", 4);
+    // Protocolo de cable. En modo clásico por defecto OBJECT; en modo NIO por defecto BINARY.
+    private static Protocol protocol;
+    // Codec compartido para codificar frames (sin estado al codificar). null con OBJECT.
+    private static MessageCodec codec;
+    // Política de las colas de salida por cliente (tamaño, descartes y tiempo máximo de saturación).
+    private static final OutboundQueue.Policy QUEUE_POLICY = OutboundQueue.Policy.fromSystemProperties();
+    // Salas activas por nombre. Cada sala se sincroniza sobre sí misma; el mapa solo se toca al entrar o vaciarse una sala.
+    private static final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    // Transporte UDP de media (-Dmeeting.udp=true). null si está desactivado.
+    private static MediaDatagramServer media;
+    // Registro persistente del chat de las salas (-Dmeeting.chat.log=true o -Dmeeting.chat.dir). null si no se pidió.
+    private static ChatLog chatLog;
+    // Grabador de reuniones (-Dmeeting.record.dir). null si no se graba.
+    private static MeetingRecorder recorder;
+    // Métricas del servidor (JMX y -Dmeeting.stats.port).
+    private static ServerMetrics metrics;
 
     /**
      * Punto de entrada del servidor.
      * Escucha conexiones de forma indefinida.
      * 
      * Funcionamiento: Crea un ServerSocket, imprime un mensaje de inicio, y entra en un bucle infinito
-     * aceptando sockets. Si hay más de 4 clientes, rechaza la conexión enviando un mensaje de "sala llena".
-     * Para cada conexión válida, crea un ClientHandler y lo inicia en un hilo separado.
+     * aceptando sockets. Para cada conexión, crea un ClientHandler y lo inicia en un hilo separado;
+     * el límite de participantes se aplica por sala al recibir el JOIN.
+     * Con -Dmeeting.server.mode=nio delega en NioMeetingServer (sin un hilo por cliente).
      */
     public static void main(String[] args) throws IOException {
+        if ("nio".equalsIgnoreCase(System.getProperty("meeting.server.mode"))) {
+            Protocol nioProtocol = Protocol.fromName(System.getProperty("meeting.protocol"), Protocol.BINARY);
+            int threads = Integer.getInteger("meeting.server.threads", Runtime.getRuntime().availableProcessors());
+            new NioMeetingServer(PORT, nioProtocol, threads, QUEUE_POLICY, MAX_PARTICIPANTS).start();
+            return;
+        }
+
+        protocol = Protocol.fromName(System.getProperty("meeting.protocol"), Protocol.OBJECT);
+        codec = protocol.newCodec();
+        metrics = ServerMetrics.fromSystemProperties();
+        // La media que llega por UDP se reenvía bajo el monitor de la sala, igual que la que llega por TCP.
+        media = MediaDatagramServer.fromSystemProperties(PORT, (participant, msg) -> {
+            participant.getMetrics().received(msg.getType(), msg.getData().length);
+            Room room = participant.getRoom();
+            if (room != null) relay(room, participant, msg);
+        });
+        chatLog = ChatLog.fromSystemProperties();
+        recorder = MeetingRecorder.fromSystemProperties();
         ServerSocket serverSocket = new ServerSocket(PORT);
         System.out.println("Servidor iniciado en puerto " + PORT);
 
         while (true) {
             // Espera conexión entrante. Este método bloquea hasta que llega un cliente.
             Socket socket = serverSocket.accept();
-            // Límite de participantes (máx 4). Verificamos el tamaño del set de clientes.
-            if (clients.size() >= 4) {
-                try {
-                    ObjectOutputStream tempOut =
-                            new ObjectOutputStream(socket.getOutputStream());
-
-                    Message fullMsg = new Message(
-                            "INFO",
-                            "Servidor",
-                            "La sala está llena (máximo 4 usuarios)"
-                    );
-
-                    tempOut.writeObject(fullMsg);
-                    tempOut.flush();
-                } catch (IOException e) {
-                    // ignorar error. Comentario original: Ignoramos errores al rechazar, para no detener el servidor.
-                    System.out.println("Error al rechazar conexión: " + e.getMessage());
-                }
-
-                socket.close();
-                continue;
-            }
             // Crear manejador de cliente. El handler maneja la comunicación con este socket específico.
-            ClientHandler handler = new ClientHandler(socket);
-            clients.add(handler);
+            ClientHandler handler = new ClientHandler(socket, protocol, QUEUE_POLICY, metrics);
             new Thread(handler).start(); // Iniciamos el handler en un hilo separado para no bloquear el main loop.
         }
     }
-    
-    // Envía un mensaje a todos los clientes conectados.
-    // Funcionamiento: Usa un bloque sincronizado para iterar sobre el set de clientes y enviar el mensaje a cada uno.
-    // Esto previene problemas de concurrencia si se agregan/quitan clientes mientras se envía.
-    public static void broadcast(Message msg) {
-        synchronized (clients) {
-            for (ClientHandler client : clients) {
-                try {
-                    client.send(msg); // Llamamos al método send del handler.
-                } catch (Exception e) {
-                    System.out.println("Error en broadcast a cliente: " + e.getMessage());
-                    // Si falla el envío a un cliente, lo removemos para limpiar.
-                    removeClient(client);
-                }
+
+    // Codifica un mensaje con el protocolo del servidor. Devuelve null si no se pudo codificar.
+    static Frame encode(Message msg) {
+        try {
+            return Frame.encode(msg, protocol, codec);
+        } catch (IOException e) {
+            System.out.println("Error codificando mensaje: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Une al cliente a la sala pedida en su JOIN (la crea si no existe). Devuelve la sala o null si estaba llena.
+    // Funcionamiento: Si la sala encontrada se cerró (se vació) entre la búsqueda y el lock, se busca de nuevo.
+    static Room joinRoom(ClientHandler client, Message joinMsg) {
+        String name = roomName(joinMsg);
+        while (true) {
+            Room room = rooms.computeIfAbsent(name,
+                    n -> new Room(n, MAX_PARTICIPANTS, MeetingServer::encode, null, media, chatLog, recorder));
+            synchronized (room) {
+                if (room.isClosed()) continue;
+                return room.join(client, joinMsg) ? room : null;
             }
         }
     }
-    
-    // Elimina cliente de la lista activa.
-    // Funcionamiento: Simplemente remueve el handler del set. Se llama cuando un cliente se desconecta o falla.
-    public static void removeClient(ClientHandler client) {
-        clients.remove(client);
+
+    // Reenvía un mensaje a la sala bajo su monitor y registra cuánto tardó el reparto.
+    static void relay(Room room, Participant from, Message msg) {
+        synchronized (room) {
+            long start = System.nanoTime();
+            room.relay(from, msg);
+            metrics.relayed(msg.getType(), start);
+        }
+    }
+
+    // Quita al cliente de su sala y la elimina del registro si quedó vacía.
+    static void leaveRoom(ClientHandler client, Room room) {
+        if (media != null) media.unregister(client);
+        synchronized (room) {
+            if (room.leave(client)) {
+                rooms.remove(room.getName(), room);
+            }
+        }
         System.out.println("Cliente removido: " + client); // Logging para depuración.
     }
+
+    // Atiende MEDIA_UDP/MEDIA_TCP. Sin transporte UDP se ignoran y el cliente sigue enviando media por TCP.
+    static void handleMediaControl(ClientHandler client, Message msg) {
+        if (media == null) return;
+        Message reply = media.handleControl(client, msg);
+        if (reply != null) client.send(encode(reply));
+    }
+
+    // Nombre de sala del JOIN; los clientes que no indican sala van a la sala por defecto.
+    static String roomName(Message joinMsg) {
+        String room = joinMsg.getRoom();
+        return room == null || room.isBlank() ? MeetingClient.DEFAULT_ROOM : room.trim();
+    }
 }
 
 /**
@@ -96,45 +145,67 @@ public class MeetingServer {
  * Implementa Runnable para ejecutarse en un hilo separado.
  * 
  * Funcionamiento general: Inicializa streams de entrada/salida, escucha mensajes en un bucle,
- * los retransmite via broadcast, y maneja desconexiones notificando a otros clientes.
+ * los retransmite a su sala, y maneja desconexiones notificando a los demás miembros.
+ * Los envíos pasan por una cola acotada (OutboundQueue) que vacía un hilo escritor propio.
  */
-class ClientHandler implements Runnable {
+class ClientHandler implements Runnable, Participant {
 
     private Socket socket; // Socket de conexión con el cliente.
-    private ObjectOutputStream out; // Stream para enviar objetos (mensajes) al cliente.
-    private ObjectInputStream in; // Stream para recibir objetos del cliente.
+    private MessageStream stream; // Streams de entrada/salida de mensajes según el protocolo.
+    private OutboundQueue<Frame> outbound; // Cola de salida acotada de frames ya codificados; la vacía el hilo escritor.
+    private volatile Room room; // Sala del cliente, asignada al aceptar su JOIN.
     private String username; // Nombre del usuario, registrado al recibir JOIN.
+    private int participantId; // ID numérico asignado por la sala (0 = sin asignar).
+    private volatile SocketAddress mediaEndpoint; // Endpoint UDP de media (null = media por TCP).
+    private final ConnectionMetrics metrics; // Tráfico, descartes y backlog de este cliente.
 
     // Constructor que inicializa streams de comunicación.
-    // Funcionamiento: Crea los streams ObjectOutput/Input sobre el socket. Debe hacerse en este orden para evitar deadlocks.
-    public ClientHandler(Socket socket) throws IOException {
+    // Funcionamiento: MessageStream crea los streams según el protocolo (en OBJECT, salida antes que entrada para evitar deadlocks).
+    public ClientHandler(Socket socket, Protocol protocol, OutboundQueue.Policy policy, ServerMetrics serverMetrics)
+            throws IOException {
         this.socket = socket;
-        out = new ObjectOutputStream(socket.getOutputStream());
-        out.flush(); // Flush para asegurar que el header del stream se envíe inmediatamente.
-        in = new ObjectInputStream(socket.getInputStream());
+        socket.setTcpNoDelay(true); // Sin Nagle: la media es sensible a la latencia y ya se agrupa por ráfaga.
+        stream = new MessageStream(socket, protocol);
+        metrics = serverMetrics.opened(this);
+        outbound = new OutboundQueue<>(policy, metrics::dropped);
     }
     
     // Bucle principal de escucha de mensajes.
-    // Funcionamiento: En un bucle while(true), lee objetos Message del input stream.
-    // Si es JOIN, registra el username. Luego, retransmite el mensaje a todos via broadcast.
-    // Si hay excepción (e.g., desconexión), cierra el socket y notifica LEAVE.
+    // Funcionamiento: En un bucle while(true), lee mensajes del input stream.
+    // El primer JOIN une al cliente a su sala; antes de eso el resto se ignora. Luego, cada mensaje
+    // se retransmite a la sala con el remitente de la conexión.
+    // Si hay excepción (e.g., desconexión), cierra el socket y la sala notifica LEAVE.
     @Override
     public void run() {
+        new Thread(this::writeLoop).start(); // Escritor propio: vacía la cola de salida hacia el socket.
         try {
+            long bytesRead = 0;
             while (true) {
 
-                Message msg = (Message) in.readObject(); // Lee el mensaje serializado.
+                Message msg = stream.read(); // Lee el siguiente mensaje.
+                metrics.received(msg.getType(), stream.bytesRead() - bytesRead);
+                bytesRead = stream.bytesRead();
+
+                Room current = room;
+                if (current == null) {
+                    // Registrar usuario cuando envía JOIN. La sala le asigna un ID y anuncia su llegada.
+                    if ("JOIN".equals(msg.getType())) {
+                        MeetingServer.joinRoom(this, msg);
+                    }
+                    continue;
+                }
 
-                // Registrar usuario cuando envía JOIN. Esto asocia el nombre al handler.
-                if ("JOIN".equals(msg.getType())) {
-                    username = msg.getSender();
-                    System.out.println("Usuario unido: " + username); // Logging.
+                if (msg.getType().startsWith("MEDIA_")) {
+                    MeetingServer.handleMediaControl(this, msg); // Negociación del transporte de media.
+                    continue;
                 }
 
-                // No importa si es CHAT o VIDEO,
-                // el servidor actúa como RELAY y reenvía todo.
-                // Retransmisión a todos los clientes. El servidor no filtra, solo relay.
-                MeetingServer.broadcast(msg);
+                // El remitente lo define la conexión, no el cliente (el protocolo binario envía media sin nombre).
+                msg = msg.withSender(participantId, username);
+
+                // El servidor actúa como RELAY: la sala reenvía a sus miembros
+                // (sin eco de media al remitente y respetando las suscripciones de video).
+                MeetingServer.relay(current, this, msg);
             }
 
         } catch (Exception e) {
@@ -142,36 +213,113 @@ class ClientHandler implements Runnable {
             System.out.println("Error en handler: " + e.getMessage()); // Logging para depuración, útil en Mac.
         } finally {
 
-            try {
-                socket.close(); // Cierra el socket al finalizar.
-            } catch (IOException e) {
-                System.out.println("Error cerrando socket: " + e.getMessage());
+            close(); // Cierra el socket y la cola al finalizar.
+
+            // Notificar salida del usuario. Solo si llegó a entrar a una sala.
+            if (room != null) {
+                MeetingServer.leaveRoom(this, room);
             }
+        }
+    }
 
-            MeetingServer.removeClient(this); // Remueve del set de clientes.
-            // Notificar salida del usuario. Solo si username fue registrado.
-            if (username != null) {
+    @Override
+    public void joined(Room room, String username, int participantId) {
+        this.room = room;
+        this.username = username;
+        this.participantId = participantId;
+    }
+  
+    @Override
+    public String getUsername() {
+        return username;
+    }
 
-                
-                Message leaveMsg = new Message(
-                        "LEAVE",
-                        "Servidor",
-                        username + " salió de la reunión"
-                );
+    @Override
+    public int getParticipantId() {
+        return participantId;
+    }
 
-                MeetingServer.broadcast(leaveMsg); // Envía notificación a los demás.
-            }
+    @Override
+    public Room getRoom() {
+        return room;
+    }
+
+    @Override
+    public long getBacklogBytes() {
+        return outbound.bytes();
+    }
+
+    @Override
+    public SocketAddress getMediaEndpoint() {
+        return mediaEndpoint;
+    }
+
+    @Override
+    public void setMediaEndpoint(SocketAddress endpoint) {
+        this.mediaEndpoint = endpoint;
+    }
+
+    @Override
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Encola un frame para este cliente. No bloquea.
+    // Funcionamiento: Si la cola lleva saturada más del tiempo permitido, el cliente se desconecta;
+    // el hilo lector termina al cerrarse el socket y notifica LEAVE como en cualquier desconexión.
+    @Override
+    public void send(Frame frame) {
+        if (frame == null) return;
+        OutboundQueue.Result result = outbound.offer(frame, frame.getType(), frame.size());
+        if (result == OutboundQueue.Result.DISCONNECT) {
+            System.out.println("Cliente saturado, desconectando: " + this);
+            close();
         }
     }
-  
-    // Envía mensaje a este cliente específico.
-    // Funcionamiento: Escribe el objeto Message en el output stream y flush para enviarlo inmediatamente.
-    public synchronized void send(Message msg) {
+
+    // Encola el último frame; el escritor cierra el socket al terminar de enviarlo.
+    @Override
+    public void sendAndClose(Frame frame) {
+        send(frame);
+        outbound.finish();
+    }
+
+    // Bucle del hilo escritor: saca frames de la cola y escribe sus bytes tal cual.
+    // Funcionamiento: Solo hace flush cuando la cola queda vacía, así las ráfagas se agrupan en menos escrituras.
+    private void writeLoop() {
         try {
-            out.writeObject(msg);
-            out.flush();
+            Frame frame;
+            while ((frame = outbound.take()) != null) {
+                stream.writeFrame(frame);
+                metrics.sent(frame.getType(), frame.size());
+                if (outbound.isEmpty()) {
+                    stream.flush();
+                }
+            }
+            if (outbound.isFinishing()) {
+                close(); // Se pidió cerrar después del último frame (p.ej. sala llena).
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             System.out.println("Error enviando mensaje: " + e.getMessage()); // Logging.
+            close();
         }
     }
+
+    // Cierra el socket y la cola. Puede llamarse más de una vez.
+    void close() {
+        metrics.close();
+        outbound.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.out.println("Error cerrando socket: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ClientHandler[" + (username != null ? username : socket.getRemoteSocketAddress()) + "]";
+    }
 }
\ No newline at end of file
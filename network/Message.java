@@ -21,6 +21,21 @@ public class Message implements Serializable {
     private String text;
     // Datos binarios (frames de video o paquetes de audio). Para video: bytes de imagen JPG; para audio: bytes raw.
     private byte[] data;
+    // ID numérico del participante asignado por el servidor al hacer JOIN (0 = servidor o sin asignar).
+    // Lo usa el protocolo binario para no repetir el nombre en cada frame.
+    private int senderId;
+    // Sala elegida por el cliente. Solo se usa en JOIN; null en el resto de mensajes.
+    private String room;
+    // Codec de audio. En el JOIN del cliente, los codecs que ofrece (separados por comas, en orden de
+    // preferencia); en JOIN/PARTICIPANT del servidor, el codec elegido para ese participante. null en el resto.
+    private String codec;
+    // Capa de simulcast (ver VideoLayers). En VIDEO, la capa del frame; en KEYFRAME, la capa pedida. 0 en el resto.
+    private int layer;
+    // Número de secuencia de la media (VIDEO/AUDIO), por remitente y por flujo (tipo y capa). 0 = sin número.
+    private int sequence;
+    // Hora de captura de la media en el reloj de la reunión (el del servidor, en microsegundos; ver ClockSync).
+    // 0 si el remitente todavía no sincronizó su reloj.
+    private long captureTime;
 
     
     // Constructor para mensajes de tipo texto.
@@ -39,6 +54,71 @@ public class Message implements Serializable {
         this.data = data;
     }
     
+    // Constructor completo. Usado por los codecs y para copias con remitente asignado.
+    public Message(String type, String sender, int senderId, String text, byte[] data) {
+        this.type = type;
+        this.sender = sender;
+        this.senderId = senderId;
+        this.text = text;
+        this.data = data;
+    }
+
+    // Devuelve una copia con el remitente asignado por el servidor (los bytes de data se comparten).
+    public Message withSender(int senderId, String sender) {
+        Message copy = new Message(type, sender, senderId, text, data);
+        copyExtras(copy);
+        return copy;
+    }
+
+    // Devuelve una copia con la sala indicada (para el JOIN).
+    public Message withRoom(String room) {
+        Message copy = copy();
+        copy.room = room;
+        return copy;
+    }
+
+    // Devuelve una copia con el codec de audio indicado (oferta o elección, ver el campo codec).
+    public Message withCodec(String codec) {
+        Message copy = copy();
+        copy.codec = codec;
+        return copy;
+    }
+
+    // Devuelve una copia con la capa de simulcast indicada.
+    public Message withLayer(int layer) {
+        Message copy = copy();
+        copy.layer = layer;
+        return copy;
+    }
+
+    // Devuelve una copia con el número de secuencia de media indicado.
+    public Message withSequence(int sequence) {
+        Message copy = copy();
+        copy.sequence = sequence;
+        return copy;
+    }
+
+    // Devuelve una copia con la hora de captura indicada (reloj de la reunión, en microsegundos).
+    public Message withCaptureTime(long captureTime) {
+        Message copy = copy();
+        copy.captureTime = captureTime;
+        return copy;
+    }
+
+    private Message copy() {
+        Message copy = new Message(type, sender, senderId, text, data);
+        copyExtras(copy);
+        return copy;
+    }
+
+    private void copyExtras(Message copy) {
+        copy.room = room;
+        copy.codec = codec;
+        copy.layer = layer;
+        copy.sequence = sequence;
+        copy.captureTime = captureTime;
+    }
+    
     // ===== Getters =====
     // Funcionamiento: Métodos simples para acceder a los campos privados.
     // No setters, ya que los mensajes son inmutables una vez creados.
@@ -46,4 +126,10 @@ public class Message implements Serializable {
     public String getSender() { return sender; }
     public String getText() { return text; }
     public byte[] getData() { return data; }
+    public int getSenderId() { return senderId; }
+    public String getRoom() { return room; }
+    public String getCodec() { return codec; }
+    public int getLayer() { return layer; }
+    public int getSequence() { return sequence; }
+    public long getCaptureTime() { return captureTime; }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec base para protocolos con frames de longitud prefijada.
+ * 
+ * Funcionamiento general: Cada frame en el cable es [int longitud][cuerpo]. Esta clase resuelve
+ * el prefijo de longitud y deja a las subclases solo la codificación del cuerpo.
+ * Ofrece lectura desde streams bloqueantes (cliente y servidor clásico) y desde ByteBuffer
+ * acumulados (servidor NIO), donde un frame puede llegar partido en varias lecturas.
+ */
+
+public abstract class MessageCodec {
+    // Bytes del prefijo de longitud.
+    public static final int HEADER_SIZE = 4;
+    // Tamaño máximo de un cuerpo. Protege contra longitudes corruptas o maliciosas.
+    public static final int MAX_FRAME_SIZE = 4 * 1024 * 1024;
+
+    // Codifica el cuerpo de un mensaje (sin prefijo de longitud).
+    protected abstract byte[] encodeBody(Message msg) throws IOException;
+
+    // Decodifica un cuerpo completo. El buffer contiene exactamente los bytes del cuerpo.
+    protected abstract Message decodeBody(ByteBuffer body) throws IOException;
+
+    // Codifica un mensaje como frame completo listo para escribir (posición 0, límite = tamaño).
+    public ByteBuffer encode(Message msg) throws IOException {
+        byte[] body = encodeBody(msg);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        frame.putInt(body.length).put(body).flip();
+        return frame;
+    }
+
+    // Intenta decodificar un frame desde un buffer en modo lectura.
+    // Funcionamiento: Si el frame está completo lo consume y devuelve el mensaje;
+    // si faltan bytes devuelve null sin mover la posición del buffer.
+    public Message decode(ByteBuffer in) throws IOException {
+        int size = frameSize(in);
+        if (size < 0 || in.remaining() < size) return null;
+
+        ByteBuffer body = in.duplicate();
+        body.position(in.position() + HEADER_SIZE);
+        body.limit(in.position() + size);
+        in.position(in.position() + size);
+        return decodeBody(body.slice());
+    }
+
+    // Tamaño total (prefijo + cuerpo) del frame al inicio del buffer, o -1 si aún no llegó el prefijo.
+    public static int frameSize(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_SIZE) return -1;
+        int length = in.getInt(in.position());
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Longitud de frame inválida: " + length);
+        }
+        return HEADER_SIZE + length;
+    }
+
+    // Lee un frame completo desde un stream bloqueante.
+    public Message read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Longitud de frame inválida: " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return decodeBody(ByteBuffer.wrap(body));
+    }
+
+    // Escribe un mensaje como frame en un stream bloqueante (sin flush).
+    public void write(Message msg, DataOutputStream out) throws IOException {
+        ByteBuffer frame = encode(msg);
+        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+    }
+}
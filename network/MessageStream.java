@@ -0,0 +1,119 @@
+package network;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Par de streams de entrada/salida de mensajes sobre un socket bloqueante.
+ * 
+ * Funcionamiento general: Oculta el protocolo elegido. Con OBJECT usa ObjectOutput/InputStream
+ * como el protocolo original; con protocolos de frames usa Data streams con buffer y el codec
+ * del protocolo. Lo usan tanto el cliente como el servidor clásico (un hilo por cliente).
+ * En modo OBJECT cada escritura termina con reset(), para que ni este stream ni el del otro lado
+ * acumulen en su tabla de handles todos los mensajes enviados durante la sesión.
+ * No es thread-safe para escritura: quien escribe desde varios hilos debe sincronizar.
+ */
+
+public class MessageStream {
+
+    private final Protocol protocol;
+    private final MessageCodec codec;
+    private OutputStream rawOut; // Salida con buffer sobre el socket; la usan los frames ya codificados.
+    private ObjectOutputStream objectOut;
+    private ObjectInputStream objectIn;
+    private DataOutputStream dataOut;
+    private DataInputStream dataIn;
+    private final CountingInputStream counter; // Cuenta los bytes leídos del socket.
+
+    // Constructor: crea los streams según el protocolo.
+    // Funcionamiento: En modo OBJECT el ObjectOutputStream se crea y se hace flush antes de crear
+    // el ObjectInputStream, para que el header llegue al otro lado y no haya deadlock.
+    public MessageStream(Socket socket, Protocol protocol) throws IOException {
+        this.protocol = protocol;
+        this.codec = protocol.newCodec();
+
+        rawOut = new BufferedOutputStream(socket.getOutputStream());
+        if (protocol.isFramed()) {
+            dataOut = new DataOutputStream(rawOut);
+            counter = new CountingInputStream(new BufferedInputStream(socket.getInputStream()));
+            dataIn = new DataInputStream(counter);
+        } else {
+            objectOut = new ObjectOutputStream(rawOut);
+            objectOut.flush();
+            counter = new CountingInputStream(socket.getInputStream());
+            objectIn = new ObjectInputStream(counter);
+        }
+    }
+
+    // Lee el siguiente mensaje. Bloquea hasta que llega completo.
+    public Message read() throws IOException, ClassNotFoundException {
+        if (protocol.isFramed()) {
+            return codec.read(dataIn);
+        }
+        return (Message) objectIn.readObject();
+    }
+
+    // Escribe un mensaje y hace flush para enviarlo inmediatamente.
+    public void write(Message msg) throws IOException {
+        if (protocol.isFramed()) {
+            codec.write(msg, dataOut);
+            dataOut.flush();
+        } else {
+            objectOut.writeObject(msg);
+            objectOut.reset(); // Libera las referencias al mensaje y a su byte[].
+            objectOut.flush();
+        }
+    }
+
+    // Escribe un frame ya codificado (sin flush), para agrupar varios en una sola escritura.
+    // Funcionamiento: Los frames son autocontenidos (en OBJECT empiezan con TC_RESET), así que
+    // pueden ir directo al buffer del socket aunque se mezclen con write(Message).
+    public void writeFrame(Frame frame) throws IOException {
+        frame.writeTo(rawOut);
+    }
+
+    // Envía al socket lo que quede en el buffer de salida.
+    public void flush() throws IOException {
+        rawOut.flush();
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    // Bytes leídos hasta ahora. Con frames es exacto por mensaje; con OBJECT el ObjectInputStream lee
+    // por adelantado, así que solo el total es exacto. Lo usa el hilo que lee.
+    public long bytesRead() {
+        return counter.count;
+    }
+
+    /** Stream que cuenta los bytes que pasan por él. */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package network;
+
+/**
+ * Métricas de un tipo de mensaje (VIDEO, AUDIO, CHAT, ...) publicadas por JMX.
+ *
+ * Funcionamiento general: Hay un MBean por tipo, con nombre network:type=MessageType,name=TIPO, y se
+ * registra la primera vez que el servidor ve ese tipo. Los contadores son totales desde el arranque.
+ * El fan-out es el tiempo que tarda la sala en repartir un mensaje (codificar y encolar en cada
+ * destinatario); sus percentiles son los de la última ventana de -Dmeeting.metrics.windowSeconds.
+ */
+
+public interface MessageTypeMetricsMXBean {
+
+    long getMessagesIn();
+
+    long getBytesIn();
+
+    // Mensajes efectivamente escritos hacia los clientes (por TCP o UDP).
+    long getMessagesOut();
+
+    long getBytesOut();
+
+    // Mensajes descartados por desborde de las colas de salida.
+    long getDroppedMessages();
+
+    long getFanOutCount();
+
+    long getFanOutP50Micros();
+
+    long getFanOutP99Micros();
+
+    long getFanOutMaxMicros();
+}
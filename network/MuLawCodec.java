@@ -0,0 +1,70 @@
+package network;
+
+/**
+ * Remuestreo a una frecuencia de voz + µ-law (G.711): un byte por muestra.
+ * 
+ * Funcionamiento general: encode baja el PCM de 44,1 kHz a la frecuencia del codec y comprime cada
+ * muestra de 16 bits a 8 bits con la curva logarítmica µ-law; decode hace lo inverso. Cada paquete se
+ * decodifica solo, así que una pérdida no afecta a los siguientes.
+ */
+
+class MuLawCodec implements AudioCodec {
+
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32635;
+
+    private final Resampler down;
+    private final Resampler up;
+
+    MuLawCodec(int rate) {
+        this.down = new Resampler(PCM_RATE, rate);
+        this.up = new Resampler(rate, PCM_RATE);
+    }
+
+    @Override
+    public String getName() {
+        return AudioCodecs.ULAW_16K;
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int length) {
+        short[] samples = Resampler.toSamples(pcm, length);
+        samples = down.process(samples, samples.length);
+        byte[] out = new byte[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            out[i] = encodeSample(samples[i]);
+        }
+        return out;
+    }
+
+    @Override
+    public byte[] decode(byte[] data) {
+        short[] samples = new short[data.length];
+        for (int i = 0; i < data.length; i++) {
+            samples[i] = decodeSample(data[i]);
+        }
+        return Resampler.toPcm(up.process(samples, samples.length));
+    }
+
+    static byte encodeSample(int sample) {
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0) sample = -sample;
+        if (sample > CLIP) sample = CLIP;
+        sample += BIAS;
+        int exponent = 7;
+        for (int mask = 0x4000; (sample & mask) == 0 && exponent > 0; mask >>= 1) {
+            exponent--;
+        }
+        int mantissa = (sample >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    static short decodeSample(byte encoded) {
+        int value = ~encoded & 0xFF;
+        int sign = value & 0x80;
+        int exponent = (value >> 4) & 0x07;
+        int mantissa = value & 0x0F;
+        int sample = (((mantissa << 3) + BIAS) << exponent) - BIAS;
+        return (short) (sign != 0 ? -sample : sample);
+    }
+}
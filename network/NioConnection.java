@@ -0,0 +1,293 @@
+package network;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexión de un cliente en el servidor NIO.
+ * 
+ * Funcionamiento general: Lee bytes del canal, arma frames completos con el codec y los entrega
+ * al servidor. Los envíos se encolan (desde cualquier hilo) y el EventLoop dueño los escribe
+ * cuando el socket acepta datos. Una conexión inactiva no retiene buffers propios: la lectura
+ * usa el buffer compartido del loop y solo se copia un frame a medias.
+ * Al entrar a una sala la conexión se muda al EventLoop de esa sala (migrateTo), así todo el
+ * tráfico de una sala se procesa en un solo hilo.
+ */
+
+class NioConnection implements Participant {
+
+    private final SocketChannel channel;
+    private final NioMeetingServer server;
+    private final MessageCodec codec;
+    // Loop dueño de la conexión. null mientras se muda de loop.
+    private volatile EventLoop loop;
+    private SelectionKey key;
+    // Bytes sin procesar (un frame incompleto, o frames que esperan a que termine una mudanza).
+    // Se guarda en modo escritura; null cuando no hay nada pendiente.
+    private ByteBuffer pending;
+    // Frames por escribir (cola acotada con descarte de media). Los Frame se comparten entre destinatarios.
+    private final OutboundQueue<Frame> outbound;
+    // Frame que se está escribiendo; puede quedar a medias hasta el próximo OP_WRITE.
+    private ByteBuffer current;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Indica que la conexión está cambiando de loop: se deja de procesar lo leído hasta llegar al nuevo.
+    private boolean migrating = false;
+    // Mudanza pedida y todavía no entregada al loop destino (ver handOff).
+    private EventLoop migrationTarget;
+    private Runnable migrationThen;
+    private volatile Room room; // Sala asignada al aceptar el JOIN.
+    private volatile String username; // Registrado al recibir JOIN.
+    private volatile int participantId; // ID asignado por la sala (0 = sin asignar).
+    private volatile SocketAddress mediaEndpoint; // Endpoint UDP de media (null = media por TCP).
+    private final ConnectionMetrics metrics; // Tráfico, descartes y backlog de esta conexión.
+
+    NioConnection(SocketChannel channel, NioMeetingServer server, MessageCodec codec, OutboundQueue.Policy policy) {
+        this.channel = channel;
+        this.server = server;
+        this.codec = codec;
+        this.metrics = server.getMetrics().opened(this);
+        this.outbound = new OutboundQueue<>(policy, metrics::dropped);
+    }
+
+    // Asocia la conexión a su loop y a su SelectionKey. Se llama en el hilo del loop.
+    // Funcionamiento: Envía lo que se haya encolado antes y procesa los frames que quedaron
+    // pendientes de una mudanza.
+    void attach(EventLoop loop, SelectionKey key) {
+        this.loop = loop;
+        this.key = key;
+        this.migrating = false;
+        if (!outbound.isEmpty()) flush();
+    }
+
+    // Procesa los bytes que quedaron guardados antes de cambiar de loop.
+    // Si then volvió a pedir una mudanza (la sala se cerró mientras tanto), la entrega al nuevo destino.
+    void resume() throws IOException {
+        if (pending != null && pending.position() > 0 && !closed.get()) {
+            pending.flip();
+            process(pending);
+        } else {
+            handOff();
+        }
+    }
+
+    // Muda la conexión al loop indicado y ejecuta then allí. Se llama en el loop actual, mientras se
+    // procesa un frame (el JOIN) o desde el then de una mudanza anterior.
+    // Funcionamiento: Cancela la key en el selector actual y deja la mudanza pedida. Todavía no se registra en
+    // el destino: este hilo sigue dentro de process y va a guardar los bytes ya leídos en pending. Recién
+    // después handOff encola el registro, así el loop destino nunca ve la conexión a medio guardar.
+    void migrateTo(EventLoop target, Runnable then) {
+        if (target == loop) {
+            then.run();
+            return;
+        }
+        migrating = true;
+        loop = null;
+        key.cancel();
+        key = null;
+        migrationTarget = target;
+        migrationThen = then;
+    }
+
+    // Entrega la mudanza pendiente al loop destino. Todo lo escrito antes (pending incluido) queda publicado
+    // para ese hilo por la cola de tareas del loop.
+    private void handOff() {
+        EventLoop target = migrationTarget;
+        if (target == null) return;
+        Runnable then = migrationThen;
+        migrationTarget = null;
+        migrationThen = null;
+        target.register(this, then);
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public Room getRoom() {
+        return room;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public int getParticipantId() {
+        return participantId;
+    }
+
+    @Override
+    public void joined(Room room, String username, int participantId) {
+        this.room = room;
+        this.username = username;
+        this.participantId = participantId;
+    }
+
+    @Override
+    public long getBacklogBytes() {
+        return outbound.bytes();
+    }
+
+    @Override
+    public SocketAddress getMediaEndpoint() {
+        return mediaEndpoint;
+    }
+
+    @Override
+    public void setMediaEndpoint(SocketAddress endpoint) {
+        this.mediaEndpoint = endpoint;
+    }
+
+    @Override
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Lee lo disponible y entrega cada frame completo al servidor.
+    // Funcionamiento: Si no hay bytes pendientes, lee en el buffer compartido del loop; lo que sobre
+    // de un frame incompleto se copia a un buffer propio del tamaño del frame.
+    void onReadable() throws IOException {
+        ByteBuffer buf = pending != null ? pending : loop.scratch();
+        int n = channel.read(buf);
+        if (n < 0) {
+            close();
+            return;
+        }
+        buf.flip();
+        process(buf);
+    }
+
+    // Decodifica frames completos del buffer (en modo lectura) mientras la conexión siga en este loop.
+    // Si un frame pidió una mudanza, lo que sigue se guarda en pending y recién entonces se muda.
+    private void process(ByteBuffer buf) throws IOException {
+        Message msg;
+        int start = buf.position();
+        while (!closed.get() && !migrating && (msg = codec.decode(buf)) != null) {
+            metrics.received(msg.getType(), buf.position() - start);
+            server.onMessage(this, msg);
+            start = buf.position();
+        }
+        keepRemainder(buf);
+        handOff();
+    }
+
+    // Guarda los bytes no procesados en el buffer propio de la conexión (o lo libera si no queda nada).
+    // El buffer compartido del loop nunca queda en pending: una mudanza se lleva solo bytes propios.
+    private void keepRemainder(ByteBuffer buf) throws IOException {
+        boolean own = buf == pending;
+        if (!buf.hasRemaining() || closed.get()) {
+            pending = null;
+            if (!own) buf.clear();
+            return;
+        }
+
+        int needed = Math.max(Math.max(MessageCodec.frameSize(buf), MessageCodec.HEADER_SIZE), buf.remaining());
+        if (own && buf.capacity() >= needed) {
+            buf.compact();
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(needed);
+        copy.put(buf);
+        if (!own) buf.clear();
+        pending = copy;
+    }
+
+    // Encola un frame para este cliente. Puede llamarse desde cualquier hilo y nunca bloquea.
+    // Funcionamiento: Si la cola lleva saturada más del tiempo permitido, se cierra la conexión.
+    @Override
+    public void send(Frame frame) {
+        if (frame == null || closed.get()) return;
+        if (outbound.offer(frame, frame.getType(), frame.size()) == OutboundQueue.Result.DISCONNECT) {
+            System.out.println("Cliente saturado, desconectando: " + this);
+            close();
+            return;
+        }
+        scheduleFlush();
+    }
+
+    // Encola el último frame y cierra la conexión cuando termine de escribirse.
+    @Override
+    public void sendAndClose(Frame frame) {
+        send(frame);
+        outbound.finish();
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        EventLoop owner = loop;
+        if (owner != null && flushScheduled.compareAndSet(false, true)) {
+            owner.execute(this::flush);
+        }
+    }
+
+    // Escribe los frames encolados hasta que el socket deje de aceptar datos.
+    // Funcionamiento: Si un frame queda a medias se activa OP_WRITE y se continúa cuando el
+    // selector indique que el socket puede escribir; al vaciar la cola se quita OP_WRITE.
+    // Si la conexión cambió de loop, la escritura se reprograma en el loop nuevo.
+    void flush() {
+        flushScheduled.set(false);
+        EventLoop owner = loop;
+        if (closed.get() || owner == null) return;
+        if (!owner.inLoop()) {
+            scheduleFlush();
+            return;
+        }
+        try {
+            while (current != null || (current = nextBuffer()) != null) {
+                channel.write(current);
+                if (current.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                current = null;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (outbound.isFinishing()) {
+                close(); // Se pidió cerrar después del último frame (p.ej. sala llena).
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    // Vista propia del siguiente frame de la cola, o null si está vacía.
+    private ByteBuffer nextBuffer() {
+        Frame frame = outbound.poll();
+        if (frame == null) return null;
+        metrics.sent(frame.getType(), frame.size());
+        return frame.buffer();
+    }
+
+    // Cierra la conexión (una sola vez) y avisa al servidor.
+    void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            SelectionKey k = key;
+            if (k != null) k.cancel();
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error cerrando socket: " + e.getMessage());
+        }
+        outbound.close();
+        metrics.close();
+        current = null;
+        pending = null;
+        server.onClosed(this);
+    }
+
+    @Override
+    public String toString() {
+        return "NioConnection[" + (username != null ? username : channel) + "]";
+    }
+}
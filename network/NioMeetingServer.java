@@ -0,0 +1,191 @@
+package network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Servidor de relay no bloqueante basado en Selector (java.nio).
+ * 
+ * Funcionamiento general: Un hilo acepta conexiones y las reparte en round-robin entre un pool
+ * pequeño de EventLoops (aprox. uno por núcleo). Cada loop lee frames, los pasa a onMessage
+ * y escribe las colas de salida de sus conexiones. No hay un hilo por socket, así que miles de
+ * conexiones inactivas solo cuestan su canal y su SelectionKey.
+ * Cada sala se fija al loop con menos salas al crearse, y sus miembros se mudan a ese loop al
+ * hacer JOIN: el registro de miembros y el broadcast de una sala corren en un solo hilo, sin locks,
+ * y las salas de distintos loops avanzan en paralelo. Requiere un protocolo con frames.
+ */
+
+public class NioMeetingServer {
+
+    private final int port;
+    private final Protocol protocol;
+    private final MessageCodec codec;
+    private final OutboundQueue.Policy queuePolicy;
+    private final int maxParticipants;
+    private final EventLoop[] loops;
+    // Salas activas por nombre. Solo se modifica al crear una sala o al vaciarse.
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    // Transporte UDP de media (-Dmeeting.udp=true). null si está desactivado.
+    private MediaDatagramServer media;
+    // Registro persistente del chat de las salas (-Dmeeting.chat.log=true o -Dmeeting.chat.dir). null si no se pidió.
+    private ChatLog chatLog;
+    // Grabador de reuniones (-Dmeeting.record.dir). null si no se graba.
+    private MeetingRecorder recorder;
+    // Métricas del servidor (JMX y -Dmeeting.stats.port).
+    private ServerMetrics metrics;
+    private int nextLoop = 0;
+
+    // Constructor: crea los loops pero no abre el puerto (ver start).
+    public NioMeetingServer(int port, Protocol protocol, int threads, OutboundQueue.Policy queuePolicy,
+                            int maxParticipants) throws IOException {
+        if (!protocol.isFramed()) {
+            throw new IllegalArgumentException("El modo NIO requiere un protocolo con frames, no " + protocol);
+        }
+        this.port = port;
+        this.protocol = protocol;
+        this.codec = protocol.newCodec();
+        this.queuePolicy = queuePolicy;
+        this.maxParticipants = maxParticipants;
+        this.loops = new EventLoop[Math.max(1, threads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("nio-loop-" + i);
+        }
+    }
+
+    // Arranca los loops y acepta conexiones indefinidamente en el hilo actual.
+    // Funcionamiento: accept() bloqueante; el socket aceptado pasa a modo no bloqueante y se
+    // registra en el siguiente loop hasta que su JOIN lo mude al loop de su sala.
+    public void start() throws IOException {
+        for (EventLoop loop : loops) loop.start();
+        metrics = ServerMetrics.fromSystemProperties();
+        // La media que llega por UDP se reenvía en el loop de la sala, igual que la que llega por TCP.
+        media = MediaDatagramServer.fromSystemProperties(port, (participant, msg) -> {
+            participant.getMetrics().received(msg.getType(), msg.getData().length);
+            Room room = participant.getRoom();
+            if (room != null) room.getLoop().execute(() -> relay(room, participant, msg));
+        });
+
+        chatLog = ChatLog.fromSystemProperties();
+        recorder = MeetingRecorder.fromSystemProperties();
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        System.out.println("Servidor NIO iniciado en puerto " + port + " con " + loops.length + " event loops");
+
+        while (true) {
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            NioConnection conn = new NioConnection(channel, this, codec, queuePolicy);
+            loops[nextLoop].register(conn, null);
+            nextLoop = (nextLoop + 1) % loops.length;
+        }
+    }
+
+    // Procesa un mensaje recibido. Se llama desde el loop de la conexión.
+    // Funcionamiento: Sin sala, solo se atiende el JOIN; con sala, la conexión ya vive en el loop
+    // de la sala y la sala lo reenvía con el remitente de la conexión.
+    void onMessage(NioConnection conn, Message msg) {
+        Room room = conn.getRoom();
+        if (room == null) {
+            if ("JOIN".equals(msg.getType())) {
+                joinRoom(conn, msg);
+            }
+            return;
+        }
+        if (msg.getType().startsWith("MEDIA_")) {
+            // Negociación del transporte de media. Sin UDP se ignora y la media sigue por TCP.
+            Message reply = media != null ? media.handleControl(conn, msg) : null;
+            if (reply != null) conn.send(encode(reply));
+            return;
+        }
+        relay(room, conn, msg.withSender(conn.getParticipantId(), conn.getUsername()));
+    }
+
+    // Reenvía un mensaje a la sala (en su loop) y registra cuánto tardó el reparto.
+    private void relay(Room room, Participant from, Message msg) {
+        long start = System.nanoTime();
+        room.relay(from, msg);
+        metrics.relayed(msg.getType(), start);
+    }
+
+    // Busca (o crea) la sala del JOIN, muda la conexión a su loop y la une allí.
+    // Funcionamiento: Si la sala se vació y cerró mientras la conexión se mudaba, se vuelve a buscar.
+    // Si la conexión se cerró durante la mudanza nunca entra a la sala, así que onClosed no la va a limpiar:
+    // la sala se descarta acá si quedó vacía (la creó este JOIN y nadie más entró). register corre el
+    // callback también cuando no pudo registrar el canal cerrado.
+    private void joinRoom(NioConnection conn, Message joinMsg) {
+        Room room = rooms.computeIfAbsent(MeetingServer.roomName(joinMsg), this::createRoom);
+        conn.migrateTo(room.getLoop(), () -> {
+            if (conn.isClosed()) {
+                if (!room.isClosed() && room.closeIfEmpty()) {
+                    rooms.remove(room.getName(), room);
+                    room.getLoop().roomClosed();
+                }
+                return;
+            }
+            if (room.isClosed()) {
+                joinRoom(conn, joinMsg);
+                return;
+            }
+            room.join(conn, joinMsg);
+        });
+    }
+
+    // Crea una sala fijada al loop con menos salas.
+    private Room createRoom(String name) {
+        EventLoop target = loops[0];
+        for (EventLoop loop : loops) {
+            if (loop.roomCount() < target.roomCount()) target = loop;
+        }
+        target.roomOpened();
+        return new Room(name, maxParticipants, this::encode, target, media, chatLog, recorder);
+    }
+
+    // Se llama una vez cuando una conexión se cierra: la quita de su sala (en el loop de la sala),
+    // que notifica LEAVE y se elimina del registro si quedó vacía.
+    // Funcionamiento: La baja se encola aunque ya estemos en el loop de la sala: el cierre puede venir de una
+    // escritura fallida en medio de un broadcast de esa misma sala, y sacar al miembro ahí rompería la iteración.
+    void onClosed(NioConnection conn) {
+        System.out.println("Cliente removido: " + conn);
+        if (media != null) media.unregister(conn);
+        Room room = conn.getRoom();
+        if (room == null) return;
+        room.getLoop().submit(() -> {
+            if (room.leave(conn)) {
+                rooms.remove(room.getName(), room);
+                room.getLoop().roomClosed();
+            }
+        });
+    }
+
+    ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Salas activas en el registro.
+    int roomCount() {
+        return rooms.size();
+    }
+
+    // Salas según la cuenta de los loops (la que usa createRoom para repartir); debe coincidir con roomCount.
+    int loopRoomCount() {
+        int total = 0;
+        for (EventLoop loop : loops) total += loop.roomCount();
+        return total;
+    }
+
+    // Codifica un mensaje con el protocolo del servidor. Devuelve null si no se pudo codificar.
+    private Frame encode(Message msg) {
+        try {
+            return Frame.encode(msg, protocol, codec);
+        } catch (IOException e) {
+            System.out.println("Error codificando mensaje: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package network;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Cola de salida acotada de un cliente, con políticas de desborde.
+ * 
+ * Funcionamiento general: El broadcast solo encola (nunca bloquea) y un escritor propio del
+ * cliente vacía la cola hacia el socket. Si la cola está llena se descarta primero el elemento
+ * más viejo del tipo con menor prioridad (por defecto VIDEO y luego AUDIO); los mensajes de
+ * control (CHAT, JOIN, LEAVE, etc.) nunca se descartan. Si el cliente permanece saturado más
+ * tiempo que el configurado, offer() devuelve DISCONNECT para que el servidor lo desconecte.
+ * Thread-safe: todos los métodos sincronizan sobre la propia cola.
+ */
+
+public class OutboundQueue<T> {
+
+    // Resultado de encolar un elemento.
+    public enum Result { ACCEPTED, DROPPED, DISCONNECT }
+
+    /**
+     * Configuración de la cola. Se lee de propiedades de sistema con valores por defecto.
+     * 
+     * Funcionamiento: maxMessages y maxBytes acotan la cola; dropOrder lista los tipos que se pueden
+     * descartar, en orden de preferencia; saturationMillis es el tiempo máximo de saturación continua.
+     */
+    public static class Policy {
+        final int maxMessages;
+        final long maxBytes;
+        final long saturationMillis;
+        final List<String> dropOrder;
+
+        public Policy(int maxMessages, long maxBytes, long saturationMillis, List<String> dropOrder) {
+            this.maxMessages = maxMessages;
+            this.maxBytes = maxBytes;
+            this.saturationMillis = saturationMillis;
+            this.dropOrder = List.copyOf(dropOrder);
+        }
+
+        // Política desde -Dmeeting.queue.maxMessages, maxBytes, saturationSeconds y dropOrder.
+        public static Policy fromSystemProperties() {
+            String order = System.getProperty("meeting.queue.dropOrder", "VIDEO,AUDIO");
+            List<String> dropOrder = new ArrayList<>();
+            for (String type : order.split(",")) {
+                if (!type.isBlank()) dropOrder.add(type.trim().toUpperCase());
+            }
+            return new Policy(
+                    Integer.getInteger("meeting.queue.maxMessages", 256),
+                    Long.getLong("meeting.queue.maxBytes", 4L * 1024 * 1024),
+                    Long.getLong("meeting.queue.saturationSeconds", 5) * 1000,
+                    dropOrder);
+        }
+
+        boolean isDroppable(String type) {
+            return dropOrder.contains(type);
+        }
+    }
+
+    // Elemento encolado con su tipo y tamaño (para la política y el límite de bytes).
+    private static class Entry<T> {
+        final T item;
+        final String type;
+        final int size;
+
+        Entry(T item, String type, int size) {
+            this.item = item;
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    private final Policy policy;
+    // Aviso de cada descarte con el tipo descartado (p.ej. para métricas). Se llama con el lock tomado.
+    private final Consumer<String> onDrop;
+    private final ArrayDeque<Entry<T>> entries = new ArrayDeque<>();
+    private long bytes = 0;
+    // Momento (ms) desde el que la cola está saturada; 0 si no lo está.
+    private long saturatedSince = 0;
+    private long dropped = 0;
+    private boolean closed = false;
+    // Tras finish() no se aceptan elementos nuevos y take() devuelve null al vaciarse.
+    private boolean finishing = false;
+
+    public OutboundQueue(Policy policy) {
+        this(policy, type -> {});
+    }
+
+    public OutboundQueue(Policy policy, Consumer<String> onDrop) {
+        this.policy = policy;
+        this.onDrop = onDrop;
+    }
+
+    // Encola un elemento sin bloquear.
+    // Funcionamiento: Si no cabe, descarta media vieja según dropOrder; si no hay nada que
+    // descartar, se descarta el entrante (salvo que sea de control, que entra igual).
+    public synchronized Result offer(T item, String type, int size) {
+        if (closed || finishing) return Result.DROPPED;
+
+        Result result = Result.ACCEPTED;
+        boolean droppable = policy.isDroppable(type);
+        boolean overflowed = false;
+
+        while (wouldOverflow(size) && result == Result.ACCEPTED) {
+            overflowed = true;
+            if (!evictOldest(type)) {
+                if (droppable) {
+                    dropped++;
+                    onDrop.accept(type);
+                    result = Result.DROPPED;
+                } else {
+                    break; // Control: nunca se descarta, se permite exceder el límite.
+                }
+            }
+        }
+
+        if (result == Result.ACCEPTED) {
+            entries.addLast(new Entry<>(item, type, size));
+            bytes += size;
+        }
+
+        // Cualquier desborde (descarte o exceso de control) cuenta como saturación.
+        if (overflowed) {
+            long now = System.currentTimeMillis();
+            if (saturatedSince == 0) {
+                saturatedSince = now;
+            } else if (now - saturatedSince > policy.saturationMillis) {
+                notifyAll();
+                return Result.DISCONNECT;
+            }
+        }
+
+        notifyAll();
+        return result;
+    }
+
+    // Saca el siguiente elemento, esperando si la cola está vacía. Devuelve null si se cerró.
+    public synchronized T take() throws InterruptedException {
+        while (entries.isEmpty() && !closed && !finishing) {
+            wait();
+        }
+        return poll();
+    }
+
+    // Saca el siguiente elemento sin esperar. Devuelve null si la cola está vacía o cerrada.
+    public synchronized T poll() {
+        if (closed) return null;
+        Entry<T> entry = entries.pollFirst();
+        if (entry == null) return null;
+        bytes -= entry.size;
+        // Sale de saturación cuando la cola baja de la mitad de su capacidad.
+        if (entries.size() <= policy.maxMessages / 2 && bytes <= policy.maxBytes / 2) {
+            saturatedSince = 0;
+        }
+        return entry.item;
+    }
+
+    // Deja de aceptar elementos; los ya encolados se siguen entregando.
+    public synchronized void finish() {
+        finishing = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isFinishing() {
+        return finishing;
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    // Cantidad total de elementos descartados por desborde.
+    public synchronized long droppedCount() {
+        return dropped;
+    }
+
+    // Cierra la cola: libera los elementos y despierta al escritor bloqueado en take().
+    public synchronized void close() {
+        closed = true;
+        entries.clear();
+        bytes = 0;
+        notifyAll();
+    }
+
+    // Indica si un elemento de ese tamaño excedería alguno de los límites.
+    private boolean wouldOverflow(int size) {
+        return entries.size() >= policy.maxMessages || bytes + size > policy.maxBytes;
+    }
+
+    // Descarta el elemento más viejo del tipo de menor prioridad.
+    // Funcionamiento: Recorre dropOrder (p.ej. VIDEO, AUDIO) y quita el primero que encuentre.
+    // Un elemento entrante nunca desplaza a uno de un tipo de mayor prioridad que el suyo.
+    private boolean evictOldest(String incomingType) {
+        int incomingRank = policy.dropOrder.indexOf(incomingType);
+        for (int rank = 0; rank < policy.dropOrder.size(); rank++) {
+            if (incomingRank >= 0 && rank > incomingRank) return false;
+            String type = policy.dropOrder.get(rank);
+            Iterator<Entry<T>> it = entries.iterator();
+            while (it.hasNext()) {
+                Entry<T> entry = it.next();
+                if (entry.type.equals(type)) {
+                    it.remove();
+                    bytes -= entry.size;
+                    dropped++;
+                    onDrop.accept(type);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package network;
+
+import java.net.SocketAddress;
+
+/**
+ * Conexión de un participante vista desde una sala.
+ * 
+ * Funcionamiento general: La implementan el ClientHandler del servidor clásico (un hilo por cliente)
+ * y la NioConnection del servidor NIO, así la lógica de salas (Room) es la misma en ambos modos.
+ * send() nunca bloquea: solo encola en la cola de salida del participante.
+ * Si el participante activó media por UDP, la sala le envía VIDEO/AUDIO como datagramas a su endpoint.
+ */
+
+interface Participant {
+
+    String getUsername();
+
+    int getParticipantId();
+
+    // Sala del participante, o null si todavía no entró a ninguna.
+    Room getRoom();
+
+    // Lo llama la sala al aceptar el JOIN: registra la sala, el nombre y el ID asignado.
+    void joined(Room room, String username, int participantId);
+
+    // Encola un frame para este participante.
+    void send(Frame frame);
+
+    // Encola un último frame y cierra la conexión cuando termine de enviarse (p.ej. "sala llena").
+    void sendAndClose(Frame frame);
+
+    // Bytes pendientes en la cola de salida (backlog hacia este participante).
+    long getBacklogBytes();
+
+    // Endpoint UDP confirmado por HELLO, o null si la media de este participante va por TCP.
+    SocketAddress getMediaEndpoint();
+
+    void setMediaEndpoint(SocketAddress endpoint);
+
+    // Contadores de tráfico de esta conexión (ver ServerMetrics).
+    ConnectionMetrics getMetrics();
+}
@@ -0,0 +1,29 @@
+package network;
+
+import java.util.BitSet;
+
+/**
+ * Asignador de IDs numéricos de participante (1..65535).
+ * 
+ * Funcionamiento general: Entrega el menor ID libre al hacer JOIN y lo recupera al desconectarse,
+ * así los IDs caben siempre en los 2 bytes del protocolo binario. Thread-safe.
+ */
+
+public class ParticipantIds {
+    private static final int MAX_ID = 0xFFFF;
+
+    private final BitSet used = new BitSet();
+
+    // Reserva un ID libre. Devuelve 0 (sin asignar) si se agotaron.
+    public synchronized int allocate() {
+        int id = used.nextClearBit(1);
+        if (id > MAX_ID) return 0;
+        used.set(id);
+        return id;
+    }
+
+    // Libera un ID para que pueda reutilizarse.
+    public synchronized void release(int id) {
+        if (id > 0) used.clear(id);
+    }
+}
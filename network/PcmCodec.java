@@ -0,0 +1,25 @@
+package network;
+
+import java.util.Arrays;
+
+/**
+ * Codec identidad: PCM crudo a 44,1 kHz, como enviaban los clientes antes de negociar codecs.
+ */
+
+class PcmCodec implements AudioCodec {
+
+    @Override
+    public String getName() {
+        return AudioCodecs.PCM;
+    }
+
+    @Override
+    public byte[] encode(byte[] pcm, int length) {
+        return Arrays.copyOf(pcm, length);
+    }
+
+    @Override
+    public byte[] decode(byte[] data) {
+        return data;
+    }
+}
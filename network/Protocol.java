@@ -0,0 +1,42 @@
+package network;
+
+/**
+ * Protocolos de cable soportados entre cliente y servidor.
+ * 
+ * Funcionamiento general: OBJECT es el protocolo original (un ObjectOutputStream continuo
+ * sobre el socket). Los protocolos con frames envían cada mensaje precedido de su longitud,
+ * lo que permite leerlos desde un ByteBuffer sin bloquear (necesario para el modo NIO del servidor).
+ * Se selecciona con la propiedad de sistema "meeting.protocol".
+ */
+
+public enum Protocol {
+    // Flujo continuo de ObjectOutputStream. Solo lo soporta el servidor bloqueante.
+    OBJECT,
+    // Frames con prefijo de longitud; cada cuerpo es un Message serializado de forma independiente.
+    FRAMED,
+    // Frames con prefijo de longitud y cuerpo binario compacto (ver BinaryCodec).
+    BINARY;
+
+    // Indica si el protocolo usa frames con prefijo de longitud.
+    public boolean isFramed() {
+        return this != OBJECT;
+    }
+
+    // Crea el codec de frames del protocolo. OBJECT no usa codec (devuelve null).
+    public MessageCodec newCodec() {
+        switch (this) {
+            case FRAMED:
+                return new SerializedCodec();
+            case BINARY:
+                return new BinaryCodec();
+            default:
+                return null;
+        }
+    }
+
+    // Obtiene el protocolo por nombre (sin importar mayúsculas). Si el nombre es null usa el valor por defecto.
+    public static Protocol fromName(String name, Protocol defaultProtocol) {
+        if (name == null || name.isEmpty()) return defaultProtocol;
+        return Protocol.valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,224 @@
+package network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lectura de una grabación escrita por MeetingRecorder.
+ *
+ * Funcionamiento general: Al abrir se cargan los índices (.idx) de todos los segmentos, que son chicos:
+ * una entrada por segundo. seek busca el segmento y la entrada del índice más cercana antes de la hora
+ * pedida y next devuelve desde ahí los registros en orden, como Message (VIDEO con su capa, AUDIO,
+ * CHAT con su texto, JOIN con el codec de audio del participante, LEAVE), salteando los anteriores a la
+ * hora pedida. Lee por bloques con un buffer propio y pasa de un segmento al siguiente sin cortes.
+ * Un registro final incompleto (grabación cortada) se toma como el fin de su segmento.
+ * El video está codificado como lo envió el cliente (DeltaVideoEncoder): quien reproduce desde un seek
+ * debe descartar los deltas hasta el primer keyframe.
+ * No es thread-safe.
+ */
+
+public class RecordingReader implements AutoCloseable {
+
+    /** Registro leído: la hora en que la sala lo reenvió (ms de época) y el mensaje. */
+    public static final class Record {
+        private final long timestamp;
+        private final Message message;
+
+        Record(long timestamp, Message message) {
+            this.timestamp = timestamp;
+            this.message = message;
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public Message getMessage() { return message; }
+    }
+
+    // Segmento con su índice: hora y posición del primer registro de cada segundo.
+    private static final class Segment {
+        final Path file;
+        final long[] times;
+        final long[] offsets;
+
+        Segment(Path file, long[] times, long[] offsets) {
+            this.file = file;
+            this.times = times;
+            this.offsets = offsets;
+        }
+
+        long firstTime() {
+            return times.length > 0 ? times[0] : Long.MAX_VALUE;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private ByteBuffer in = ByteBuffer.allocate(256 * 1024);
+    private FileChannel channel;
+    private int current = -1;   // Segmento abierto.
+    private long filePosition;  // Posición del archivo que sigue a lo que hay en el buffer.
+    private long skipBefore = Long.MIN_VALUE;
+
+    // Abre una grabación (el directorio <dir>/<sala>/<hora de inicio>) y se posiciona al principio.
+    public RecordingReader(Path recordingDir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(recordingDir, "*" + MeetingRecorder.SEGMENT_SUFFIX)) {
+            for (Path file : stream) files.add(file);
+        }
+        files.sort(null); // Los segmentos están numerados con ceros a la izquierda.
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Path indexFile = file.resolveSibling(
+                    name.substring(0, name.length() - MeetingRecorder.SEGMENT_SUFFIX.length()) + MeetingRecorder.INDEX_SUFFIX);
+            ByteBuffer index = ByteBuffer.wrap(Files.exists(indexFile) ? Files.readAllBytes(indexFile) : new byte[0]);
+            int entries = index.remaining() / 16;
+            long[] times = new long[entries];
+            long[] offsets = new long[entries];
+            for (int i = 0; i < entries; i++) {
+                times[i] = index.getLong();
+                offsets[i] = index.getLong();
+            }
+            segments.add(new Segment(file, times, offsets));
+        }
+        open(0, 0);
+    }
+
+    // Grabaciones de una sala bajo el directorio de grabación (-Dmeeting.record.dir), de la más vieja a la más nueva.
+    public static List<Path> recordings(Path recordDir, String room) throws IOException {
+        List<Path> recordings = new ArrayList<>();
+        Path roomDir = recordDir.resolve(ChatLog.directoryName(room));
+        if (!Files.isDirectory(roomDir)) return recordings;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(roomDir, Files::isDirectory)) {
+            for (Path dir : stream) recordings.add(dir);
+        }
+        recordings.sort((a, b) -> Long.compare(startOf(a), startOf(b)));
+        return recordings;
+    }
+
+    // Hora del primer registro, o -1 si la grabación está vacía.
+    public long getStartTime() {
+        for (Segment segment : segments) {
+            if (segment.times.length > 0) return segment.times[0];
+        }
+        return -1;
+    }
+
+    // Se posiciona en el primer registro con hora >= timestamp.
+    // Funcionamiento: Elige el último segmento que empieza antes de timestamp, salta a la última entrada de su
+    // índice anterior a timestamp y deja que next saltee los registros que todavía son anteriores.
+    public void seek(long timestamp) throws IOException {
+        int index = 0;
+        for (int i = 1; i < segments.size(); i++) {
+            if (segments.get(i).firstTime() <= timestamp) index = i;
+        }
+        long offset = 0;
+        if (!segments.isEmpty()) {
+            Segment segment = segments.get(index);
+            int slot = Arrays.binarySearch(segment.times, timestamp);
+            if (slot < 0) slot = -slot - 2; // Última entrada con hora < timestamp.
+            if (slot >= 0) offset = segment.offsets[slot];
+        }
+        open(index, offset);
+        skipBefore = timestamp;
+    }
+
+    // Siguiente registro, o null al final de la grabación.
+    public Record next() throws IOException {
+        while (current < segments.size()) {
+            if (!fill(MeetingRecorder.HEADER_BYTES)) {
+                open(current + 1, 0);
+                continue;
+            }
+            int start = in.position();
+            int length = in.getInt(start);
+            if (length < MeetingRecorder.HEADER_BYTES) {
+                open(current + 1, 0); // Registro inválido: se da el segmento por terminado.
+                continue;
+            }
+            if (!fill(length)) {
+                open(current + 1, 0);
+                continue;
+            }
+            start = in.position();
+            long timestamp = in.getLong(start + 4);
+            in.position(start + length);
+            if (timestamp < skipBefore) continue;
+            return new Record(timestamp, decode(in, start, length));
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    // Arma el Message de un registro que está entero en el buffer.
+    private static Message decode(ByteBuffer buffer, int start, int length) {
+        int code = buffer.get(start + 12) & 0xFF;
+        String type = code < MeetingRecorder.TYPES.length ? MeetingRecorder.TYPES[code] : "INFO";
+        int layer = buffer.get(start + 13) & 0xFF;
+        int senderLength = buffer.getShort(start + 14) & 0xFFFF;
+        byte[] sender = new byte[senderLength];
+        byte[] payload = new byte[length - MeetingRecorder.HEADER_BYTES - senderLength];
+        buffer.get(start + MeetingRecorder.HEADER_BYTES, sender);
+        buffer.get(start + MeetingRecorder.HEADER_BYTES + senderLength, payload);
+        String name = new String(sender, StandardCharsets.UTF_8);
+        switch (type) {
+            case "VIDEO":
+                return new Message(type, name, payload).withLayer(layer);
+            case "AUDIO":
+                return new Message(type, name, payload);
+            case "JOIN":
+                return new Message(type, name, (String) null).withCodec(new String(payload, StandardCharsets.UTF_8));
+            default:
+                return new Message(type, name, new String(payload, StandardCharsets.UTF_8));
+        }
+    }
+
+    // Abre un segmento en una posición y vacía el buffer. Pasado el último, queda al final.
+    private void open(int index, long offset) throws IOException {
+        close();
+        current = index;
+        filePosition = offset;
+        in.clear().flip();
+        if (index < segments.size()) {
+            channel = FileChannel.open(segments.get(index).file, StandardOpenOption.READ);
+        }
+    }
+
+    // Asegura que haya al menos bytes disponibles en el buffer leyendo del segmento. false si el archivo no alcanza.
+    private boolean fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) return true;
+        if (channel == null) return false;
+        if (bytes > in.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes);
+            larger.put(in).flip();
+            in = larger;
+        }
+        in.compact();
+        while (in.position() < bytes) {
+            int read = channel.read(in, filePosition);
+            if (read <= 0) break;
+            filePosition += read;
+        }
+        in.flip();
+        return in.remaining() >= bytes;
+    }
+
+    private static long startOf(Path recording) {
+        try {
+            return Long.parseLong(recording.getFileName().toString());
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package network;
+
+import java.util.Arrays;
+
+/**
+ * Cambio de frecuencia de muestreo por interpolación lineal, continuo entre paquetes.
+ * 
+ * Funcionamiento general: Guarda la fase fraccional y la última muestra del paquete anterior, así la
+ * salida no tiene saltos en los bordes de paquete. Al bajar de frecuencia se aplica antes un filtro
+ * pasa-bajos de un polo para atenuar lo que no entra en la frecuencia nueva (aliasing).
+ */
+
+class Resampler {
+
+    private final double step;       // Muestras de entrada por muestra de salida.
+    private final double smoothing;  // Coeficiente del pasa-bajos (1 = sin filtro).
+    private double position = 0;     // Posición de la próxima muestra de salida; -1 es la última del paquete anterior.
+    private double filtered = 0;     // Estado del pasa-bajos.
+    private int last = 0;            // Última muestra del paquete anterior.
+
+    Resampler(int inRate, int outRate) {
+        this.step = (double) inRate / outRate;
+        // Corte cerca de 0,45 de la frecuencia de salida.
+        this.smoothing = inRate > outRate ? 1 - Math.exp(-2 * Math.PI * 0.45 * outRate / inRate) : 1;
+    }
+
+    short[] process(short[] in, int count) {
+        if (count == 0) return new short[0];
+        if (smoothing < 1) {
+            for (int i = 0; i < count; i++) {
+                filtered += smoothing * (in[i] - filtered);
+                in[i] = (short) Math.round(filtered);
+            }
+        }
+
+        short[] out = new short[(int) ((count - position) / step) + 2];
+        int produced = 0;
+        while (position < count - 1) {
+            int index = (int) Math.floor(position);
+            double fraction = position - index;
+            int a = index < 0 ? last : in[index];
+            int b = in[index + 1];
+            out[produced++] = (short) Math.round(a + (b - a) * fraction);
+            position += step;
+        }
+        position -= count;
+        last = in[count - 1];
+        return Arrays.copyOf(out, produced);
+    }
+
+    // PCM de 16 bits big-endian → muestras.
+    static short[] toSamples(byte[] pcm, int length) {
+        short[] samples = new short[length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((pcm[2 * i] << 8) | (pcm[2 * i + 1] & 0xFF));
+        }
+        return samples;
+    }
+
+    // Muestras → PCM de 16 bits big-endian.
+    static byte[] toPcm(short[] samples) {
+        byte[] pcm = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            pcm[2 * i] = (byte) (samples[i] >> 8);
+            pcm[2 * i + 1] = (byte) samples[i];
+        }
+        return pcm;
+    }
+}
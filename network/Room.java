@@ -0,0 +1,353 @@
+package network;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Sala de reunión: registro de miembros y dominio de broadcast propio.
+ * 
+ * Funcionamiento general: Cada sala tiene su lista de participantes, sus IDs y su límite de
+ * capacidad. No usa locks internos: en el servidor NIO solo se usa desde el EventLoop al que está
+ * fijada (getLoop), y en el servidor clásico se usa bajo el monitor de la propia sala. Así las salas
+ * activas en distintos núcleos nunca compiten por un lock compartido.
+ * La media (VIDEO/AUDIO) nunca vuelve a quien la envió, y el video solo llega a los receptores
+ * suscritos a su remitente: por defecto todos; UNSUBSCRIBE/SUBSCRIBE lo cambian por participante.
+ * A los miembros con media por UDP se les envía como datagramas, partidos una sola vez por mensaje.
+ * Con simulcast cada remitente publica varias capas de su video y a cada receptor le llega solo la
+ * que corresponde al tamaño de mosaico que informó con VIEWPORT (ver VideoLayers).
+ * Los CHAT, JOIN y LEAVE se agregan al registro persistente de la sala (ChatLog); quien entra puede
+ * pedir con HISTORY lo que se dijo antes de su JOIN, que le llega sin frenar el reenvío.
+ * Con grabación activa (MeetingRecorder) la sala pasa a su grabación lo que reenvía; solo se encola.
+ */
+
+class Room {
+
+    private final String name;
+    private final int maxParticipants;
+    // Codifica mensajes con el protocolo del servidor; devuelve null si falla.
+    private final Function<Message, Frame> encoder;
+    // Loop dueño de la sala (modo NIO). null en el servidor clásico.
+    private final EventLoop loop;
+    // Transporte UDP de media. null si está desactivado.
+    private final MediaDatagramServer media;
+    // Registro persistente del chat. null si está desactivado.
+    private final ChatLog chatLog;
+    // Grabación de la sala. null si no se graba.
+    private final MeetingRecorder.Recording recording;
+    private final ParticipantIds ids = new ParticipantIds();
+    private final List<Participant> members = new ArrayList<>();
+    // IDs de los remitentes cuyo video cada receptor no quiere recibir (UNSUBSCRIBE).
+    private final Map<Participant, Set<Integer>> videoExclusions = new HashMap<>();
+    // Próximo número de secuencia UDP de cada remitente: una por capa de video y la última para el audio.
+    private final Map<Participant, int[]> mediaSeq = new HashMap<>();
+    // Capa de video preferida por cada receptor según su VIEWPORT (sin entrada: la 0).
+    private final Map<Participant, Integer> preferredLayers = new HashMap<>();
+    // Capas de video que publicó cada remitente (bitmask: bit n = capa n).
+    private final Map<Participant, Integer> publishedLayers = new HashMap<>();
+    // Codec de audio negociado para cada miembro en su JOIN.
+    private final Map<Participant, String> audioCodecs = new HashMap<>();
+    // Orden del JOIN de cada miembro en el registro del chat: HISTORY repite solo lo anterior.
+    private final Map<Participant, Long> chatJoins = new HashMap<>();
+    private boolean closed = false;
+
+    Room(String name, int maxParticipants, Function<Message, Frame> encoder, EventLoop loop, MediaDatagramServer media,
+         ChatLog chatLog, MeetingRecorder recorder) {
+        this.name = name;
+        this.maxParticipants = maxParticipants;
+        this.encoder = encoder;
+        this.loop = loop;
+        this.media = media;
+        this.chatLog = chatLog;
+        this.recording = recorder != null ? recorder.open(name) : null;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    EventLoop getLoop() {
+        return loop;
+    }
+
+    // Una sala cerrada quedó vacía y fue quitada del registro; quien la tenga debe buscarla de nuevo.
+    boolean isClosed() {
+        return closed;
+    }
+
+    // Procesa el JOIN de un participante.
+    // Funcionamiento: Si la sala está llena responde INFO y cierra la conexión. Si no, asigna ID,
+    // envía al recién llegado la lista de presentes (PARTICIPANT) y anuncia el JOIN a toda la sala.
+    // El JOIN y los PARTICIPANT llevan el codec de audio de cada uno, para que los demás sepan decodificarlo.
+    boolean join(Participant participant, Message joinMsg) {
+        if (members.size() >= maxParticipants) {
+            participant.sendAndClose(encoder.apply(new Message(
+                    "INFO",
+                    "Servidor",
+                    "La sala " + name + " está llena (máximo " + maxParticipants + " usuarios)"
+            )));
+            return false;
+        }
+
+        String username = joinMsg.getSender();
+        int id = ids.allocate();
+        participant.joined(this, username, id);
+        String codec = AudioCodecs.negotiate(joinMsg.getCodec());
+
+        for (Participant member : members) {
+            participant.send(encoder.apply(
+                    new Message("PARTICIPANT", member.getUsername(), member.getParticipantId(), null, null)
+                            .withCodec(audioCodecs.get(member))));
+        }
+        members.add(participant);
+        audioCodecs.put(participant, codec);
+        System.out.println("Usuario unido: " + username + " (sala " + name + ")"); // Logging.
+
+        Message announced = joinMsg.withSender(id, username).withCodec(codec);
+        broadcast(announced);
+        if (recording != null) recording.record(announced);
+        if (chatLog != null) chatJoins.put(participant, chatLog.append(name, "JOIN", username, joinMsg.getText()));
+        return true;
+    }
+
+    // Quita a un participante y notifica LEAVE. Devuelve true si la sala quedó vacía (y se cerró).
+    // El remitente del LEAVE es el usuario que sale, para que los clientes quiten su vista.
+    boolean leave(Participant participant) {
+        if (!members.remove(participant)) return false;
+
+        // Limpia sus suscripciones y las de los demás hacia él (el ID puede reutilizarse).
+        videoExclusions.remove(participant);
+        mediaSeq.remove(participant);
+        audioCodecs.remove(participant);
+        preferredLayers.remove(participant);
+        publishedLayers.remove(participant);
+        chatJoins.remove(participant);
+        for (Set<Integer> excluded : videoExclusions.values()) {
+            excluded.remove(participant.getParticipantId());
+        }
+
+        Message leaveMsg = new Message(
+                "LEAVE",
+                participant.getUsername(),
+                participant.getParticipantId(),
+                participant.getUsername() + " salió de la reunión",
+                null
+        );
+        broadcast(leaveMsg);
+        if (recording != null) recording.record(leaveMsg);
+        if (chatLog != null) chatLog.append(name, "LEAVE", leaveMsg.getSender(), leaveMsg.getText());
+        ids.release(participant.getParticipantId());
+
+        return closeIfEmpty();
+    }
+
+    // Cierra la sala si no tiene miembros (p.ej. se creó para un JOIN cuya conexión se cortó antes de entrar).
+    // Devuelve true si la sala quedó cerrada.
+    boolean closeIfEmpty() {
+        if (members.isEmpty() && !closed) {
+            closed = true;
+            if (recording != null) recording.close();
+            if (chatLog != null) chatLog.roomClosed(name);
+        }
+        return closed;
+    }
+
+    // Procesa un mensaje de un miembro (ya con su remitente asignado).
+    // Funcionamiento: SUBSCRIBE/UNSUBSCRIBE y VIEWPORT solo cambian lo que recibe quien los envía; VIDEO,
+    // AUDIO y los marcadores SILENCE se reenvían sin eco al remitente (y el video solo a los suscritos);
+    // KEYFRAME va solo al participante indicado (ver target) y PING se responde con PONG al que lo envió; HISTORY pide
+    // al registro del chat la repetición para quien lo envía; el resto va a todos, incluido el remitente,
+    // que muestra su propio chat a partir del eco. Los CHAT además se registran.
+    void relay(Participant from, Message msg) {
+        switch (msg.getType()) {
+            case "SUBSCRIBE":
+                setVideoSubscription(from, msg.getText(), true);
+                break;
+            case "UNSUBSCRIBE":
+                setVideoSubscription(from, msg.getText(), false);
+                break;
+            case "VIEWPORT":
+                setViewport(from, msg.getText());
+                break;
+            case "VIDEO":
+            case "AUDIO":
+                forwardMedia(from, msg);
+                break;
+            case "PING":
+                // Respuesta inmediata solo al que pregunta: eco del texto (para el RTT), el mayor backlog
+                // de los demás miembros, que reciben su video (para el control de tasa), y la hora del
+                // servidor (para que el cliente estime la diferencia de relojes, ver ClockSync).
+                from.send(encoder.apply(new Message("PONG", "Servidor",
+                        msg.getText() + " " + maxBacklog(from) + " " + ClockSync.serverNow())));
+                break;
+            case "HISTORY":
+                Long joined = chatJoins.get(from);
+                if (joined != null) {
+                    chatLog.replay(name, joined, msg.getText(), from, encoder);
+                } else {
+                    from.send(encoder.apply(new Message("HISTORY_END", "Servidor", "0"))); // Sin registro.
+                }
+                break;
+            case "CHAT":
+                broadcast(msg);
+                if (chatLog != null) chatLog.append(name, "CHAT", msg.getSender(), msg.getText());
+                if (recording != null) recording.record(msg);
+                break;
+            case "KEYFRAME":
+                Participant source = target(msg.getText()); // Pedido de keyframe: solo al remitente del video.
+                if (source != null) source.send(encoder.apply(msg));
+                break;
+            case "SILENCE":
+                // Marcador de fin de habla (VAD): va por TCP a todos menos al remitente.
+                Frame frame = encoder.apply(msg);
+                if (frame == null) return;
+                for (Participant member : members) {
+                    if (member != from) member.send(frame);
+                }
+                break;
+            default:
+                broadcast(msg);
+        }
+    }
+
+    // Envía media a todos menos al remitente; el video se salta a quienes no lo quieren y a quienes
+    // les corresponde otra capa.
+    // Funcionamiento: El Frame TCP y los datagramas UDP se arman solo si hace falta, una vez por mensaje.
+    // La media por UDP puede llegar después de que el remitente salió: en ese caso se ignora.
+    private void forwardMedia(Participant from, Message msg) {
+        if (!members.contains(from)) return;
+        Frame frame = null; // Se codifica solo si hay al menos un destinatario.
+        List<ByteBuffer> datagrams = null;
+        int datagramBytes = 0;
+        boolean video = "VIDEO".equals(msg.getType());
+        int layer = msg.getLayer();
+        int published = 0;
+        if (video) {
+            if (layer >= VideoLayers.MAX_LAYERS) return;
+            published = publishedLayers.merge(from, 1 << layer, (a, b) -> a | b);
+        }
+        if (recording != null) recording.record(msg);
+        for (Participant member : members) {
+            if (member == from) continue;
+            if (video) {
+                Set<Integer> excluded = videoExclusions.get(member);
+                if (excluded != null && excluded.contains(from.getParticipantId())) continue;
+                if (VideoLayers.select(preferredLayers.getOrDefault(member, 0), published) != layer) continue;
+            }
+            SocketAddress endpoint = media != null ? member.getMediaEndpoint() : null;
+            if (endpoint != null) {
+                if (datagrams == null) {
+                    // La secuencia del remitente se conserva para que el receptor mida la pérdida de punta a punta;
+                    // un cliente que no numera su media recibe una secuencia de la sala.
+                    int sequence = msg.getSequence();
+                    if (sequence == 0) {
+                        int[] seq = mediaSeq.computeIfAbsent(from, p -> new int[VideoLayers.MAX_LAYERS + 1]);
+                        sequence = seq[video ? layer : VideoLayers.MAX_LAYERS]++;
+                    }
+                    datagrams = media.packetize(from, msg, sequence);
+                    for (ByteBuffer datagram : datagrams) datagramBytes += datagram.remaining();
+                }
+                media.send(datagrams, endpoint);
+                member.getMetrics().sent(msg.getType(), datagramBytes);
+                continue;
+            }
+            if (frame == null) {
+                frame = encoder.apply(msg);
+                if (frame == null) return;
+            }
+            member.send(frame);
+        }
+    }
+
+    // Mayor cantidad de bytes pendientes hacia los miembros distintos de from.
+    private long maxBacklog(Participant from) {
+        long max = 0;
+        for (Participant member : members) {
+            if (member != from) max = Math.max(max, member.getBacklogBytes());
+        }
+        return max;
+    }
+
+    // Miembro al que apunta un SUBSCRIBE/UNSUBSCRIBE/KEYFRAME, o null si no está.
+    // Funcionamiento: Los clientes indican el ID de participante ("#ID"), que es único en la sala aunque dos
+    // miembros tengan el mismo nombre; un texto sin "#" es un nombre (clientes viejos) y toma el primero.
+    private Participant target(String text) {
+        if (text == null) return null;
+        int id = -1;
+        if (text.startsWith("#")) {
+            try {
+                id = Integer.parseInt(text.substring(1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        for (Participant member : members) {
+            if (id >= 0 ? member.getParticipantId() == id : member.getUsername().equals(text)) return member;
+        }
+        return null;
+    }
+
+    // Activa o desactiva el video de un participante (ver target) para un receptor.
+    // Al reactivarlo se le pide al remitente un keyframe de la capa del receptor: el receptor descartó su
+    // frame base al pausar y, sin el pedido, no vería nada hasta el próximo keyframe periódico.
+    private void setVideoSubscription(Participant receiver, String targetText, boolean subscribed) {
+        Participant member = target(targetText);
+        if (member == null) return;
+        int targetId = member.getParticipantId();
+        if (subscribed) {
+            Set<Integer> excluded = videoExclusions.get(receiver);
+            if (excluded != null && excluded.remove(targetId)) {
+                int layer = VideoLayers.select(preferredLayers.getOrDefault(receiver, 0),
+                        publishedLayers.getOrDefault(member, 0));
+                requestKeyframe(member, receiver, layer);
+            }
+        } else {
+            videoExclusions.computeIfAbsent(receiver, r -> new HashSet<>()).add(targetId);
+        }
+    }
+
+    // Registra el tamaño de mosaico de un receptor ("ancho alto") y recalcula su capa preferida.
+    // Funcionamiento: De cada remitente cuya capa reenviada cambia, se pide un keyframe de la capa nueva
+    // en nombre del receptor, así el cambio se ve enseguida en vez de esperar al próximo keyframe periódico.
+    private void setViewport(Participant receiver, String size) {
+        int preferred;
+        try {
+            String[] parts = size.trim().split(" ");
+            preferred = VideoLayers.forTile(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        } catch (RuntimeException e) {
+            return; // VIEWPORT mal formado: se mantiene la capa anterior.
+        }
+        Integer previous = preferredLayers.put(receiver, preferred);
+        int before = previous != null ? previous : 0;
+        if (before == preferred) return;
+
+        for (Participant sender : members) {
+            if (sender == receiver) continue;
+            int published = publishedLayers.getOrDefault(sender, 0);
+            int layer = VideoLayers.select(preferred, published);
+            if (layer != VideoLayers.select(before, published)) {
+                requestKeyframe(sender, receiver, layer);
+            }
+        }
+    }
+
+    // Pide a un remitente un keyframe de una capa en nombre de un receptor.
+    private void requestKeyframe(Participant sender, Participant receiver, int layer) {
+        sender.send(encoder.apply(new Message("KEYFRAME", receiver.getUsername(),
+                receiver.getParticipantId(), sender.getUsername(), null).withLayer(layer)));
+    }
+
+    // Envía un mensaje a todos los miembros: se codifica una vez y se encola el mismo Frame en cada uno.
+    void broadcast(Message msg) {
+        Frame frame = encoder.apply(msg);
+        if (frame == null) return;
+        for (Participant member : members) {
+            member.send(frame);
+        }
+    }
+
+    int size() {
+        return members.size();
+    }
+}
@@ -0,0 +1,40 @@
+package network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec de frames cuyo cuerpo es un Message serializado con Java Serialization.
+ * 
+ * Funcionamiento general: Cada mensaje se serializa con su propio ObjectOutputStream,
+ * así los frames son independientes entre sí (no hay tabla de handles compartida entre mensajes)
+ * y pueden decodificarse en cualquier orden o hilo. No guarda estado, por lo que una sola
+ * instancia puede compartirse entre conexiones.
+ */
+
+public class SerializedCodec extends MessageCodec {
+    // Filtro de deserialización: solo se aceptan las clases que forman un Message.
+    private static final ObjectInputFilter FILTER =
+            ObjectInputFilter.Config.createFilter("network.Message;java.lang.String;[B;!*");
+
+    @Override
+    protected byte[] encodeBody(Message msg) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(msg);
+        }
+        return baos.toByteArray();
+    }
+
+    @Override
+    protected Message decodeBody(ByteBuffer body) throws IOException {
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            ois.setObjectInputFilter(FILTER);
+            return (Message) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Frame con contenido inválido", e);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package network;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Métricas del servidor: tráfico por conexión y por tipo de mensaje, fan-out de las salas, backlog,
+ * altas y bajas de conexiones y descartes.
+ *
+ * Funcionamiento general: Cada conexión registra sus contadores (ConnectionMetrics) al crearse y los da
+ * de baja al cerrarse; el servidor mide cada relay de una sala con relayed. Los contadores son LongAdder y
+ * el fan-out va a un LatencyHistogram por tipo, así el camino del relay nunca toma un lock para medir.
+ * Un hilo "meeting-metrics" cierra cada -Dmeeting.metrics.windowSeconds (10 por defecto) la ventana de
+ * fan-out: los percentiles publicados son los de la última ventana completa.
+ * Todo se publica por JMX (network:type=MeetingServer y un network:type=MessageType por tipo; se desactiva
+ * con -Dmeeting.metrics.jmx=false) y, con -Dmeeting.stats.port, como texto plano por HTTP solo en
+ * loopback (p.ej. curl localhost:9100).
+ */
+
+final class ServerMetrics implements ServerMetricsMXBean {
+
+    // Tope de tipos distintos: con el protocolo OBJECT un cliente podría inventar tipos sin límite.
+    private static final int MAX_TYPES = 64;
+    private static final String OTHER_TYPE = "OTRO";
+
+    private final Map<String, TypeMetrics> types = new ConcurrentHashMap<>();
+    private final Set<ConnectionMetrics> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final MBeanServer jmx; // null si no se publica por JMX.
+    private final ScheduledExecutorService timer;
+
+    ServerMetrics(long windowMillis, boolean publishJmx) {
+        this.jmx = publishJmx ? ManagementFactory.getPlatformMBeanServer() : null;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "meeting-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::rotate, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        register(this, "network:type=MeetingServer");
+    }
+
+    // Crea las métricas según las propiedades del sistema y, si se pidió, abre el endpoint de texto.
+    static ServerMetrics fromSystemProperties() throws IOException {
+        ServerMetrics metrics = new ServerMetrics(
+                TimeUnit.SECONDS.toMillis(Math.max(1, Long.getLong("meeting.metrics.windowSeconds", 10))),
+                !"false".equalsIgnoreCase(System.getProperty("meeting.metrics.jmx")));
+        Integer port = Integer.getInteger("meeting.stats.port");
+        if (port != null) metrics.serveReport(port);
+        return metrics;
+    }
+
+    // Registra una conexión nueva.
+    ConnectionMetrics opened(Participant participant) {
+        ConnectionMetrics connection = new ConnectionMetrics(this, participant);
+        connections.add(connection);
+        opened.increment();
+        return connection;
+    }
+
+    // Lo llama ConnectionMetrics.close una sola vez por conexión.
+    void closed(ConnectionMetrics connection) {
+        connections.remove(connection);
+        closed.increment();
+    }
+
+    // Registra la duración de un relay de sala que empezó en startNanos (System.nanoTime).
+    void relayed(String type, long startNanos) {
+        type(type).fanOut.record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    // Métricas de un tipo; la primera vez se crean y se publican por JMX.
+    // Funcionamiento: El caso común es un get del mapa concurrente, que no bloquea.
+    TypeMetrics type(String name) {
+        TypeMetrics metrics = name != null ? types.get(name) : null;
+        if (metrics != null) return metrics;
+        if (name == null || types.size() >= MAX_TYPES) {
+            name = OTHER_TYPE;
+            metrics = types.get(name);
+            if (metrics != null) return metrics;
+        }
+        TypeMetrics created = new TypeMetrics();
+        TypeMetrics previous = types.putIfAbsent(name, created);
+        if (previous != null) return previous;
+        register(created, "network:type=MessageType,name=" + ObjectName.quote(name));
+        return created;
+    }
+
+    // Cierra la ventana de fan-out de cada tipo.
+    private void rotate() {
+        for (TypeMetrics metrics : types.values()) {
+            metrics.window = metrics.fanOut.drain();
+        }
+    }
+
+    // Publica un MBean. Si ya había uno con ese nombre (otro servidor en el mismo proceso, p.ej. en los
+    // benchmarks) se reemplaza.
+    private void register(Object bean, String name) {
+        if (jmx == null) return;
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (jmx.isRegistered(objectName)) jmx.unregisterMBean(objectName);
+            jmx.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            System.out.println("No se pudo publicar " + name + " por JMX: " + e.getMessage());
+        }
+    }
+
+    // Sirve el reporte de texto por HTTP en loopback. Lo atiende el hilo de las métricas.
+    private void serveReport(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/", exchange -> {
+            byte[] body = getReport().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.setExecutor(timer);
+        http.start();
+        System.out.println("Estadísticas en http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port + "/");
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return connections.size();
+    }
+
+    @Override
+    public long getOpenedConnections() {
+        return opened.sum();
+    }
+
+    @Override
+    public long getClosedConnections() {
+        return closed.sum();
+    }
+
+    @Override
+    public long getMessagesIn() {
+        long total = 0;
+        for (TypeMetrics metrics : types.values()) total += metrics.getMessagesIn();
+        return total;
+    }
+
+    @Override
+    public long getBytesIn() {
+        long total = 0;
+        for (TypeMetrics metrics : types.values()) total += metrics.getBytesIn();
+        return total;
+    }
+
+    @Override
+    public long getMessagesOut() {
+        long total = 0;
+        for (TypeMetrics metrics : types.values()) total += metrics.getMessagesOut();
+        return total;
+    }
+
+    @Override
+    public long getBytesOut() {
+        long total = 0;
+        for (TypeMetrics metrics : types.values()) total += metrics.getBytesOut();
+        return total;
+    }
+
+    @Override
+    public long getDroppedMessages() {
+        long total = 0;
+        for (TypeMetrics metrics : types.values()) total += metrics.getDroppedMessages();
+        return total;
+    }
+
+    @Override
+    public long getBacklogBytes() {
+        long total = 0;
+        for (ConnectionStats stats : getConnections()) total += stats.getBacklogBytes();
+        return total;
+    }
+
+    // Fotos de las conexiones activas, ordenadas por sala y nombre.
+    @Override
+    public List<ConnectionStats> getConnections() {
+        List<ConnectionStats> stats = new ArrayList<>();
+        for (ConnectionMetrics connection : connections) stats.add(connection.snapshot());
+        stats.sort(Comparator.comparing(ConnectionStats::getRoom).thenComparing(ConnectionStats::getName));
+        return stats;
+    }
+
+    // Reporte de texto: resumen, una línea por tipo de mensaje y una por conexión.
+    @Override
+    public String getReport() {
+        List<ConnectionStats> connectionStats = getConnections();
+        long backlog = 0;
+        for (ConnectionStats stats : connectionStats) backlog += stats.getBacklogBytes();
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("conexiones: activas=%d abiertas=%d cerradas=%d backlog=%d B%n",
+                connectionStats.size(), getOpenedConnections(), getClosedConnections(), backlog));
+        report.append(String.format("mensajes: entrada=%d (%d B) salida=%d (%d B) descartados=%d%n%n",
+                getMessagesIn(), getBytesIn(), getMessagesOut(), getBytesOut(), getDroppedMessages()));
+
+        report.append(String.format("%-12s %10s %12s %10s %12s %10s  %s%n",
+                "tipo", "msg entr.", "bytes entr.", "msg sal.", "bytes sal.", "descartes", "fan-out (última ventana)"));
+        for (Map.Entry<String, TypeMetrics> entry : new TreeMap<>(types).entrySet()) {
+            TypeMetrics metrics = entry.getValue();
+            report.append(String.format("%-12s %10d %12d %10d %12d %10d  %s%n", entry.getKey(),
+                    metrics.getMessagesIn(), metrics.getBytesIn(), metrics.getMessagesOut(), metrics.getBytesOut(),
+                    metrics.getDroppedMessages(), metrics.window.summary("us")));
+        }
+
+        report.append(String.format("%n%-32s %-16s %10s %12s %10s %12s %10s %10s %8s%n",
+                "conexión", "sala", "msg entr.", "bytes entr.", "msg sal.", "bytes sal.", "descartes", "backlog", "seg."));
+        for (ConnectionStats stats : connectionStats) {
+            report.append(String.format("%-32s %-16s %10d %12d %10d %12d %10d %10d %8d%n",
+                    stats.getName(), stats.getRoom(), stats.getMessagesIn(), stats.getBytesIn(),
+                    stats.getMessagesOut(), stats.getBytesOut(), stats.getDroppedMessages(),
+                    stats.getBacklogBytes(), stats.getConnectedSeconds()));
+        }
+        return report.toString();
+    }
+
+    /** Contadores de un tipo de mensaje. fanOut acumula la ventana en curso (en microsegundos). */
+    static final class TypeMetrics implements MessageTypeMetricsMXBean {
+        private final LongAdder messagesIn = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder messagesOut = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LatencyHistogram fanOut = new LatencyHistogram();
+        // Última ventana completa; la reemplaza el hilo de las métricas y nunca se modifica después.
+        private volatile LatencyHistogram.Snapshot window = new LatencyHistogram.Snapshot();
+
+        void received(long bytes) {
+            messagesIn.increment();
+            bytesIn.add(bytes);
+        }
+
+        void sent(long bytes) {
+            messagesOut.increment();
+            bytesOut.add(bytes);
+        }
+
+        void dropped() {
+            dropped.increment();
+        }
+
+        @Override
+        public long getMessagesIn() {
+            return messagesIn.sum();
+        }
+
+        @Override
+        public long getBytesIn() {
+            return bytesIn.sum();
+        }
+
+        @Override
+        public long getMessagesOut() {
+            return messagesOut.sum();
+        }
+
+        @Override
+        public long getBytesOut() {
+            return bytesOut.sum();
+        }
+
+        @Override
+        public long getDroppedMessages() {
+            return dropped.sum();
+        }
+
+        @Override
+        public long getFanOutCount() {
+            return window.count();
+        }
+
+        @Override
+        public long getFanOutP50Micros() {
+            return window.percentile(0.5);
+        }
+
+        @Override
+        public long getFanOutP99Micros() {
+            return window.percentile(0.99);
+        }
+
+        @Override
+        public long getFanOutMaxMicros() {
+            return window.max();
+        }
+    }
+}
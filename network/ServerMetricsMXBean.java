@@ -0,0 +1,99 @@
+package network;
+
+import java.util.List;
+
+/**
+ * Métricas generales del servidor publicadas por JMX (network:type=MeetingServer).
+ *
+ * Funcionamiento general: Totales desde el arranque de mensajes y bytes, conexiones abiertas y cerradas
+ * y descartes; getConnections devuelve una foto de cada conexión activa (con su backlog de salida) y
+ * getReport el mismo texto que sirve el endpoint local de -Dmeeting.stats.port.
+ */
+
+public interface ServerMetricsMXBean {
+
+    int getActiveConnections();
+
+    long getOpenedConnections();
+
+    long getClosedConnections();
+
+    long getMessagesIn();
+
+    long getBytesIn();
+
+    long getMessagesOut();
+
+    long getBytesOut();
+
+    long getDroppedMessages();
+
+    // Suma de los bytes pendientes en las colas de salida de todas las conexiones.
+    long getBacklogBytes();
+
+    List<ConnectionStats> getConnections();
+
+    String getReport();
+
+    /** Foto de una conexión activa. JMX la publica como CompositeData. */
+    final class ConnectionStats {
+        private final String name;
+        private final String room;
+        private final long messagesIn;
+        private final long bytesIn;
+        private final long messagesOut;
+        private final long bytesOut;
+        private final long droppedMessages;
+        private final long backlogBytes;
+        private final long connectedSeconds;
+
+        ConnectionStats(String name, String room, long messagesIn, long bytesIn, long messagesOut, long bytesOut,
+                        long droppedMessages, long backlogBytes, long connectedSeconds) {
+            this.name = name;
+            this.room = room;
+            this.messagesIn = messagesIn;
+            this.bytesIn = bytesIn;
+            this.messagesOut = messagesOut;
+            this.bytesOut = bytesOut;
+            this.droppedMessages = droppedMessages;
+            this.backlogBytes = backlogBytes;
+            this.connectedSeconds = connectedSeconds;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        public long getMessagesIn() {
+            return messagesIn;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getMessagesOut() {
+            return messagesOut;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        public long getDroppedMessages() {
+            return droppedMessages;
+        }
+
+        public long getBacklogBytes() {
+            return backlogBytes;
+        }
+
+        public long getConnectedSeconds() {
+            return connectedSeconds;
+        }
+    }
+}
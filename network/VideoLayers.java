@@ -0,0 +1,48 @@
+package network;
+
+/**
+ * Capas de simulcast del video.
+ *
+ * Funcionamiento general: Cada remitente publica cada frame en hasta MAX_LAYERS capas: la capa 0 a
+ * resolución completa y cada capa siguiente a la mitad de ancho y alto de la anterior. Cada receptor
+ * informa con VIEWPORT el tamaño de sus mosaicos y la sala le reenvía, de cada remitente, solo la capa
+ * más chica que todavía llena el mosaico (ver Room). Así una galería con mosaicos chicos no baja ni
+ * decodifica frames que después se achican en pantalla.
+ */
+
+public final class VideoLayers {
+    // Capas como máximo (la 0 es la de resolución completa).
+    public static final int MAX_LAYERS = 3;
+    // Resolución nominal de la capa 0 (la de la cámara). La sala elige capas con este tamaño de referencia.
+    public static final int FULL_WIDTH = 320;
+    public static final int FULL_HEIGHT = 240;
+
+    private VideoLayers() {}
+
+    // Tamaño de una capa a partir del de la capa 0.
+    public static int scale(int fullSize, int layer) {
+        return Math.max(1, fullSize >> layer);
+    }
+
+    // Capa preferida para un mosaico de width × height píxeles (0 si el tamaño no se conoce).
+    // Funcionamiento: El video conserva la proporción, así que se muestra con el ancho que permite el lado
+    // más restrictivo del mosaico; se elige la capa más chica cuyo ancho nominal llega a ese ancho.
+    static int forTile(int width, int height) {
+        if (width <= 0 || height <= 0) return 0;
+        int shown = Math.min(width, height * FULL_WIDTH / FULL_HEIGHT);
+        int layer = 0;
+        while (layer + 1 < MAX_LAYERS && scale(FULL_WIDTH, layer + 1) >= shown) {
+            layer++;
+        }
+        return layer;
+    }
+
+    // Capa a reenviar de un remitente que publica las capas del bitmask published.
+    // Si no publica la preferida se usa la más cercana de mayor resolución (o la 0, que siempre se envía).
+    static int select(int preferred, int published) {
+        for (int layer = preferred; layer > 0; layer--) {
+            if ((published & (1 << layer)) != 0) return layer;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,105 @@
+package ui;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Mezclador del audio recibido: un flujo por remitente, una sola salida PCM.
+ *
+ * Funcionamiento general: Cada remitente tiene su JitterBuffer. En cada tick del hilo de reproducción
+ * (un bloque de duración fija) se lee un bloque de cada remitente que esté sonando y se suman las
+ * muestras en un acumulador de 32 bits. Si la suma pasa el rango de 16 bits se baja la ganancia de
+ * todo el bloque (limitador de picos) en vez de recortar cada muestra, y la ganancia se recupera de
+ * a poco en los bloques siguientes. Los buffers de trabajo son fijos: no se asigna memoria por bloque.
+ * Solo lo usa un hilo de reproducción; offer/remove se pueden llamar desde cualquier hilo.
+ */
+
+class AudioMixer {
+
+    // Cuánto se recupera la ganancia por bloque después de limitar un pico.
+    private static final float GAIN_RELEASE = 0.02f;
+
+    private final AudioFormat format;
+    private final boolean bigEndian;
+    private final Map<String, JitterBuffer> sources = new ConcurrentHashMap<>();
+    private final byte[] scratch;       // Bloque leído de un remitente.
+    private final int[] accumulator;    // Suma de muestras del bloque.
+    private float gain = 1f;
+
+    AudioMixer(AudioFormat format, int chunkBytes) {
+        this.format = format;
+        this.bigEndian = format.isBigEndian();
+        this.scratch = new byte[chunkBytes];
+        this.accumulator = new int[chunkBytes / 2];
+    }
+
+    // Agrega un paquete de un remitente (PCM de 16 bits con signo, en el formato del mezclador).
+    void offer(String sender, byte[] data, long nowNanos) {
+        sources.computeIfAbsent(sender, s -> new JitterBuffer(format)).offer(data, nowNanos);
+    }
+
+    // El remitente avisó que dejó de hablar (ver JitterBuffer.markSilence).
+    void markSilence(String sender) {
+        JitterBuffer buffer = sources.get(sender);
+        if (buffer != null) buffer.markSilence();
+    }
+
+    void remove(String sender) {
+        sources.remove(sender);
+    }
+
+    // Retardo del buffer de jitter de un remitente, en ms (-1 si no hay audio suyo).
+    int getDelayMillis(String sender) {
+        JitterBuffer buffer = sources.get(sender);
+        return buffer != null ? buffer.getDelayMillis() : -1;
+    }
+
+    // Mezcla el próximo bloque en out (mismo largo que el bloque del constructor).
+    // Devuelve false si ningún remitente tiene audio listo (no hay nada que reproducir).
+    boolean mix(byte[] out) {
+        int samples = accumulator.length;
+        int active = 0;
+        for (JitterBuffer source : sources.values()) {
+            if (source.read(scratch, scratch.length) == 0) continue;
+            if (active++ == 0) {
+                for (int i = 0; i < samples; i++) accumulator[i] = sample(scratch, i);
+            } else {
+                for (int i = 0; i < samples; i++) accumulator[i] += sample(scratch, i);
+            }
+        }
+        if (active == 0) return false;
+
+        // Limitador: si el pico del bloque (con la ganancia actual) se sale de rango, se baja la ganancia.
+        int peak = 0;
+        for (int i = 0; i < samples; i++) peak = Math.max(peak, Math.abs(accumulator[i]));
+        if (peak * gain > Short.MAX_VALUE) {
+            gain = (float) Short.MAX_VALUE / peak;
+        }
+        for (int i = 0; i < samples; i++) {
+            int value = Math.round(accumulator[i] * gain);
+            value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            putSample(out, i, value);
+        }
+        gain = Math.min(1f, gain + GAIN_RELEASE);
+        return true;
+    }
+
+    private int sample(byte[] buffer, int index) {
+        int offset = index * 2;
+        return bigEndian
+                ? (short) ((buffer[offset] << 8) | (buffer[offset + 1] & 0xFF))
+                : (short) ((buffer[offset + 1] << 8) | (buffer[offset] & 0xFF));
+    }
+
+    private void putSample(byte[] buffer, int index, int value) {
+        int offset = index * 2;
+        if (bigEndian) {
+            buffer[offset] = (byte) (value >> 8);
+            buffer[offset + 1] = (byte) value;
+        } else {
+            buffer[offset] = (byte) value;
+            buffer[offset + 1] = (byte) (value >> 8);
+        }
+    }
+}
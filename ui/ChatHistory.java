@@ -0,0 +1,95 @@
+package ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Historial completo del chat local, fuera de la memoria.
+ *
+ * Funcionamiento general: Cada línea se agrega al final de un archivo temporal (UTF-8, una por línea) y
+ * en memoria solo queda un índice ralo: la posición de una de cada INDEX_INTERVAL líneas. Para leer un
+ * rango se salta a la entrada del índice más cercana y se avanza línea por línea, como mucho
+ * INDEX_INTERVAL - 1 de más. La vista del chat muestra una ventana acotada y pide acá las páginas
+ * anteriores o siguientes cuando el usuario llega a un borde.
+ * No es thread-safe: lo usa solo el thread de JavaFX.
+ */
+
+class ChatHistory implements AutoCloseable {
+
+    private static final int INDEX_INTERVAL = 64;
+
+    private final Path file;
+    private final FileChannel channel;
+    private long[] index = new long[16]; // index[i] = posición de la línea i * INDEX_INTERVAL.
+    private long end = 0;                 // Fin del archivo (próxima escritura).
+    private int size = 0;
+
+    ChatHistory() throws IOException {
+        file = Files.createTempFile("meeting-chat", ".log");
+        file.toFile().deleteOnExit();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Cantidad de líneas guardadas.
+    int size() {
+        return size;
+    }
+
+    // Agrega un lote de líneas con una sola escritura. Los saltos de línea internos se reemplazan por espacios.
+    void append(List<String> lines) throws IOException {
+        StringBuilder batch = new StringBuilder();
+        long position = end;
+        for (String line : lines) {
+            if (size % INDEX_INTERVAL == 0) {
+                int slot = size / INDEX_INTERVAL;
+                if (slot == index.length) index = Arrays.copyOf(index, slot * 2);
+                index[slot] = position;
+            }
+            String clean = line.replace('\n', ' ').replace('\r', ' ');
+            batch.append(clean).append('\n');
+            position += clean.getBytes(StandardCharsets.UTF_8).length + 1;
+            size++;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            end += channel.write(bytes, end);
+        }
+    }
+
+    // Lee las líneas [from, to).
+    List<String> read(int from, int to) throws IOException {
+        from = Math.max(0, from);
+        to = Math.min(size, to);
+        List<String> lines = new ArrayList<>(Math.max(0, to - from));
+        if (from >= to) return lines;
+
+        int first = from - from % INDEX_INTERVAL;
+        channel.position(index[from / INDEX_INTERVAL]);
+        // El reader no se cierra: cerrarlo cerraría el canal.
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        for (int line = first; line < to; line++) {
+            String text = reader.readLine();
+            if (text == null) break;
+            if (line >= from) lines.add(text);
+        }
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
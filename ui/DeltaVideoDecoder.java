@@ -0,0 +1,151 @@
+package ui;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Decodificador del video de un remitente (ver DeltaVideoEncoder para el formato).
+ *
+ * Funcionamiento general: Mantiene el último frame completo del remitente. Un keyframe lo reemplaza;
+ * un delta pega sus bloques encima. Si llega un delta sin frame base o con un hueco en la secuencia
+ * (frames descartados por congestión o perdidos por UDP), se ignora y se marca que hace falta un
+ * keyframe, que Main2 pide al remitente como mucho una vez por KEYFRAME_RETRY_MS.
+ * También acepta un JPEG suelto (clientes sin video por diferencias).
+ * Usa un único ImageReader y, si el tamaño no cambió, decodifica los keyframes sobre el frame anterior
+ * y los mosaicos sobre el mosaico anterior, en vez de asignar imágenes nuevas en cada frame.
+ * No es thread-safe: cada remitente lo usa desde un solo hilo a la vez (ver VideoDecodePool).
+ * Con simulcast el servidor puede pasar a reenviar otra capa del remitente: setLayer descarta el frame
+ * base de la capa anterior (otra resolución y otra secuencia) y espera un keyframe de la nueva.
+ */
+
+class DeltaVideoDecoder {
+
+    private static final long KEYFRAME_RETRY_MS = 1000;
+
+    private final ImageReader reader;
+    private BufferedImage frame;
+    private BufferedImage mosaic; // Último mosaico, reutilizable si el próximo tiene el mismo tamaño.
+    private int lastSequence = -1;
+    private boolean needsKeyframe = false;
+    private long lastKeyframeRequest = 0;
+    private int layer = 0;
+
+    DeltaVideoDecoder() {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpg");
+        if (!readers.hasNext()) throw new IllegalStateException("No hay reader JPEG disponible");
+        reader = readers.next();
+    }
+
+    // Capa de simulcast del próximo frame. Si cambió, el frame base ya no sirve.
+    void setLayer(int layer) {
+        if (layer == this.layer) return;
+        this.layer = layer;
+        reset();
+        lastKeyframeRequest = 0; // El pedido de la capa anterior no cuenta para la nueva.
+    }
+
+    // Aplica los datos de un mensaje VIDEO. Devuelve el frame actualizado, o null si no se pudo aplicar.
+    BufferedImage decode(byte[] data) throws IOException {
+        if (data.length < DeltaVideoEncoder.KEYFRAME_HEADER) return null;
+        if (data[0] != DeltaVideoEncoder.KEYFRAME && data[0] != DeltaVideoEncoder.DELTA) {
+            frame = toRgb(read(data, 0, data.length, frame)); // JPEG completo sin encabezado.
+            lastSequence = -1;
+            return frame;
+        }
+        if (data[1] != DeltaVideoEncoder.VERSION) return null;
+        int sequence = ((data[2] & 0xFF) << 8) | (data[3] & 0xFF);
+
+        if (data[0] == DeltaVideoEncoder.KEYFRAME) {
+            frame = toRgb(read(data, DeltaVideoEncoder.KEYFRAME_HEADER,
+                    data.length - DeltaVideoEncoder.KEYFRAME_HEADER, frame));
+            lastSequence = frame != null ? sequence : -1;
+            needsKeyframe = frame == null;
+            return frame;
+        }
+
+        if (frame == null || lastSequence < 0 || sequence != ((lastSequence + 1) & 0xFFFF)) {
+            needsKeyframe = true;
+            lastSequence = -1; // Los deltas siguientes tampoco sirven hasta el próximo keyframe.
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(data);
+        header.position(4);
+        int width = header.getShort() & 0xFFFF;
+        int height = header.getShort() & 0xFFFF;
+        int block = header.get() & 0xFF;
+        int count = header.getShort() & 0xFFFF;
+        int mosaicOffset = DeltaVideoEncoder.DELTA_HEADER + 2 * count;
+        if (width != frame.getWidth() || height != frame.getHeight() || block == 0 || mosaicOffset > data.length) {
+            needsKeyframe = true;
+            lastSequence = -1;
+            return null;
+        }
+        mosaic = read(data, mosaicOffset, data.length - mosaicOffset, mosaic);
+        if (mosaic == null) return null;
+
+        int mosaicColumns = mosaic.getWidth() / block;
+        int[] pixels = new int[block * block];
+        for (int i = 0; i < count; i++) {
+            int x = (header.get() & 0xFF) * block;
+            int y = (header.get() & 0xFF) * block;
+            int w = Math.min(block, width - x);
+            int h = Math.min(block, height - y);
+            int mx = (i % mosaicColumns) * block;
+            int my = (i / mosaicColumns) * block;
+            if (w <= 0 || h <= 0 || my + h > mosaic.getHeight()) continue;
+            mosaic.getRGB(mx, my, w, h, pixels, 0, w);
+            frame.setRGB(x, y, w, h, pixels, 0, w);
+        }
+        lastSequence = sequence;
+        return frame;
+    }
+
+    // Indica si hay que pedir un keyframe ahora (hace falta y no se pidió hace poco).
+    boolean shouldRequestKeyframe() {
+        long now = System.currentTimeMillis();
+        if (!needsKeyframe || now - lastKeyframeRequest < KEYFRAME_RETRY_MS) return false;
+        lastKeyframeRequest = now;
+        return true;
+    }
+
+    // Olvida el frame base (cámara apagada o video pausado): el próximo delta pedirá un keyframe.
+    void reset() {
+        frame = null;
+        lastSequence = -1;
+    }
+
+    // Decodifica un JPEG. Si reuse tiene el mismo tamaño, los píxeles se escriben sobre él.
+    // Devuelve null si los datos no son un JPEG válido.
+    private BufferedImage read(byte[] data, int offset, int length, BufferedImage reuse) throws IOException {
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(data, offset, length))) {
+            reader.setInput(in, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (reuse != null && reuse.getType() == BufferedImage.TYPE_INT_RGB
+                    && reuse.getWidth() == reader.getWidth(0) && reuse.getHeight() == reader.getHeight(0)) {
+                param.setDestination(reuse);
+            }
+            return reader.read(0, param);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            reader.setInput(null);
+        }
+    }
+
+    // El frame base tiene que ser editable con setRGB en RGB (ImageIO puede devolver otros tipos).
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image == null || image.getType() == BufferedImage.TYPE_INT_RGB) return image;
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgb.getGraphics().drawImage(image, 0, 0, null);
+        return rgb;
+    }
+}
@@ -0,0 +1,160 @@
+package ui;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Codificador de video por diferencias entre frames.
+ *
+ * Funcionamiento general: El frame se divide en bloques de BLOCK_SIZE píxeles y cada bloque se
+ * compara (diferencia media de luminancia) con lo que el receptor ya tiene. Solo los bloques que
+ * cambiaron se envían: se copian uno al lado del otro en un mosaico que se comprime como un único
+ * JPEG, junto con la posición de cada bloque. Un JPEG por bloque llevaría sus propias tablas (unos
+ * 600 bytes) y en un frame con muchos cambios pesaría más que el frame entero. Cada
+ * KEYFRAME_INTERVAL frames, o cuando un receptor lo pide (forceKeyframe), se envía el frame completo.
+ *
+ * Formato de los datos de VIDEO:
+ * - Keyframe: ['K'][versión][secuencia (2)][JPEG del frame completo]
+ * - Delta:    ['D'][versión][secuencia (2)][ancho (2)][alto (2)][bloque (1)][cantidad (2)]
+ *             [cantidad × (columna (1), fila (1))][JPEG del mosaico]
+ * La secuencia crece de a uno por frame enviado: el receptor detecta un hueco y pide un keyframe.
+ */
+
+class DeltaVideoEncoder {
+
+    static final byte KEYFRAME = 'K';
+    static final byte DELTA = 'D';
+    static final int VERSION = 1;
+    static final int KEYFRAME_HEADER = 4;
+    static final int DELTA_HEADER = 11;
+
+    // Lado de los bloques: múltiplo de 16 para que coincida con los macrobloques del JPEG.
+    static final int BLOCK_SIZE = 16;
+    // Frames entre keyframes (a ~10 fps, uno cada 5 s).
+    private static final int KEYFRAME_INTERVAL = Integer.getInteger("meeting.video.keyframeInterval", 50);
+    // Diferencia media de luminancia (0-255) a partir de la cual un bloque se considera cambiado.
+    private static final int CHANGE_THRESHOLD = Integer.getInteger("meeting.video.deltaThreshold", 4);
+
+    private final JpegWriter jpeg;
+    // Buffer de salida reutilizado entre frames.
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+    private final AtomicBoolean keyframeRequested = new AtomicBoolean(true);
+    private int width = -1;
+    private int height = -1;
+    private int[] current = new int[0];   // Píxeles del frame actual.
+    private int[] reference = new int[0]; // Lo que tiene el receptor (se actualiza solo en bloques enviados).
+    private int framesSinceKeyframe = 0;
+    private int sequence = 0;
+
+    DeltaVideoEncoder(JpegWriter jpeg) {
+        this.jpeg = jpeg;
+    }
+
+    // Pide que el próximo frame sea un keyframe (receptor nuevo, pérdida o cámara reactivada). Thread-safe.
+    void forceKeyframe() {
+        keyframeRequested.set(true);
+    }
+
+    // Codifica un frame. Devuelve los datos del mensaje VIDEO, o null si no cambió ningún bloque.
+    // Se llama solo desde el hilo de captura.
+    byte[] encode(BufferedImage image) throws IOException {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (w != width || h != height) {
+            width = w;
+            height = h;
+            current = new int[w * h];
+            reference = new int[w * h];
+            keyframeRequested.set(true);
+        }
+        image.getRGB(0, 0, w, h, current, 0, w);
+
+        if (keyframeRequested.getAndSet(false) || ++framesSinceKeyframe >= KEYFRAME_INTERVAL) {
+            return keyframe(image);
+        }
+
+        int columns = (w + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int rows = (h + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] changed = new int[columns * rows];
+        int count = 0;
+        for (int by = 0; by < rows; by++) {
+            for (int bx = 0; bx < columns; bx++) {
+                if (blockChanged(bx, by)) changed[count++] = by * columns + bx;
+            }
+        }
+        if (count == 0) return null;
+        if (count * 2 > columns * rows) {
+            return keyframe(image); // Más de la mitad cambió: el frame completo comprime mejor.
+        }
+
+        // Mosaico casi cuadrado con los bloques cambiados.
+        int mosaicColumns = (int) Math.ceil(Math.sqrt(count));
+        int mosaicRows = (count + mosaicColumns - 1) / mosaicColumns;
+        BufferedImage mosaic = new BufferedImage(
+                mosaicColumns * BLOCK_SIZE, mosaicRows * BLOCK_SIZE, BufferedImage.TYPE_INT_RGB);
+        ByteBuffer header = ByteBuffer.allocate(DELTA_HEADER + 2 * count);
+        header.put(DELTA).put((byte) VERSION).putShort((short) sequence++)
+                .putShort((short) w).putShort((short) h).put((byte) BLOCK_SIZE).putShort((short) count);
+        for (int i = 0; i < count; i++) {
+            int bx = changed[i] % columns;
+            int by = changed[i] / columns;
+            header.put((byte) bx).put((byte) by);
+            copyBlock(bx, by, mosaic, (i % mosaicColumns) * BLOCK_SIZE, (i / mosaicColumns) * BLOCK_SIZE);
+        }
+
+        out.reset();
+        out.write(header.array());
+        jpeg.write(mosaic, out);
+        return out.toByteArray();
+    }
+
+    private byte[] keyframe(BufferedImage image) throws IOException {
+        framesSinceKeyframe = 0;
+        System.arraycopy(current, 0, reference, 0, current.length);
+        out.reset();
+        out.write(KEYFRAME);
+        out.write(VERSION);
+        out.write(sequence >> 8);
+        out.write(sequence);
+        sequence++;
+        jpeg.write(image, out);
+        return out.toByteArray();
+    }
+
+    // Compara un bloque con la referencia por diferencia media de luminancia.
+    private boolean blockChanged(int bx, int by) {
+        int x0 = bx * BLOCK_SIZE;
+        int y0 = by * BLOCK_SIZE;
+        int x1 = Math.min(x0 + BLOCK_SIZE, width);
+        int y1 = Math.min(y0 + BLOCK_SIZE, height);
+        long total = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                total += Math.abs(luma(current[row + x]) - luma(reference[row + x]));
+            }
+        }
+        return total > (long) CHANGE_THRESHOLD * (x1 - x0) * (y1 - y0);
+    }
+
+    // Copia un bloque del frame al mosaico y lo marca como enviado en la referencia.
+    private void copyBlock(int bx, int by, BufferedImage mosaic, int mx, int my) {
+        int x0 = bx * BLOCK_SIZE;
+        int y0 = by * BLOCK_SIZE;
+        int blockWidth = Math.min(BLOCK_SIZE, width - x0);
+        int blockHeight = Math.min(BLOCK_SIZE, height - y0);
+        for (int y = 0; y < blockHeight; y++) {
+            int offset = (y0 + y) * width + x0;
+            mosaic.setRGB(mx, my + y, blockWidth, 1, current, offset, width);
+            System.arraycopy(current, offset, reference, offset, blockWidth);
+        }
+    }
+
+    // Luminancia aproximada (r + 2g + b) / 4.
+    private static int luma(int rgb) {
+        return (((rgb >> 16) & 0xFF) + 2 * ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) >> 2;
+    }
+}
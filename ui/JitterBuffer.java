@@ -0,0 +1,178 @@
+package ui;
+
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Buffer de jitter para el audio de un remitente.
+ *
+ * Funcionamiento general: Los paquetes de audio se copian a un ring buffer preasignado y el hilo de
+ * reproducción los saca en bloques de tamaño fijo. Antes de empezar a sonar se acumula una
+ * profundidad objetivo que se adapta al jitter medido entre llegadas (sube rápido si la red se
+ * pone irregular, baja despacio cuando se calma). Si el buffer se vacía, el hueco se rellena con
+ * silencio y los bytes que lleguen para ese hueco ya sonado se descartan por tardíos. Si el buffer
+ * queda por encima del objetivo (p.ej. después de una ráfaga), se recorta de a poco para volver a
+ * baja latencia. Thread-safe: escribe el hilo de red y lee el hilo de reproducción.
+ */
+
+class JitterBuffer {
+
+    // Límites de la profundidad objetivo, en milisegundos de audio.
+    static final int MIN_DELAY_MS = 40;
+    static final int MAX_DELAY_MS = 300;
+    // Capacidad del ring: lo que exceda se descarta desde lo más viejo.
+    static final int CAPACITY_MS = 500;
+    // Una pausa entre paquetes mayor a esto es fin de ráfaga (el remitente dejó de hablar), no jitter.
+    private static final long SPURT_GAP_MS = 1000;
+
+    private final int frameBytes;        // Bytes por muestra (todos los canales).
+    private final double bytesPerMs;
+    private final byte[] ring;
+    private int readPos = 0;
+    private int size = 0;
+
+    private boolean playing = false;     // false = acumulando hasta la profundidad objetivo.
+    private int concealed = 0;           // Bytes de silencio reproducidos en lugar de audio que no llegó.
+    private int playoutTarget = 0;       // Objetivo con el que se empezó a reproducir.
+    private boolean silence = false;     // El remitente avisó que dejó de hablar (marcador SILENCE).
+    private long lastArrival = 0;        // Llegada del paquete anterior (System.nanoTime).
+    private double lastPacketMs = 0;     // Duración del paquete anterior.
+    private double jitterMs = 0;         // Jitter estimado entre llegadas.
+    private long lateBytes = 0;          // Total de bytes descartados por tardíos.
+
+    JitterBuffer(AudioFormat format) {
+        this.frameBytes = format.getFrameSize();
+        this.bytesPerMs = format.getFrameRate() * frameBytes / 1000.0;
+        this.ring = new byte[align((int) (CAPACITY_MS * bytesPerMs))];
+    }
+
+    // Agrega un paquete recibido en el instante nowNanos.
+    // Funcionamiento: Actualiza el jitter (diferencia entre el intervalo real de llegada y la duración
+    // del paquete anterior), descarta la parte que llegó tarde y copia el resto al ring.
+    synchronized void offer(byte[] data, long nowNanos) {
+        silence = false;
+        if (lastArrival != 0) {
+            double gapMs = (nowNanos - lastArrival) / 1_000_000.0;
+            if (gapMs < SPURT_GAP_MS) {
+                double deviation = Math.abs(gapMs - lastPacketMs);
+                // Sube rápido y baja despacio: el buffer crece apenas hay jitter y se achica cuando se calma.
+                jitterMs += (deviation - jitterMs) / (deviation > jitterMs ? 4.0 : 32.0);
+            }
+        }
+        lastArrival = nowNanos;
+        lastPacketMs = data.length / bytesPerMs;
+
+        int offset = 0;
+        int length = align(data.length);
+        if (playing && concealed > 0) {
+            // Estos bytes correspondían a un tramo que ya sonó como silencio: se descartan.
+            int late = Math.min(concealed, length);
+            offset = late;
+            length -= late;
+            concealed -= late;
+            lateBytes += late;
+        }
+        if (length > ring.length) {
+            offset += length - ring.length;
+            length = ring.length;
+        }
+        int overflow = size + length - ring.length;
+        if (overflow > 0) {
+            skip(overflow); // Sin lugar: se pierde lo más viejo para no acumular latencia.
+        }
+
+        int writePos = (readPos + size) % ring.length;
+        int first = Math.min(length, ring.length - writePos);
+        System.arraycopy(data, offset, ring, writePos, first);
+        System.arraycopy(data, offset + first, ring, 0, length - first);
+        size += length;
+    }
+
+    // El remitente dejó de hablar: lo que queda se reproduce aunque no llegue al objetivo, y al vaciarse
+    // el buffer vuelve a esperar sin rellenar con silencio (la pausa no es pérdida ni jitter).
+    synchronized void markSilence() {
+        silence = true;
+        lastArrival = 0;
+    }
+
+    // Llena out con el próximo bloque de audio. Devuelve los bytes a reproducir (0 si todavía acumula).
+    // Funcionamiento: Si el buffer se vacía en medio de una ráfaga, completa con silencio; si el silencio
+    // supera la profundidad objetivo, el remitente dejó de hablar y se vuelve a acumular. Si al vaciarse
+    // el objetivo ya es mayor que con el que se empezó, se vuelve a acumular enseguida (el buffer crece).
+    synchronized int read(byte[] out, int length) {
+        int target = targetBytes();
+        if (!playing) {
+            if (size == 0 || (size < target && !silence)) return 0;
+            playing = true;
+            concealed = 0;
+            playoutTarget = target;
+        }
+
+        // Recorta de a poco el exceso sobre el objetivo (como máximo 1/8 del bloque por lectura).
+        int excess = size - target - length;
+        if (excess > 0) {
+            skip(align(Math.min(excess, length / 8)));
+        }
+
+        int n = Math.min(size, length);
+        int first = Math.min(n, ring.length - readPos);
+        System.arraycopy(ring, readPos, out, 0, first);
+        System.arraycopy(ring, 0, out, first, n - first);
+        readPos = (readPos + n) % ring.length;
+        size -= n;
+
+        if (n < length) {
+            if (silence) {
+                playing = false; // Fin de la ráfaga anunciado: no hay nada que ocultar.
+                concealed = 0;
+                if (n == 0) return 0;
+                Arrays.fill(out, n, length, (byte) 0);
+                return length;
+            }
+            if (n == 0 && target > playoutTarget + length) {
+                playing = false; // El jitter creció desde que empezó a sonar: se vuelve a acumular con el objetivo nuevo.
+                return 0;
+            }
+            Arrays.fill(out, n, length, (byte) 0);
+            concealed += length - n;
+            if (concealed > target) {
+                playing = false;
+                concealed = 0;
+                if (n == 0) return 0;
+            }
+        }
+        return length;
+    }
+
+    // Retardo actual del buffer: el audio encolado, en milisegundos.
+    synchronized int getDelayMillis() {
+        return (int) (size / bytesPerMs);
+    }
+
+    // Profundidad objetivo actual, en milisegundos.
+    synchronized int getTargetMillis() {
+        return (int) (targetBytes() / bytesPerMs);
+    }
+
+    // Milisegundos de audio descartados por llegar tarde desde que se creó el buffer.
+    synchronized long getLateMillis() {
+        return (long) (lateBytes / bytesPerMs);
+    }
+
+    // Objetivo: un paquete más cuatro veces el jitter, entre MIN_DELAY_MS y MAX_DELAY_MS.
+    private int targetBytes() {
+        double ms = Math.max(MIN_DELAY_MS, Math.min(MAX_DELAY_MS, lastPacketMs + 4 * jitterMs));
+        return align((int) (ms * bytesPerMs));
+    }
+
+    private void skip(int bytes) {
+        bytes = Math.min(bytes, size);
+        readPos = (readPos + bytes) % ring.length;
+        size -= bytes;
+    }
+
+    // Redondea hacia abajo a un múltiplo del tamaño de muestra (no cortar una muestra a la mitad).
+    private int align(int bytes) {
+        return bytes - bytes % frameBytes;
+    }
+}
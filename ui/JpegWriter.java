@@ -0,0 +1,67 @@
+package ui;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Compresor JPEG reutilizable con calidad explícita.
+ *
+ * Funcionamiento general: ImageIO.write busca un writer, lo configura y lo descarta en cada llamada.
+ * Esta clase obtiene un ImageWriter una sola vez, con la calidad fija (-Dmeeting.video.quality,
+ * 0.7 por defecto, ajustable con setQuality), y escribe sobre un buffer de salida que se reutiliza entre frames.
+ * No es thread-safe: lo usa solo el hilo de captura.
+ */
+
+class JpegWriter {
+
+    static final float DEFAULT_QUALITY = 0.7f;
+
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 * 1024);
+
+    JpegWriter(float quality) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        if (!writers.hasNext()) throw new IllegalStateException("No hay writer JPEG disponible");
+        writer = writers.next();
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+    }
+
+    // Crea el writer con la calidad de -Dmeeting.video.quality.
+    static JpegWriter fromSystemProperties() {
+        String quality = System.getProperty("meeting.video.quality");
+        return new JpegWriter(quality != null ? Float.parseFloat(quality) : DEFAULT_QUALITY);
+    }
+
+    // Cambia la calidad de los próximos frames (control de tasa). Solo desde el hilo de captura.
+    void setQuality(float quality) {
+        param.setCompressionQuality(quality);
+    }
+
+    // Comprime una imagen y devuelve una copia de los bytes (el buffer interno se reutiliza).
+    byte[] encode(BufferedImage image) throws IOException {
+        buffer.reset();
+        write(image, buffer);
+        return buffer.toByteArray();
+    }
+
+    // Comprime una imagen agregando los bytes al final de out.
+    void write(BufferedImage image, ByteArrayOutputStream out) throws IOException {
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.setOutput(null);
+        }
+    }
+}
@@ -4,24 +4,28 @@ import java.net.URL;
 import com.github.sarxos.webcam.Webcam;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.embed.swing.SwingFXUtils;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import javax.imageio.ImageIO;
 import javax.sound.sampled.*;
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.geometry.*;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 import network.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Clase principal de la aplicación cliente.
@@ -30,38 +34,128 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * Funcionamiento general: Maneja la UI de JavaFX con grid para videos, chat, controles.
  * Captura video de webcam y audio de mic, los envía via MeetingClient.
  * Recibe y muestra video/audio de otros. Limita a 4 usuarios via servidor.
- * Usa AnimationTimer para frames de video (~10 FPS), hilos para audio.
+ * Captura y comprime video en un hilo propio (~10 FPS configurables); la UI solo muestra el último frame.
+ * Usa hilos para audio.
+ * Recibe los mensajes de MeetingClient como MeetingListener, desde los hilos de red: la media va directo
+ * a sus pipelines y los cambios de estado de la UI se encolan y se aplican en lote una vez por pulso.
+ * El botón "Stats" (o -Dmeeting.stats.overlay=true) muestra sobre los videos la latencia de punta a punta,
+ * la pérdida y el desorden de cada remitente y la sincronización del reloj con el servidor.
  */
 
-public class Main2 extends Application {
-    // Área de visualización del chat. TextArea no editable para mostrar mensajes.
-    private TextArea chatArea;
+public class Main2 extends Application implements MeetingListener {
+    // Vista del chat: ListView virtualizada (solo crea celdas para las líneas visibles) sobre una ventana
+    // acotada de CHAT_WINDOW líneas. El historial completo queda en ChatHistory (en disco) y se pagina al
+    // llegar a un borde con el scroll.
+    private ListView<String> chatList;
+    private final ObservableList<String> chatItems = FXCollections.observableArrayList();
+    // Historial completo; null si no se pudo crear el archivo (entonces solo se conserva la ventana).
+    private ChatHistory chatHistory;
+    // Posición en el historial de la primera línea de la ventana.
+    private int chatWindowStart = 0;
+    // Barra de scroll vertical de la lista (para detectar los bordes); null hasta que la lista tenga skin.
+    private ScrollBar chatScrollBar;
+    private boolean chatLoading = false; // Evita cargar otra página mientras se acomoda la ventana.
+    // Líneas en la ventana (-Dmeeting.chat.window) y líneas por página al recorrer el historial.
+    private static final int CHAT_WINDOW = Math.max(100, Integer.getInteger("meeting.chat.window", 500));
+    private static final int CHAT_PAGE = 100;
     // Campo de entrada de mensajes. TextField para escribir chat.
     private TextField messageField;
     // Cliente de red. Instancia de MeetingClient para comunicación con servidor.
     private MeetingClient client;
     // Nombre del usuario actual. Solicitado al inicio via dialog.
     private String username;
+    // Sala de la reunión. Solicitada al inicio via dialog.
+    private String room;
     // Webcam utilizada para captura de video. Usa sarxos library.
     private Webcam webcam;
     // Mapa que asocia usuario → vista de video. HashMap para acceso rápido.
-    private Map<String, ImageView> userVideoMap = new HashMap<>();
+    // LinkedHashMap: el orden de llegada es el orden de la galería (el video propio primero).
+    private Map<String, ImageView> userVideoMap = new LinkedHashMap<>();
+    // Compresor JPEG único del hilo de captura (calidad en -Dmeeting.video.quality).
+    private final JpegWriter jpegWriter = JpegWriter.fromSystemProperties();
+    // Capas de simulcast que se publican (-Dmeeting.video.layers, 1 a VideoLayers.MAX_LAYERS; 1 = sin simulcast).
+    private final int videoLayers = Math.max(1, Math.min(VideoLayers.MAX_LAYERS,
+            Integer.getInteger("meeting.video.layers", VideoLayers.MAX_LAYERS)));
+    // Codificador de video por diferencias de cada capa (-Dmeeting.video.mode=delta, por defecto); null en modo
+    // jpeg (frames completos). Cada capa tiene su propia referencia y secuencia.
+    private final DeltaVideoEncoder[] videoEncoders = createVideoEncoders();
+    // Control de tasa del video saliente: baja resolución, fps y calidad si la red se congestiona.
+    private final VideoRateController rateController = new VideoRateController();
+    // Frame escalado de cada capa. Se reutiliza mientras no cambie el tamaño (hilo de captura).
+    private final BufferedImage[] scaledFrames = new BufferedImage[VideoLayers.MAX_LAYERS];
+    // Columnas y filas actuales del grid, y último tamaño de mosaico informado al servidor (VIEWPORT).
+    private int gridColumns = 1;
+    private int gridRows = 1;
+    private int reportedTileWidth = -1;
+    private int reportedTileHeight = -1;
+    // Cambio mínimo de tamaño de mosaico (px) para volver a informarlo: evita un VIEWPORT por cada
+    // evento al redimensionar la ventana.
+    private static final int VIEWPORT_STEP = 16;
+    // Último frame de la vista previa propia, listo para mostrar. El hilo de captura lo reemplaza y
+    // el timer de JavaFX lo toma: si la UI se atrasa, los frames intermedios se pierden en vez de encolarse.
+    private final AtomicReference<WritableImage> localPreview = new AtomicReference<>();
+    // Imagen de la vista previa que ya no se muestra, para que la captura escriba el próximo frame en ella.
+    // Funcionamiento: Circulan dos o tres WritableImage: la que se muestra (shownPreview, solo del thread de
+    // JavaFX), la pendiente en localPreview y la libre. La captura nunca escribe en la que está en pantalla y
+    // solo asigna una nueva al arrancar o si cambia el tamaño de la cámara.
+    private final AtomicReference<WritableImage> sparePreview = new AtomicReference<>();
+    private WritableImage shownPreview;
+    // Decodificación del video recibido en un pool propio; el thread de JavaFX solo publica el último frame listo.
+    private final VideoDecodePool videoDecoding = VideoDecodePool.fromSystemProperties(this::requestRemoteKeyframe);
+    // Usuarios cuyo video se pausó con un click.
+    private Set<String> pausedVideo = new HashSet<>();
+    // Usuarios fuera de la página visible de la galería.
+    private Set<String> offScreen = new HashSet<>();
+    // Usuarios a los que se envió UNSUBSCRIBE: el servidor deja de enviarnos sus frames. Se recibe el video
+    // de un usuario solo si está en la página visible y no está pausado (ver applyVideoSubscription).
+    private Set<String> unsubscribed = new HashSet<>();
+    // Mosaico de cada usuario. Se crea una vez y se reutiliza al cambiar de página o de disposición.
+    private Map<String, StackPane> videoContainers = new HashMap<>();
+    // Galería paginada: mosaicos por página (-Dmeeting.gallery.pageSize) y página actual. Solo los
+    // mosaicos de la página visible están en el grid.
+    private final int galleryPageSize = Math.max(1, Integer.getInteger("meeting.gallery.pageSize", 9));
+    private int galleryPage = 0;
+    private Button previousPageButton;
+    private Button nextPageButton;
+    private Label pageLabel;
+    // Cambios de estado de la UI pedidos desde otros hilos (participantes, cámara, bordes de habla).
+    // El timer de JavaFX los aplica todos juntos en cada pulso, en vez de un Platform.runLater por mensaje.
+    private final ConcurrentLinkedQueue<Runnable> uiUpdates = new ConcurrentLinkedQueue<>();
+    // Líneas de chat pendientes: se agregan al historial y a la lista en un solo lote por pulso. Se sincroniza sobre sí misma.
+    private final List<String> pendingChat = new ArrayList<>();
+    // El grid tiene que rearmarse al final del pulso (solo en el thread de JavaFX): varios JOIN/LEAVE
+    // en el mismo pulso se resuelven con un solo updateGridLayout.
+    private boolean gridDirty = false;
     // Grid dinámico donde se muestran videos. GridPane que se redimensiona automáticamente.
     private GridPane videoGrid;
+    // Panel de estadísticas sobre el video. statsVisible lo lee el hilo de red para no armar el texto en vano.
+    private Label statsOverlay;
+    private volatile boolean statsVisible = Boolean.getBoolean("meeting.stats.overlay");
     // Estados de dispositivos. Banderas para togglear cam/mic.
-    private boolean cameraOn = true;
+    private volatile boolean cameraOn = true; // Lo lee el hilo de captura.
     private boolean micOn = true;
     private TargetDataLine microphone; // Línea de captura de audio.
     private AudioFormat audioFormat = new AudioFormat(44100, 16, 1, true, true); // Formato de audio: 44.1kHz, 16bits, mono.
     
-    // Cola para buffers de audio recibidos. Concurrent para manejo thread-safe.
-    private ConcurrentLinkedQueue<byte[]> audioQueue = new ConcurrentLinkedQueue<>();
+    // Bloque de reproducción: 10 ms de audio. El buffer de la línea es de pocos bloques para no sumar latencia.
+    private static final int PLAYOUT_CHUNK_MS = 10;
+    private static final int LINE_BUFFER_CHUNKS = 4;
+    private final int playoutChunkBytes =
+            (int) (audioFormat.getFrameRate() * PLAYOUT_CHUNK_MS / 1000) * audioFormat.getFrameSize();
+    // Mezclador: un buffer de jitter por remitente y una sola salida. Lo llena el hilo de red y lo vacía el de reproducción.
+    private final AudioMixer mixer = new AudioMixer(audioFormat, playoutChunkBytes);
+    // Cada cuánto se repite el marcador SILENCE mientras el micrófono está en silencio.
+    private static final long SILENCE_MARKER_MS = 500;
+    // Participantes hablando ahora (VAD propio y audio/SILENCE de los demás). Se muestra con un borde en su video.
+    private final Set<String> speakingUsers = ConcurrentHashMap.newKeySet();
+    // Aviso al hilo de reproducción de que llegó audio (espera con wait en vez de sondear).
+    private final Object audioSignal = new Object();
     // Línea de reproducción de audio. SourceDataLine para playback continuo.
     private SourceDataLine speakers;
     // Hilo para reproducción de audio. Ejecuta el playback en background.
     private Thread audioPlaybackThread;
     // Bandera para controlar si el playback está activo.
-    private boolean audioPlaying = false;
+    private volatile boolean audioPlaying = false;
 
     @Override
     public void start(Stage stage) {
@@ -86,6 +180,13 @@ public class Main2 extends Application {
         dialog.setContentText("Nombre:");
         username = dialog.showAndWait().orElse("Usuario");
 
+        // Diálogo para elegir la sala. Por defecto la sala general.
+        TextInputDialog roomDialog = new TextInputDialog(MeetingClient.DEFAULT_ROOM);
+        roomDialog.setTitle("Sala");
+        roomDialog.setHeaderText("Ingresa el nombre de la sala:");
+        roomDialog.setContentText("Sala:");
+        room = roomDialog.showAndWait().orElse(MeetingClient.DEFAULT_ROOM);
+
         // Root layout: BorderPane para organizar centro (videos/chat) y bottom (controles).
         BorderPane root = new BorderPane();
 
@@ -108,6 +209,18 @@ public class Main2 extends Application {
 
         videoGrid.getColumnConstraints().add(col);
         videoGrid.getRowConstraints().add(row);
+        videoGrid.widthProperty().addListener((obs, old, value) -> reportViewport());
+        videoGrid.heightProperty().addListener((obs, old, value) -> reportViewport());
+
+        // Estadísticas de la llamada sobre el grid; no capturan el mouse para no tapar los videos.
+        statsOverlay = new Label("Esperando estadísticas...");
+        statsOverlay.setStyle("-fx-font-family: monospace; -fx-font-size: 11px; -fx-text-fill: #e0e0e0;"
+                + " -fx-background-color: rgba(0, 0, 0, 0.6); -fx-padding: 6;");
+        statsOverlay.setMouseTransparent(true);
+        statsOverlay.setVisible(statsVisible);
+        StackPane videoArea = new StackPane(videoGrid, statsOverlay);
+        StackPane.setAlignment(statsOverlay, Pos.TOP_LEFT);
+        StackPane.setMargin(statsOverlay, new Insets(14));
 
         // ================= LOCAL VIDEO =================
         // Vista local: Crea ImageView para el video propio y lo agrega al mapa.
@@ -116,37 +229,32 @@ public class Main2 extends Application {
         updateGridLayout(); // Actualiza grid inicial con video local.
 
         // ================= TIMER =================
-        // Timer para captura de frames: AnimationTimer (~10 FPS).
-        // Funcionamiento: Cada 100ms, captura imagen de webcam, actualiza vista local y envía si cameraOn.
+        // Timer de la vista previa: en cada pulso de JavaFX muestra el último frame que dejó el hilo de captura.
+        // Funcionamiento: La captura y la compresión corren en su propio hilo (startVideoCapture); el thread de
+        // JavaFX solo toma el frame más reciente (los intermedios se descartan) y lo asigna a la vista local.
+        // El video recibido sigue el mismo esquema: se decodifica en VideoDecodePool y acá solo se publica.
         AnimationTimer timer = new AnimationTimer() {
-            private long lastFrame = 0;
-
             @Override
             public void handle(long now) {
-
-                if (now - lastFrame < 100_000_000) return;
-                lastFrame = now;
-
-                if (webcam != null && webcam.isOpen() && cameraOn) {
-
-                    BufferedImage bufferedImage = webcam.getImage();
-                    if (bufferedImage != null) {
-
-                        Image fxImage = SwingFXUtils.toFXImage(bufferedImage, null);
-
-                        ImageView view = userVideoMap.get(username);
-                        if (view != null) {
-                            view.setImage(fxImage); // Actualiza imagen local.
-                        }
-
-                        sendVideoFrame(bufferedImage); // Envía frame al servidor.
-                    } else {
-                        System.out.println("Imagen null de webcam"); // Logging para depuración.
+                applyUiUpdates();
+                videoDecoding.publish(Main2.this::showVideoFrame); // Último frame listo de cada remitente.
+                WritableImage preview = localPreview.getAndSet(null);
+                if (preview != null) {
+                    ImageView view = userVideoMap.get(username);
+                    if (view != null) {
+                        view.setImage(preview); // Actualiza imagen local.
                     }
+                    if (shownPreview != null) sparePreview.set(shownPreview); // La anterior deja de mostrarse.
+                    shownPreview = preview;
+                }
+                if (gridDirty) {
+                    gridDirty = false;
+                    updateGridLayout();
                 }
             }
         };
         timer.start(); // Inicia el timer.
+        startVideoCapture();
 
         // ================= CHAT =================
         // Box para chat: VBox con label, area, field y botón.
@@ -158,9 +266,27 @@ public class Main2 extends Application {
 
         Label chatLabel = new Label("Chat");
 
-        chatArea = new TextArea();
-        chatArea.setEditable(false);
-        VBox.setVgrow(chatArea, Priority.ALWAYS);
+        try {
+            chatHistory = new ChatHistory();
+        } catch (IOException e) {
+            System.out.println("Sin historial de chat en disco: " + e.getMessage());
+        }
+        chatList = new ListView<>(chatItems);
+        chatList.setFocusTraversable(false);
+        chatList.setCellFactory(list -> new ListCell<>() {
+            {
+                setWrapText(true); // Líneas largas en varios renglones, dentro del ancho de la lista.
+                prefWidthProperty().bind(list.widthProperty().subtract(20));
+                setMaxWidth(Region.USE_PREF_SIZE);
+            }
+
+            @Override
+            protected void updateItem(String item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty ? null : item);
+            }
+        });
+        VBox.setVgrow(chatList, Priority.ALWAYS);
 
         messageField = new TextField();
         messageField.setPromptText("Escribe un mensaje...");
@@ -168,12 +294,12 @@ public class Main2 extends Application {
         Button sendButton = new Button("Enviar");
         sendButton.setOnAction(e -> sendChat()); // Llama a sendChat al click.
 
-        chatBox.getChildren().addAll(chatLabel, chatArea, messageField, sendButton);
+        chatBox.getChildren().addAll(chatLabel, chatList, messageField, sendButton);
 
         // ================= SPLITPANE=================
         // Split para videos y chat: SplitPane con divisor en 75%.
         SplitPane splitPane = new SplitPane();
-        splitPane.getItems().addAll(videoGrid, chatBox);
+        splitPane.getItems().addAll(videoArea, chatBox);
         splitPane.setDividerPositions(0.75);
         splitPane.setResizableWithParent(chatBox, false);
 
@@ -188,6 +314,18 @@ public class Main2 extends Application {
         Button micButton = new Button("Mic ON");
         Button camButton = new Button("Cam ON");
         Button leaveButton = new Button("Salir");
+        Button statsButton = new Button("Stats");
+        statsButton.setOnAction(e -> {
+            statsVisible = !statsVisible;
+            statsOverlay.setVisible(statsVisible);
+        });
+
+        // Paginado de la galería: solo visible cuando hay más de una página.
+        previousPageButton = new Button("◀");
+        nextPageButton = new Button("▶");
+        pageLabel = new Label();
+        previousPageButton.setOnAction(e -> showGalleryPage(galleryPage - 1));
+        nextPageButton.setOnAction(e -> showGalleryPage(galleryPage + 1));
 
         leaveButton.setOnAction(e -> {
             // Envía LEAVE antes de salir.
@@ -201,14 +339,17 @@ public class Main2 extends Application {
         camButton.setOnAction(e -> toggleCamera(camButton)); // Toggle cam.
         micButton.setOnAction(e -> toggleMic(micButton)); // Toggle mic.
 
-        controls.getChildren().addAll(micButton, camButton, leaveButton);
+        controls.getChildren().addAll(micButton, camButton, statsButton, leaveButton,
+                previousPageButton, pageLabel, nextPageButton);
         root.setBottom(controls);
+        updateGridLayout(); // Estado inicial del paginado.
 
         // Escena y stage: Configura ventana con título y CSS.
         Scene scene = new Scene(root, 1200, 700);
-        stage.setTitle("Mini Meet - " + username);
+        stage.setTitle("Mini Meet - " + username + " @ " + room);
         stage.setScene(scene);
         stage.show();
+        watchChatScroll(); // La lista ya tiene skin y barra de scroll.
 
         URL cssURL = getClass().getResource("/style.css");
         if (cssURL != null) {
@@ -217,8 +358,16 @@ public class Main2 extends Application {
 
         // Conexión al cliente: Try-catch para errores de conexión.
         try {
-            client = new MeetingClient("4.tcp.ngrok.io", 11348, this); 
+            // Host, puerto y protocolo configurables via -Dmeeting.host, -Dmeeting.port y -Dmeeting.protocol.
+            client = new MeetingClient(
+                    System.getProperty("meeting.host", "4.tcp.ngrok.io"),
+                    Integer.getInteger("meeting.port", 11348),
+                    this,
+                    Protocol.fromName(System.getProperty("meeting.protocol"), Protocol.OBJECT),
+                    room);
             
+            reportViewport(); // El grid ya tiene tamaño: primer VIEWPORT.
+
             // INICIO AUTOMÁTICO DEL MICRÓFONO
             // Como micOn inicia en true, debemos arrancar la captura aquí.
             startMicrophone();
@@ -247,63 +396,137 @@ public class Main2 extends Application {
     }
 
     // Crea contenedor para video: StackPane que bindea tamaños.
-    private StackPane createVideoContainer(ImageView view) {
+    // Un click sobre el video de otro usuario pausa o reanuda la recepción de su video.
+    private StackPane createVideoContainer(String user, ImageView view) {
 
         StackPane container = new StackPane(view);
 
-        container.setStyle(
-            "-fx-background-color: transparent;"
-        );
+        container.setStyle(containerStyle(user));
 
         view.setPreserveRatio(true);
 
         view.fitWidthProperty().bind(container.widthProperty());
         view.fitHeightProperty().bind(container.heightProperty());
 
+        if (!user.equals(username)) {
+            container.setOnMouseClicked(e -> toggleVideoSubscription(user));
+        }
+
         return container;
     }
 
+    // Estilo del contenedor de video: borde verde mientras el usuario habla.
+    private String containerStyle(String user) {
+        return speakingUsers.contains(user)
+                ? "-fx-background-color: transparent; -fx-border-color: #2ecc71; -fx-border-width: 3;"
+                : "-fx-background-color: transparent;";
+    }
+
     // ================= GRID LAYOUT =================
-    // Actualiza layout del grid: Calcula cols/rows basado en usuarios, limpia y agrega contenedores.
+    // Actualiza layout del grid: muestra solo la página actual de la galería.
+    // Funcionamiento: Incremental. Los mosaicos se crean una vez por usuario (videoContainers); acá solo
+    // se quitan los que dejaron de estar en la página, se agregan los nuevos y se mueven los que cambiaron
+    // de celda. Las constraints se rehacen solo si cambia la cantidad de columnas o filas. Los usuarios
+    // que quedan fuera de la página dejan de recibirse (UNSUBSCRIBE), así tampoco se decodifican.
     private void updateGridLayout() {
 
-        videoGrid.getChildren().clear();
-
-        int total = userVideoMap.size();
-        if (total == 0) return;
-
-        int cols = (int) Math.ceil(Math.sqrt(total));
-        int rows = (int) Math.ceil((double) total / cols);
-
-        videoGrid.getColumnConstraints().clear();
-        videoGrid.getRowConstraints().clear();
+        List<String> users = new ArrayList<>(userVideoMap.keySet());
+        int pages = Math.max(1, (users.size() + galleryPageSize - 1) / galleryPageSize);
+        galleryPage = Math.max(0, Math.min(galleryPage, pages - 1));
+        List<String> visible = users.subList(
+                Math.min(users.size(), galleryPage * galleryPageSize),
+                Math.min(users.size(), (galleryPage + 1) * galleryPageSize));
+
+        int cols = Math.max(1, (int) Math.ceil(Math.sqrt(visible.size())));
+        int rows = Math.max(1, (int) Math.ceil((double) visible.size() / cols));
+        if (videoGrid.getColumnConstraints().size() != cols || videoGrid.getRowConstraints().size() != rows) {
+            videoGrid.getColumnConstraints().clear();
+            videoGrid.getRowConstraints().clear();
+
+            for (int i = 0; i < cols; i++) {
+                ColumnConstraints col = new ColumnConstraints();
+                col.setPercentWidth(100.0 / cols);
+                col.setHgrow(Priority.ALWAYS);
+                videoGrid.getColumnConstraints().add(col);
+            }
 
-        for (int i = 0; i < cols; i++) {
-            ColumnConstraints col = new ColumnConstraints();
-            col.setPercentWidth(100.0 / cols);
-            col.setHgrow(Priority.ALWAYS);
-            videoGrid.getColumnConstraints().add(col);
+            for (int i = 0; i < rows; i++) {
+                RowConstraints row = new RowConstraints();
+                row.setPercentHeight(100.0 / rows);
+                row.setVgrow(Priority.ALWAYS);
+                videoGrid.getRowConstraints().add(row);
+            }
         }
+        gridColumns = cols;
+        gridRows = rows;
 
-        for (int i = 0; i < rows; i++) {
-            RowConstraints row = new RowConstraints();
-            row.setPercentHeight(100.0 / rows);
-            row.setVgrow(Priority.ALWAYS);
-            videoGrid.getRowConstraints().add(row);
+        // Quita los mosaicos que ya no están en la página y ubica los que sí.
+        Set<StackPane> shown = new HashSet<>();
+        for (String user : visible) {
+            shown.add(videoContainers.computeIfAbsent(user, u -> createVideoContainer(u, userVideoMap.get(u))));
         }
+        videoGrid.getChildren().removeIf(node -> !shown.contains(node));
 
-        int index = 0;
-
-        for (ImageView view : userVideoMap.values()) {
-
-            StackPane container = createVideoContainer(view);
-
+        for (int index = 0; index < visible.size(); index++) {
+            StackPane container = videoContainers.get(visible.get(index));
             int col = index % cols;
             int row = index / cols;
+            if (container.getParent() == null) {
+                videoGrid.add(container, col, row);
+            } else if (GridPane.getColumnIndex(container) != col || GridPane.getRowIndex(container) != row) {
+                GridPane.setConstraints(container, col, row);
+            }
+        }
 
-            videoGrid.add(container, col, row);
+        // Recepción de video solo para la página visible.
+        Set<String> visibleUsers = new HashSet<>(visible);
+        for (String user : users) {
+            if (user.equals(username)) continue;
+            boolean hidden = !visibleUsers.contains(user);
+            if (hidden != offScreen.contains(user)) {
+                if (hidden) offScreen.add(user); else offScreen.remove(user);
+                applyVideoSubscription(user);
+            }
+        }
 
-            index++;
+        if (pageLabel != null) {
+            boolean paged = pages > 1;
+            pageLabel.setText("Página " + (galleryPage + 1) + "/" + pages);
+            previousPageButton.setDisable(galleryPage == 0);
+            nextPageButton.setDisable(galleryPage == pages - 1);
+            for (Region control : List.of(previousPageButton, pageLabel, nextPageButton)) {
+                control.setVisible(paged);
+                control.setManaged(paged);
+            }
+        }
+        reportViewport();
+    }
+
+    // Cambia de página de la galería.
+    private void showGalleryPage(int page) {
+        galleryPage = page;
+        updateGridLayout();
+    }
+
+    // Informa al servidor el tamaño de los mosaicos del grid (para la capa de simulcast que nos reenvía).
+    // Funcionamiento: Se llama al rearmar el grid y al redimensionarlo; solo envía VIEWPORT si el tamaño
+    // cambió al menos VIEWPORT_STEP píxeles desde el último informe. Solo en el thread de JavaFX.
+    private void reportViewport() {
+        if (client == null) return;
+        int width = (int) ((videoGrid.getWidth() - videoGrid.getPadding().getLeft() - videoGrid.getPadding().getRight()
+                - videoGrid.getHgap() * (gridColumns - 1)) / gridColumns);
+        int height = (int) ((videoGrid.getHeight() - videoGrid.getPadding().getTop() - videoGrid.getPadding().getBottom()
+                - videoGrid.getVgap() * (gridRows - 1)) / gridRows);
+        if (width <= 0 || height <= 0) return; // Todavía sin layout.
+        if (Math.abs(width - reportedTileWidth) < VIEWPORT_STEP && Math.abs(height - reportedTileHeight) < VIEWPORT_STEP) {
+            return;
+        }
+        try {
+            client.setViewport(width, height);
+            reportedTileWidth = width;
+            reportedTileHeight = height;
+        } catch (IOException e) {
+            System.out.println("Error enviando VIEWPORT: " + e.getMessage());
         }
     }
 
@@ -324,6 +547,38 @@ public class Main2 extends Application {
         } else {
             if (webcam != null) webcam.open();
             button.setText("Cam ON");
+            forceKeyframes(); // Los receptores borraron el frame al recibir CAM_OFF.
+        }
+    }
+
+    // Pausa o reanuda el video de un usuario (click sobre su mosaico).
+    private void toggleVideoSubscription(String user) {
+        if (!pausedVideo.remove(user)) {
+            pausedVideo.add(user);
+        }
+        applyVideoSubscription(user);
+    }
+
+    // Envía UNSUBSCRIBE/SUBSCRIBE si cambió lo que se quiere recibir de un usuario: su video se recibe
+    // solo si está en la página visible y no está pausado. Al dejar de recibirlo se descartan los frames
+    // que ya estaban en camino; al retomarlo el servidor le pide un keyframe al remitente.
+    private void applyVideoSubscription(String user) {
+        if (client == null) return;
+        boolean wanted = !pausedVideo.contains(user) && !offScreen.contains(user);
+        if (wanted != unsubscribed.contains(user)) return; // Ya está en el estado pedido.
+        try {
+            client.setVideoSubscription(user, wanted);
+        } catch (IOException e) {
+            addMessage(">> Error cambiando suscripción de video: " + e.getMessage(), false);
+            return;
+        }
+        if (wanted) {
+            unsubscribed.remove(user);
+        } else {
+            unsubscribed.add(user);
+            videoDecoding.reset(user); // Los frames que ya estaban en camino no se muestran.
+            ImageView view = userVideoMap.get(user);
+            if (view != null) view.setImage(null);
         }
     }
 
@@ -342,41 +597,199 @@ public class Main2 extends Application {
         }
     }
 
+    // ================= CAPTURA DE VIDEO =================
+    /**
+     * Inicia la captura de video en un hilo propio (daemon).
+     * Captura, convierte la vista previa, comprime y envía sin pasar por el thread de JavaFX.
+     */
+    // Funcionamiento: El ritmo lo marca un reloj de frames (-Dmeeting.video.fps, 10 por defecto): si un frame
+    // tarda más que el intervalo, el siguiente sale enseguida sin acumular atraso. La vista previa se entrega
+    // por localPreview (gana el último frame, escrito en una imagen reutilizada: ver sparePreview) y el envío
+    // pasa por un único JpegWriter configurado.
+    // La vista previa va siempre al ritmo configurado; el envío sigue el nivel del VideoRateController
+    // (fps, resolución y calidad), que puede ser más bajo.
+    private void startVideoCapture() {
+        Thread capture = new Thread(() -> {
+            long interval = 1_000_000_000L / Math.max(1, Integer.getInteger("meeting.video.fps", 10));
+            long next = System.nanoTime();
+            long lastSent = 0;
+            VideoRateController.Level applied = null;
+            while (true) {
+                try {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    next = Math.max(next + interval, System.nanoTime());
+
+                    if (webcam == null || !cameraOn || !webcam.isOpen()) continue;
+                    BufferedImage bufferedImage = webcam.getImage();
+                    long capturedAt = client != null ? client.captureTime() : 0;
+                    if (bufferedImage == null) {
+                        System.out.println("Imagen null de webcam"); // Logging para depuración.
+                        continue;
+                    }
+                    WritableImage spare = sparePreview.getAndSet(null);
+                    if (spare != null && (spare.getWidth() != bufferedImage.getWidth()
+                            || spare.getHeight() != bufferedImage.getHeight())) {
+                        spare = null; // Cambió el tamaño de la cámara: toFXImage asigna una nueva.
+                    }
+                    WritableImage dropped = localPreview.getAndSet(SwingFXUtils.toFXImage(bufferedImage, spare));
+                    if (dropped != null) sparePreview.compareAndSet(null, dropped); // Nunca llegó a mostrarse.
+
+                    VideoRateController.Level level = rateController.current();
+                    long now = System.nanoTime();
+                    // Margen de medio intervalo de captura para que el reloj no redondee hacia abajo los fps.
+                    if (now - lastSent < 1_000_000_000L / level.fps - interval / 2) continue;
+                    lastSent = now;
+                    if (level != applied) {
+                        jpegWriter.setQuality(level.quality);
+                        applied = level;
+                    }
+                    sendVideoFrame(bufferedImage, level, capturedAt); // Envía cada capa al servidor.
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    System.out.println("Error en captura de video: " + e.getMessage());
+                }
+            }
+        }, "video-capture");
+        capture.setDaemon(true);
+        capture.start();
+    }
+
+    // Escala el frame al tamaño de una capa (bilineal) sobre el BufferedImage reutilizado de esa capa.
+    // Si ya tiene ese tamaño se devuelve tal cual. Solo desde el hilo de captura.
+    private BufferedImage scale(BufferedImage image, int layer, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height) return image;
+        BufferedImage scaled = scaledFrames[layer];
+        if (scaled == null || scaled.getWidth() != width || scaled.getHeight() != height) {
+            scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            scaledFrames[layer] = scaled;
+        }
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    // Reporte de red del cliente (una vez por segundo, al llegar el PONG): RTT, backlog de la sala en el
+    // servidor, bytes en la cola de salida propia y descartes desde el reporte anterior.
+    @Override
+    public void updateNetworkStats(long rttMs, long serverBacklogBytes, long queueBytes, long queueDrops) {
+        if (rateController.update(rttMs, serverBacklogBytes, queueBytes, queueDrops, System.currentTimeMillis())) {
+            System.out.println("Video saliente: " + rateController.current() + " (RTT " + rttMs
+                    + " ms, backlog " + serverBacklogBytes + " B, cola " + queueBytes + " B)");
+        }
+    }
+
+    // Calidad de la media recibida (una vez por segundo): si el panel está visible, arma su texto en este
+    // hilo y lo publica en el próximo pulso.
+    @Override
+    public void updateMediaStats(long clockOffsetMicros, long clockRttMicros, List<MediaStats> streams) {
+        if (!statsVisible) return;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Reloj: offset %+.1f ms (RTT %.1f ms)", clockOffsetMicros / 1000.0, clockRttMicros / 1000.0));
+        if (streams.isEmpty()) text.append("\nSin media recibida");
+        for (MediaStats stats : streams) {
+            String stream = stats.getSender() + " " + stats.getType() + ("VIDEO".equals(stats.getType()) ? " c" + stats.getLayer() : "");
+            String latency = stats.hasLatency()
+                    ? String.format("%d/%d ms", stats.getLatencyP50Micros() / 1000, stats.getLatencyP95Micros() / 1000)
+                    : "--";
+            text.append(String.format("\n%-22s lat %-11s pérdida %5.1f%%  desorden %d  (%d/s)", stream, latency,
+                    stats.getLossRatio() * 100, stats.getReordered(), stats.getReceived()));
+        }
+        String report = text.toString();
+        runOnPulse(() -> statsOverlay.setText(report));
+    }
+
     // ================= NETWORK VIDEO =================
     /**
      * Envía frame de video al servidor.
      * Convierte BufferedImage a arreglo de bytes en formato JPG.
      */
-    // Funcionamiento: Usa ByteArrayOutputStream e ImageIO para convertir imagen a bytes.
-    private void sendVideoFrame(BufferedImage image) {
+    // Funcionamiento: Usa el JpegWriter del hilo de captura. Cada capa de simulcast se escala desde el frame
+    // de la cámara (la 0 al tamaño del nivel de tasa, cada una siguiente a la mitad) y se envía como un VIDEO
+    // con su capa; el servidor elige cuál reenvía a cada receptor. En modo delta (por defecto) solo viajan
+    // los bloques que cambiaron; si no cambió nada no se envía. Se llama desde el hilo de captura.
+    // Todas las capas llevan la hora de captura del frame de la cámara (reloj de la reunión).
+    private void sendVideoFrame(BufferedImage image, VideoRateController.Level level, long capturedAt) {
         if (client == null) return;
 
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "jpg", baos);
-            client.sendMessage(new Message("VIDEO", username, baos.toByteArray()));
-        } catch (Exception ignored) {}
+        // De la capa más chica a la completa: cuando el servidor ve una capa por primera vez, las más chicas
+        // ya están registradas y ningún receptor recibe de paso una capa que no le corresponde.
+        for (int layer = videoLayers - 1; layer >= 0; layer--) {
+            try {
+                BufferedImage scaled = scale(image, layer,
+                        VideoLayers.scale(level.width, layer), VideoLayers.scale(level.height, layer));
+                byte[] payload;
+                if (videoEncoders != null) {
+                    payload = videoEncoders[layer].encode(scaled);
+                    if (payload == null) continue;
+                } else {
+                    payload = jpegWriter.encode(scaled);
+                }
+                client.sendMessage(new Message("VIDEO", username, payload).withLayer(layer).withCaptureTime(capturedAt));
+            } catch (Exception ignored) {}
+        }
     }
 
-    // Recibe frame: Actualiza ImageView en Platform.runLater, crea si no existe.
-    public void receiveVideoFrame(String sender, byte[] imageBytes) {
+    private DeltaVideoEncoder[] createVideoEncoders() {
+        if ("jpeg".equalsIgnoreCase(System.getProperty("meeting.video.mode"))) return null;
+        DeltaVideoEncoder[] encoders = new DeltaVideoEncoder[videoLayers];
+        for (int layer = 0; layer < encoders.length; layer++) {
+            encoders[layer] = new DeltaVideoEncoder(jpegWriter);
+        }
+        return encoders;
+    }
 
-        Platform.runLater(() -> {
+    // Un receptor pidió un keyframe de una capa (se unió, retomó el video, cambió de capa o perdió frames).
+    @Override
+    public void requestKeyframe(int layer) {
+        if (videoEncoders != null && layer >= 0 && layer < videoEncoders.length) {
+            videoEncoders[layer].forceKeyframe();
+        }
+    }
 
-            ImageView view = userVideoMap.get(sender);
+    // El próximo frame de todas las capas será un keyframe.
+    private void forceKeyframes() {
+        for (int layer = 0; layer < videoLayers; layer++) {
+            requestKeyframe(layer);
+        }
+    }
 
-            if (view == null) {
-                view = createVideoView();
-                userVideoMap.put(sender, view);
-                updateGridLayout();
-            }
+    // Recibe frame: lo pasa al pool de decodificación. Lo llama el hilo de red (no el de JavaFX).
+    // El servidor puede cambiar la capa de simulcast que nos reenvía: el decodificador la sigue y los
+    // pedidos de keyframe van a esa capa.
+    @Override
+    public void receiveVideoFrame(String sender, int layer, byte[] imageBytes) {
+        videoDecoding.offer(sender, layer, imageBytes);
+    }
 
-            try {
-                view.setImage(new Image(new ByteArrayInputStream(imageBytes)));
-            } catch (Exception e) {
-                addMessage(">> Error mostrando frame de " + sender, false);
-            }
-        });
+    // Muestra el frame publicado de un remitente; crea su vista si todavía no existe. Thread de JavaFX.
+    private void showVideoFrame(String sender, Image frame) {
+        if (unsubscribed.contains(sender)) return;
+        ImageView view = userVideoMap.get(sender);
+        if (view == null) {
+            view = createVideoView();
+            userVideoMap.put(sender, view);
+            gridDirty = true;
+        }
+        if (view.getImage() != frame) {
+            view.setImage(frame); // El WritableImage se reutiliza: solo se asigna al cambiar de tamaño.
+        }
+    }
+
+    // El decodificador de un remitente perdió la secuencia: se le pide un keyframe de esa capa.
+    private void requestRemoteKeyframe(String sender, int layer) {
+        if (client == null) return;
+        try {
+            client.requestKeyframe(sender, layer);
+        } catch (IOException e) {
+            System.out.println("Error pidiendo keyframe a " + sender + ": " + e.getMessage());
+        }
     }
 
     // ================= AUDIO =================
@@ -384,7 +797,9 @@ public class Main2 extends Application {
      * Inicia captura de micrófono en hilo independiente.
      * Envía buffers de audio en tiempo real.
      */
-    // Funcionamiento: Abre TargetDataLine, lee buffers de 4096 bytes, envía clones exactos.
+    // Funcionamiento: Abre TargetDataLine, lee buffers de 1024 bytes y envía los que el VAD marca como voz.
+    // En silencio no se envía audio: solo un marcador SILENCE al terminar de hablar y luego cada
+    // SILENCE_MARKER_MS, para que los receptores cierren la ráfaga en vez de tomar la pausa como pérdida.
     private void startMicrophone() {
         new Thread(() -> {
             try {
@@ -397,18 +812,36 @@ public class Main2 extends Application {
                 microphone.start();
 
                 byte[] buffer = new byte[1024];
+                VoiceActivityDetector vad = new VoiceActivityDetector(audioFormat);
+                boolean vadEnabled = !"false".equalsIgnoreCase(System.getProperty("meeting.audio.vad"));
+                boolean wasSpeaking = false;
+                long lastMarker = 0;
+                long bytesPerSecond = (long) (audioFormat.getFrameRate() * audioFormat.getFrameSize());
 
                 while (micOn && microphone != null) {
                     int bytesRead = microphone.read(buffer, 0, buffer.length);
                     if (bytesRead > 0 && client != null) {
+                        // El primer sample del buffer se capturó lo que dura el buffer antes de que read volviera.
+                        long capturedAt = client.captureTime();
+                        if (capturedAt != 0) capturedAt -= bytesRead * 1_000_000L / bytesPerSecond;
+                        boolean speaking = !vadEnabled || vad.process(buffer, bytesRead);
+                        if (speaking != wasSpeaking) {
+                            setSpeaking(username, speaking);
+                        }
                         try{
-                            byte[] dataToSend = new byte[bytesRead];
-                            System.arraycopy(buffer, 0, dataToSend, 0, bytesRead);
-                            client.sendMessage(new Message("AUDIO", username, dataToSend));
+                            if (speaking) {
+                                byte[] dataToSend = new byte[bytesRead];
+                                System.arraycopy(buffer, 0, dataToSend, 0, bytesRead);
+                                client.sendMessage(new Message("AUDIO", username, dataToSend).withCaptureTime(capturedAt));
+                            } else if (wasSpeaking || System.currentTimeMillis() - lastMarker >= SILENCE_MARKER_MS) {
+                                client.sendMessage(new Message("SILENCE", username, (String) null));
+                                lastMarker = System.currentTimeMillis();
+                            }
                         }catch(IOException ignored){}
-                        
+                        wasSpeaking = speaking;
                     }
                 }
+                setSpeaking(username, false);
 
             } catch (LineUnavailableException e) {
                 addMessage(">> Mic no disponible: Verifica permisos", false);
@@ -419,35 +852,84 @@ public class Main2 extends Application {
     }
 
     // Getter para username.
+    @Override
     public String getUsername() {
         return username;
     }
 
-    // Reproduce audio: Agrega a cola y inicia playback si no está corriendo.
-    public void playAudio(byte[] audioData) {
+    // Reproduce audio: Lo agrega al flujo de su remitente en el mezclador e inicia playback si no está corriendo.
+    // Se puede llamar desde cualquier hilo; la hora de llegada alimenta la estimación de jitter.
+    @Override
+    public void playAudio(String sender, byte[] audioData) {
+
+        mixer.offer(sender, audioData, System.nanoTime());
+        if (!speakingUsers.contains(sender)) {
+            setSpeaking(sender, true);
+        }
+        synchronized (audioSignal) {
+            if (!audioPlaying) {
+                startAudioPlayback();
+            }
+            audioSignal.notify();
+        }
+    }
+
+    // Marcador SILENCE de un remitente: dejó de hablar. Se puede llamar desde cualquier hilo.
+    @Override
+    public void handleSilence(String sender) {
+        mixer.markSilence(sender);
+        if (speakingUsers.contains(sender)) {
+            setSpeaking(sender, false);
+        }
+    }
+
+    // Indica si un participante está hablando (según su VAD: audio recibido y sin SILENCE posterior).
+    public boolean isSpeaking(String user) {
+        return speakingUsers.contains(user);
+    }
 
-        audioQueue.add(audioData);
-        if (!audioPlaying) {
-            startAudioPlayback();
+    // Actualiza el estado de habla de un participante y el borde de su video.
+    private void setSpeaking(String user, boolean speaking) {
+        if (speaking) {
+            speakingUsers.add(user);
+        } else {
+            speakingUsers.remove(user);
         }
+        runOnPulse(() -> {
+            ImageView view = userVideoMap.get(user);
+            if (view != null && view.getParent() != null) {
+                view.getParent().setStyle(containerStyle(user));
+            }
+        });
     }
 
-    // Inicia playback: Abre SourceDataLine, escribe de la cola en loop.
+    // Retardo actual del buffer de jitter de un remitente, en ms (-1 si no hay audio suyo).
+    // Sumado al buffer de la línea de salida da el tramo de recepción de la latencia boca-oído.
+    public int getAudioDelayMillis(String sender) {
+        return mixer.getDelayMillis(sender);
+    }
+
+    // Inicia playback: Abre SourceDataLine con un buffer chico y escribe un bloque mezclado de 10 ms por tick.
+    // Funcionamiento: write bloquea mientras la línea está llena, eso marca el ritmo fijo; si ningún
+    // remitente tiene audio listo, el hilo espera el aviso de playAudio.
     private void startAudioPlayback() {
         audioPlaying = true;
         audioPlaybackThread = new Thread(() -> {
             try {
+                byte[] chunk = new byte[playoutChunkBytes];
+
                 DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
                 speakers = (SourceDataLine) AudioSystem.getLine(info);
-                speakers.open(audioFormat);
+                speakers.open(audioFormat, playoutChunkBytes * LINE_BUFFER_CHUNKS);
                 speakers.start();
 
                 while (audioPlaying) {
-                    byte[] data = audioQueue.poll();
-                    if (data != null) {
-                        speakers.write(data, 0, data.length); // Escribe buffer.
+                    if (mixer.mix(chunk)) {
+                        speakers.write(chunk, 0, chunk.length); // Escribe el bloque mezclado.
                     } else {
-                        Thread.sleep(10); // Pequeño sleep para no busy-wait.
+                        synchronized (audioSignal) {
+                            audioSignal.wait(PLAYOUT_CHUNK_MS); // Nada listo: espera a que llegue audio.
+                        }
                     }
                 }
 
@@ -463,10 +945,12 @@ public class Main2 extends Application {
         audioPlaybackThread.start();
     }
 
-    // Maneja CAM_OFF: Limpia imagen de la vista.
+    // Maneja CAM_OFF: Limpia imagen de la vista. Se puede llamar desde cualquier hilo.
+    @Override
     public void handleCameraOff(String user) {
 
-        Platform.runLater(() -> {
+        videoDecoding.reset(user); // Descarta frames pendientes; al volver, su primer frame será un keyframe.
+        runOnPulse(() -> {
             ImageView view = userVideoMap.get(user);
             if (view != null) {
                 view.setImage(null);
@@ -485,9 +969,151 @@ public class Main2 extends Application {
         } catch (Exception ignored) {}
     }
 
-    // Agrega mensaje al chat.
+    // Agrega mensaje al chat. Se puede llamar desde cualquier hilo: la línea se muestra en el próximo pulso.
+    @Override
     public void addMessage(String message, boolean own) {
-        chatArea.appendText(message + "\n");
+        synchronized (pendingChat) {
+            pendingChat.add(message);
+        }
+    }
+
+    // Encola un cambio de UI para el próximo pulso de JavaFX. Se puede llamar desde cualquier hilo.
+    private void runOnPulse(Runnable update) {
+        uiUpdates.add(update);
+    }
+
+    // Aplica los cambios de UI encolados y el chat pendiente. Solo en el thread de JavaFX (timer).
+    // Funcionamiento: Se procesan solo los cambios que había al empezar, así un productor muy rápido no
+    // puede retener el pulso indefinidamente; lo que llegue durante el lote queda para el pulso siguiente.
+    private void applyUiUpdates() {
+        for (int pending = uiUpdates.size(); pending > 0; pending--) {
+            Runnable update = uiUpdates.poll();
+            if (update == null) break;
+            update.run();
+        }
+        List<String> chat;
+        synchronized (pendingChat) {
+            if (pendingChat.isEmpty()) return;
+            chat = new ArrayList<>(pendingChat);
+            pendingChat.clear();
+        }
+        appendChat(chat);
+    }
+
+    // ================= CHAT =================
+    // Agrega un lote de líneas al historial y, si la ventana está siguiendo el final, a la lista.
+    // Funcionamiento: La lista se modifica una vez por lote (addAll y un solo remove de las más viejas).
+    // Si el usuario está leyendo historial más arriba, la ventana no se mueve: las líneas nuevas quedan en
+    // el historial y aparecen al bajar. Solo se baja el scroll si ya estaba al final.
+    private void appendChat(List<String> lines) {
+        boolean following = chatWindowStart + chatItems.size() == chatHistorySize();
+        if (chatHistory != null) {
+            try {
+                chatHistory.append(lines);
+            } catch (IOException e) {
+                System.out.println("Error guardando historial de chat: " + e.getMessage());
+            }
+        }
+        if (!following) return;
+
+        boolean atBottom = isChatAtBottom();
+        chatLoading = true;
+        chatItems.addAll(lines);
+        int excess = chatItems.size() - CHAT_WINDOW;
+        if (excess > 0) {
+            chatItems.remove(0, excess);
+            chatWindowStart += excess;
+        }
+        if (atBottom) chatList.scrollTo(chatItems.size() - 1);
+        chatLoading = false;
+    }
+
+    // Líneas totales del chat (sin historial en disco, solo existe lo que hay en la ventana).
+    private int chatHistorySize() {
+        return chatHistory != null ? chatHistory.size() : chatWindowStart + chatItems.size();
+    }
+
+    private boolean isChatAtBottom() {
+        return chatScrollBar == null || !chatScrollBar.isVisible()
+                || chatScrollBar.getValue() >= chatScrollBar.getMax() - 0.001;
+    }
+
+    // Busca la barra de scroll vertical de la lista y carga páginas del historial al llegar a un borde.
+    private void watchChatScroll() {
+        for (Node node : chatList.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                chatScrollBar = (ScrollBar) node;
+            }
+        }
+        if (chatScrollBar == null) return; // Sin barra: la ventana sigue siempre el final.
+        chatScrollBar.valueProperty().addListener((obs, old, value) -> {
+            if (chatLoading || chatHistory == null) return;
+            if (value.doubleValue() <= chatScrollBar.getMin() && chatWindowStart > 0) {
+                loadOlderChat();
+            } else if (value.doubleValue() >= chatScrollBar.getMax()
+                    && chatWindowStart + chatItems.size() < chatHistory.size()) {
+                loadNewerChat();
+            }
+        });
+    }
+
+    // Agrega arriba la página anterior del historial; si la ventana se pasa del límite, descarta las de abajo.
+    private void loadOlderChat() {
+        int from = Math.max(0, chatWindowStart - CHAT_PAGE);
+        List<String> older;
+        try {
+            older = chatHistory.read(from, chatWindowStart);
+        } catch (IOException e) {
+            System.out.println("Error leyendo historial de chat: " + e.getMessage());
+            return;
+        }
+        chatLoading = true;
+        chatItems.addAll(0, older);
+        chatWindowStart = from;
+        int excess = chatItems.size() - CHAT_WINDOW;
+        if (excess > 0) chatItems.remove(chatItems.size() - excess, chatItems.size());
+        chatList.scrollTo(older.size()); // La línea que estaba arriba queda arriba.
+        chatLoading = false;
+    }
+
+    // Agrega abajo la página siguiente del historial; si la ventana se pasa del límite, descarta las de arriba.
+    private void loadNewerChat() {
+        int end = chatWindowStart + chatItems.size();
+        List<String> newer;
+        try {
+            newer = chatHistory.read(end, end + CHAT_PAGE);
+        } catch (IOException e) {
+            System.out.println("Error leyendo historial de chat: " + e.getMessage());
+            return;
+        }
+        chatLoading = true;
+        chatItems.addAll(newer);
+        int excess = Math.max(0, chatItems.size() - CHAT_WINDOW);
+        if (excess > 0) {
+            chatItems.remove(0, excess);
+            chatWindowStart += excess;
+        }
+        chatList.scrollTo(Math.max(0, end - chatWindowStart - 1)); // Sigue desde la última línea que se veía.
+        chatLoading = false;
+    }
+
+    // Vuelve la ventana al final del historial (al enviar un mensaje, para ver su eco).
+    private void showChatTail() {
+        if (chatHistory == null || chatWindowStart + chatItems.size() == chatHistory.size()) {
+            chatList.scrollTo(Math.max(0, chatItems.size() - 1));
+            return;
+        }
+        try {
+            int size = chatHistory.size();
+            chatLoading = true;
+            chatWindowStart = Math.max(0, size - CHAT_WINDOW);
+            chatItems.setAll(chatHistory.read(chatWindowStart, size));
+            chatList.scrollTo(Math.max(0, chatItems.size() - 1));
+        } catch (IOException e) {
+            System.out.println("Error leyendo historial de chat: " + e.getMessage());
+        } finally {
+            chatLoading = false;
+        }
     }
 
     // Envía chat: Crea mensaje CHAT y envía via client.
@@ -497,6 +1123,7 @@ public class Main2 extends Application {
             try {
                 client.sendMessage(new Message("CHAT", username, text));
                 messageField.clear();
+                showChatTail();
             } catch (IOException e) {
                 addMessage(">> Error enviando mensaje", false);
                 e.printStackTrace();
@@ -504,23 +1131,32 @@ public class Main2 extends Application {
         }
     }
 
-    // Agrega placeholder: Crea vista vacía para nuevo usuario.
+    // Agrega placeholder: Crea vista vacía para nuevo usuario (en el próximo pulso).
+    @Override
     public void addUserPlaceholder(String sender) {
-        Platform.runLater(() -> {
+        runOnPulse(() -> {
             if (!userVideoMap.containsKey(sender)) {
                 ImageView view = createVideoView();
                 view.setImage(null); // Fondo negro inicial.
                 userVideoMap.put(sender, view);
-                updateGridLayout();
+                gridDirty = true;
             }
         });
     }
 
-    // Remueve usuario: Quita del mapa y actualiza grid.
+    // Remueve usuario: Su media se descarta enseguida; la vista se quita del grid en el próximo pulso.
+    @Override
     public void removeUser(String sender) {
-        Platform.runLater(() -> {
+        videoDecoding.remove(sender);
+        mixer.remove(sender);
+        speakingUsers.remove(sender);
+        runOnPulse(() -> {
             userVideoMap.remove(sender);
-            updateGridLayout();
+            videoContainers.remove(sender);
+            pausedVideo.remove(sender);
+            offScreen.remove(sender);
+            unsubscribed.remove(sender);
+            gridDirty = true;
         });
     }
 
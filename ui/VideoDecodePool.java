@@ -0,0 +1,187 @@
+package ui;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Decodificación del video recibido fuera del thread de JavaFX.
+ *
+ * Funcionamiento general: Cada remitente tiene un flujo con sus frames pendientes y su DeltaVideoDecoder.
+ * Un pool fijo de hilos (-Dmeeting.video.decodeThreads) decodifica; cada flujo lo atiende como mucho un
+ * hilo a la vez, así los deltas se aplican en orden. Un keyframe (o un JPEG completo) reemplaza todo lo
+ * pendiente sin decodificar: gana el frame más nuevo. Los deltas no se pueden saltear, así que si se
+ * acumulan más de MAX_PENDING (el pool no da abasto) se descartan y se espera el próximo keyframe.
+ * Los píxeles decodificados quedan en un buffer doble por remitente y en cada pulso de JavaFX publish
+ * copia solo el último frame listo a un WritableImage que se reutiliza mientras no cambie el tamaño.
+ */
+
+class VideoDecodePool {
+
+    // Deltas pendientes de un remitente a partir de los cuales se descartan y se espera un keyframe.
+    private static final int MAX_PENDING = 8;
+
+    // Frame recibido y todavía sin decodificar.
+    private static final class Pending {
+        final int layer;
+        final byte[] data;
+
+        Pending(int layer, byte[] data) {
+            this.layer = layer;
+            this.data = data;
+        }
+    }
+
+    // Estado de un remitente. Los campos se protegen con el monitor del flujo, salvo decoder (solo lo usa
+    // el hilo que está drenando), back (idem) e image (solo el thread de JavaFX).
+    private static final class Stream {
+        final DeltaVideoDecoder decoder = new DeltaVideoDecoder();
+        final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        boolean scheduled;      // Hay un hilo del pool drenando este flujo.
+        boolean resetRequested; // Cámara apagada: el decodificador debe olvidar su frame base.
+        int generation;         // Cambia con cada reset; un frame decodificado antes no se publica.
+        int[] back = new int[0];  // Píxeles que está escribiendo el hilo decodificador.
+        int[] front = new int[0]; // Último frame listo para publicar.
+        int width;
+        int height;
+        boolean ready;
+        WritableImage image;
+    }
+
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    // Pedido de keyframe (remitente, capa) cuando el decodificador perdió la secuencia.
+    private final ObjIntConsumer<String> keyframeRequester;
+
+    VideoDecodePool(int threads, ObjIntConsumer<String> keyframeRequester) {
+        this.keyframeRequester = keyframeRequester;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "video-decode");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Crea el pool con -Dmeeting.video.decodeThreads hilos (por defecto la mitad de los núcleos, entre 1 y 4).
+    static VideoDecodePool fromSystemProperties(ObjIntConsumer<String> keyframeRequester) {
+        int defaultThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        return new VideoDecodePool(
+                Math.max(1, Integer.getInteger("meeting.video.decodeThreads", defaultThreads)), keyframeRequester);
+    }
+
+    // Agrega un frame recibido de un remitente. Thread-safe; no bloquea.
+    void offer(String sender, int layer, byte[] data) {
+        Stream stream = streams.computeIfAbsent(sender, s -> new Stream());
+        synchronized (stream) {
+            if (isComplete(data)) {
+                stream.pending.clear(); // Lo pendiente queda reemplazado por este frame completo.
+            } else if (stream.pending.size() >= MAX_PENDING) {
+                // Se descartan los deltas. Si el primero pendiente es un frame completo se conserva (los demás
+                // se le aplicaban encima); el delta que llega igual tendrá un hueco y se pedirá un keyframe.
+                Pending head = stream.pending.peek();
+                stream.pending.clear();
+                if (isComplete(head.data)) {
+                    stream.pending.add(head);
+                } else {
+                    stream.resetRequested = true;
+                }
+            }
+            stream.pending.add(new Pending(layer, data));
+            if (stream.scheduled) return;
+            stream.scheduled = true;
+        }
+        workers.execute(() -> drain(sender, stream));
+    }
+
+    // El remitente apagó la cámara: se descarta lo pendiente y lo ya decodificado que no se publicó.
+    void reset(String sender) {
+        Stream stream = streams.get(sender);
+        if (stream == null) return;
+        synchronized (stream) {
+            stream.pending.clear();
+            stream.resetRequested = true;
+            stream.generation++;
+            stream.ready = false;
+        }
+    }
+
+    void remove(String sender) {
+        streams.remove(sender);
+    }
+
+    // Publica el último frame listo de cada remitente en su WritableImage. Solo en el thread de JavaFX.
+    // show recibe la imagen de cada remitente que tuvo un frame nuevo (siempre la misma mientras no cambie el tamaño).
+    void publish(BiConsumer<String, WritableImage> show) {
+        for (Map.Entry<String, Stream> entry : streams.entrySet()) {
+            Stream stream = entry.getValue();
+            synchronized (stream) {
+                if (!stream.ready) continue;
+                stream.ready = false;
+                if (stream.image == null || (int) stream.image.getWidth() != stream.width
+                        || (int) stream.image.getHeight() != stream.height) {
+                    stream.image = new WritableImage(stream.width, stream.height);
+                }
+                stream.image.getPixelWriter().setPixels(0, 0, stream.width, stream.height,
+                        PixelFormat.getIntArgbInstance(), stream.front, 0, stream.width);
+            }
+            show.accept(entry.getKey(), stream.image);
+        }
+    }
+
+    // Decodifica los frames pendientes de un remitente, en orden, hasta vaciar la cola.
+    private void drain(String sender, Stream stream) {
+        while (true) {
+            Pending next;
+            int generation;
+            synchronized (stream) {
+                next = stream.pending.poll();
+                if (next == null) {
+                    stream.scheduled = false;
+                    return;
+                }
+                if (stream.resetRequested) {
+                    stream.resetRequested = false;
+                    stream.decoder.reset();
+                }
+                generation = stream.generation;
+            }
+
+            try {
+                stream.decoder.setLayer(next.layer);
+                BufferedImage frame = stream.decoder.decode(next.data);
+                if (stream.decoder.shouldRequestKeyframe()) {
+                    keyframeRequester.accept(sender, next.layer);
+                }
+                if (frame == null) continue;
+
+                int width = frame.getWidth();
+                int height = frame.getHeight();
+                if (stream.back.length != width * height) stream.back = new int[width * height];
+                frame.getRGB(0, 0, width, height, stream.back, 0, width); // ARGB opaco.
+                synchronized (stream) {
+                    if (generation != stream.generation) continue;
+                    int[] ready = stream.back;
+                    stream.back = stream.front;
+                    stream.front = ready;
+                    stream.width = width;
+                    stream.height = height;
+                    stream.ready = true;
+                }
+            } catch (Exception e) {
+                System.out.println("Error decodificando frame de " + sender + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Un keyframe o un JPEG suelto no depende de los frames anteriores.
+    private static boolean isComplete(byte[] data) {
+        return data.length == 0 || data[0] != DeltaVideoEncoder.DELTA;
+    }
+}
@@ -0,0 +1,105 @@
+package ui;
+
+/**
+ * Control de tasa del video saliente según la congestión medida.
+ *
+ * Funcionamiento general: Hay una escalera de niveles (resolución, fps y calidad JPEG), del mejor al
+ * más liviano. En cada reporte de red (una vez por segundo, al llegar el PONG) se miran tres señales:
+ * la cola de salida propia (bytes pendientes y descartes), el backlog que el servidor reporta para los
+ * receptores de la sala, y el RTT contra el mínimo observado. Con congestión se baja enseguida (dos
+ * niveles si es grave); sin congestión se sube de a un nivel después de un tiempo de calma que se
+ * duplica cada vez que una subida termina en congestión (hasta MAX_PROBE_MS), así no oscila.
+ * Thread-safe: update lo llama el hilo de red y current el hilo de captura.
+ */
+
+class VideoRateController {
+
+    // Nivel de calidad del video saliente.
+    static final class Level {
+        final int width;
+        final int height;
+        final int fps;
+        final float quality;
+
+        Level(int width, int height, int fps, float quality) {
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+            this.quality = quality;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "@" + fps + " q" + quality;
+        }
+    }
+
+    // Del nivel más alto (el de siempre: 320x240 a 10 fps) al más liviano.
+    private static final Level[] LEVELS = {
+            new Level(320, 240, 10, 0.7f),
+            new Level(320, 240, 10, 0.5f),
+            new Level(320, 240, 7, 0.4f),
+            new Level(240, 180, 7, 0.4f),
+            new Level(160, 120, 5, 0.35f),
+            new Level(160, 120, 3, 0.3f)
+    };
+
+    // Umbrales de congestión.
+    private static final long QUEUE_CONGESTED_BYTES = 64 * 1024;
+    private static final long BACKLOG_CONGESTED_BYTES = 256 * 1024;
+    private static final long BACKLOG_SEVERE_BYTES = 1024 * 1024;
+    private static final long RTT_MARGIN_MS = 100;
+    private static final long RTT_SEVERE_MARGIN_MS = 500;
+    // Calma necesaria antes de probar un nivel más alto.
+    private static final long MIN_PROBE_MS = 5_000;
+    private static final long MAX_PROBE_MS = 60_000;
+    // Después de bajar, se espera este tiempo antes de volver a bajar (la cola tarda en vaciarse).
+    private static final long HOLD_AFTER_DECREASE_MS = 1_000;
+
+    private volatile int level = 0;
+    private long baseRttMs = Long.MAX_VALUE;
+    private long lastChange = 0;
+    private long probeDelayMs = MIN_PROBE_MS;
+    private boolean probing = false; // El último cambio fue una subida que todavía no se confirmó.
+
+    Level current() {
+        return LEVELS[level];
+    }
+
+    // Procesa un reporte de red. Devuelve true si cambió el nivel.
+    synchronized boolean update(long rttMs, long serverBacklogBytes, long queueBytes, long queueDrops, long now) {
+        // El RTT base es el mínimo visto; sube de a poco para seguir cambios de ruta.
+        if (rttMs >= 0) {
+            baseRttMs = rttMs < baseRttMs ? rttMs : baseRttMs + (rttMs - baseRttMs) / 64;
+        }
+        boolean rttHigh = rttMs >= 0 && rttMs > 2 * baseRttMs + RTT_MARGIN_MS;
+        boolean rttSevere = rttMs >= 0 && rttMs > 2 * baseRttMs + RTT_SEVERE_MARGIN_MS;
+
+        boolean severe = queueDrops > 0 || serverBacklogBytes > BACKLOG_SEVERE_BYTES || rttSevere;
+        boolean congested = severe || queueBytes > QUEUE_CONGESTED_BYTES
+                || serverBacklogBytes > BACKLOG_CONGESTED_BYTES || rttHigh;
+
+        int previous = level;
+        if (congested) {
+            if (probing) {
+                probeDelayMs = Math.min(MAX_PROBE_MS, probeDelayMs * 2); // La subida falló: esperar más la próxima.
+                probing = false;
+            }
+            if (now - lastChange >= HOLD_AFTER_DECREASE_MS || previous == 0) {
+                level = Math.min(LEVELS.length - 1, level + (severe ? 2 : 1));
+            }
+        } else if (now - lastChange >= probeDelayMs) {
+            if (probing) {
+                probeDelayMs = Math.max(MIN_PROBE_MS, probeDelayMs / 2); // La subida anterior aguantó.
+            }
+            probing = level > 0;
+            level = Math.max(0, level - 1);
+        }
+
+        if (level != previous) {
+            lastChange = now;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+package ui;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Detector de actividad de voz (VAD) para la captura del micrófono.
+ *
+ * Funcionamiento general: Por cada bloque capturado calcula la energía (dBFS) y la tasa de cruces
+ * por cero. Hay voz si la energía supera el piso de ruido por ENERGY_MARGIN_DB, o si la supera por
+ * un margen menor con muchos cruces por cero (consonantes como "s" o "f", de poca energía). El piso
+ * de ruido arranca en la energía del primer bloque y se adapta: baja enseguida a bloques más
+ * silenciosos y sube despacio (mucho más despacio durante la voz, para que un ruido de fondo que
+ * aumenta deje de contar como voz sin que una frase larga se confunda con ruido).
+ * Después de la última voz se sigue enviando durante HANGOVER_MS para no cortar finales de palabra.
+ */
+
+class VoiceActivityDetector {
+
+    // Margen sobre el piso de ruido para considerar voz, en dB.
+    private static final double ENERGY_MARGIN_DB = 9;
+    // Margen menor para sonidos sordos, si además la tasa de cruces por cero es alta.
+    private static final double FRICATIVE_MARGIN_DB = 4;
+    private static final double FRICATIVE_ZCR = 0.25;
+    // Tiempo que se sigue enviando después de la última voz.
+    private static final double HANGOVER_MS = 300;
+    // Límites del piso de ruido y velocidad con que sube en silencio.
+    private static final double MIN_FLOOR_DB = -90;
+    private static final double FLOOR_RISE = 0.05;
+    private static final double FLOOR_RISE_IN_VOICE = 0.002;
+
+    private final boolean bigEndian;
+    private final double bytesPerMs;
+    private double noiseFloorDb = Double.NaN; // Sin medir hasta el primer bloque.
+    private double hangoverLeftMs = 0;
+    private boolean speaking = false;
+
+    VoiceActivityDetector(AudioFormat format) {
+        this.bigEndian = format.isBigEndian();
+        this.bytesPerMs = format.getFrameRate() * format.getFrameSize() / 1000.0;
+    }
+
+    // Analiza un bloque de PCM de 16 bits mono. Devuelve true si hay que enviarlo (voz o hangover).
+    boolean process(byte[] pcm, int length) {
+        int samples = length / 2;
+        if (samples == 0) return speaking;
+
+        double sumSquares = 0;
+        int crossings = 0;
+        int previous = 0;
+        for (int i = 0; i < samples; i++) {
+            int offset = 2 * i;
+            int sample = bigEndian
+                    ? (short) ((pcm[offset] << 8) | (pcm[offset + 1] & 0xFF))
+                    : (short) ((pcm[offset + 1] << 8) | (pcm[offset] & 0xFF));
+            sumSquares += (double) sample * sample;
+            if (i > 0 && (sample ^ previous) < 0) crossings++;
+            previous = sample;
+        }
+        double rms = Math.sqrt(sumSquares / samples);
+        double energyDb = rms > 0 ? 20 * Math.log10(rms / Short.MAX_VALUE) : MIN_FLOOR_DB;
+        double zcr = (double) crossings / samples;
+        if (Double.isNaN(noiseFloorDb)) noiseFloorDb = energyDb;
+
+        boolean voice = energyDb > noiseFloorDb + ENERGY_MARGIN_DB
+                || (energyDb > noiseFloorDb + FRICATIVE_MARGIN_DB && zcr > FRICATIVE_ZCR);
+
+        if (energyDb < noiseFloorDb) {
+            noiseFloorDb = Math.max(MIN_FLOOR_DB, energyDb);
+        } else {
+            noiseFloorDb += (energyDb - noiseFloorDb) * (voice ? FLOOR_RISE_IN_VOICE : FLOOR_RISE);
+        }
+
+        if (voice) {
+            hangoverLeftMs = HANGOVER_MS;
+        } else {
+            hangoverLeftMs -= length / bytesPerMs;
+        }
+        speaking = voice || hangoverLeftMs > 0;
+        return speaking;
+    }
+
+    boolean isSpeaking() {
+        return speaking;
+    }
+}